@@ -585,6 +585,7 @@ public class FeedersPanel extends JPanel implements WizardContainer {
                 Nozzle nozzle = MainFrame.get().getMachineControls().getSelectedNozzle();
 
                 nozzle.moveToSafeZ();
+                feeder.cancelPreFeed();
                 feeder.feed(nozzle);
                 Location pickLocation = feeder.getPickLocation();
                 MovableUtils.moveToLocationAtSafeZ(nozzle, pickLocation);
@@ -656,6 +657,7 @@ public class FeedersPanel extends JPanel implements WizardContainer {
 
         // Perform the feed.
         nozzle.moveToSafeZ();
+        feeder.cancelPreFeed();
         feeder.feed(nozzle);
 
         // Go to the pick location and pick.
@@ -82,6 +82,7 @@ import org.openpnp.gui.support.Helpers;
 import org.openpnp.gui.support.Icons;
 import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.gui.tablemodel.BoardLocationsTableModel;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
 import org.openpnp.model.Board;
 import org.openpnp.model.Board.Side;
 import org.openpnp.model.BoardLocation;
@@ -934,6 +935,27 @@ public class JobPanel extends JPanel {
     public void jobStart() throws Exception {
         jobProcessor = Configuration.get().getMachine().getPnpJobProcessor();
 
+        if (jobProcessor instanceof ReferencePnpJobProcessor
+                && ((ReferencePnpJobProcessor) jobProcessor).hasCheckpoint(job)) {
+            int ret = JOptionPane.showConfirmDialog(getTopLevelAncestor(),
+                    "An interrupted run of this job left a checkpoint. Resume it and mark the placements it completed as placed?\n" //$NON-NLS-1$
+                    + "Otherwise the job starts with the current placement status and the checkpoint is discarded.", //$NON-NLS-1$
+                    "Resume job?", JOptionPane.YES_NO_CANCEL_OPTION, //$NON-NLS-1$
+                    JOptionPane.QUESTION_MESSAGE);
+            if (ret == JOptionPane.YES_OPTION) {
+                int feeds = JOptionPane.showConfirmDialog(getTopLevelAncestor(),
+                        "Also restore the feed counts of the feeders from the checkpoint?\n" //$NON-NLS-1$
+                        + "Only do this if no feeder was reloaded or changed since the run was interrupted.", //$NON-NLS-1$
+                        "Restore feeder feed counts?", JOptionPane.YES_NO_OPTION, //$NON-NLS-1$
+                        JOptionPane.WARNING_MESSAGE);
+                ((ReferencePnpJobProcessor) jobProcessor).resumeFromCheckpoint(feeds == JOptionPane.YES_OPTION);
+            }
+            else if (ret != JOptionPane.NO_OPTION) {
+                setState(State.Stopped);
+                return;
+            }
+        }
+
         if (isAllPlaced()) {
             int ret = JOptionPane.showConfirmDialog(getTopLevelAncestor(),
                     "All placements have been placed already. Reset all placements before starting job?", //$NON-NLS-1$
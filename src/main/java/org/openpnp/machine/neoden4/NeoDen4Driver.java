@@ -36,6 +36,7 @@ import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Root;
 
+import org.openpnp.util.LogUtils;
 import org.openpnp.util.Utils2D;
 
 import java.awt.geom.Point2D;
@@ -116,6 +117,47 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
     @Attribute(required = false)
     protected int connectWaitTimeMilliseconds = 3000;
 
+    /**
+     * Interval at which the controller status is polled, while waiting for C and Z moves to complete.
+     */
+    @Attribute(required = false)
+    protected int statusPollMilliseconds = 10;
+
+    /**
+     * Interval at which the controller status is polled after long operations such as homing or XY moves,
+     * and during communications recovery.
+     */
+    @Attribute(required = false)
+    protected int longStatusPollMilliseconds = 100;
+
+    /**
+     * Maximum time to wait for the controller status to become ready after long operations such as 
+     * homing or XY moves.
+     */
+    @Attribute(required = false)
+    protected int statusTimeoutMilliseconds = 30000;
+
+    /**
+     * Time to let the line go quiet before and after flushing the input, when recovering the communications 
+     * after a failed operation.
+     */
+    @Attribute(required = false)
+    protected int recoveryQuietMilliseconds = 1000;
+
+    /**
+     * Duration of the blow-off pulse when the vacuum is switched off. This is a physical pulse, not a wait 
+     * for completion.
+     */
+    @Attribute(required = false)
+    protected int vacuumReleasePulseMilliseconds = 100;
+
+    /**
+     * Verify the checksum of the frames received from the controller. Off by default, as not all 
+     * controller firmwares are known to checksum every response frame the same way.
+     */
+    @Attribute(required = false)
+    protected boolean verifyChecksum = false;
+
     protected boolean isAlreadyHomed = false;
     
 //    @Deprecated
@@ -279,8 +321,8 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
             	
             	
                 int d = getCommunications().read();
-                if (log) {
-                    Logger.trace(String.format("< %02x", d & 0xff));
+                if (log && LogUtils.isTraceEnabled()) {
+                    Logger.trace("< {}", toHex(d));
                 }
                 return d;
 //            }
@@ -308,39 +350,63 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
     
     void write(int d, boolean log) throws Exception {
         d = d & 0xff;
-        if (log) {
-            Logger.trace(String.format("> %02x", d));
+        if (log && LogUtils.isTraceEnabled()) {
+            Logger.trace("> {}", toHex(d));
         }
         getCommunications().write(d);
     }
-    
+
+    /**
+     * Writes the data followed by the checksum as one frame.
+     * 
+     * @param b
+     * @throws Exception
+     */
     void writeWithChecksum(byte[] b) throws Exception {
-        StringBuffer sb = new StringBuffer();
-        for (int i = 0; i < b.length; i++) {
-            sb.append(String.format("%02x", b[i] & 0xff));
-        }
-        sb.append(String.format("%02x", checksum(b) & 0xff));
-        Logger.trace("> " + sb.toString());
-        for (int i = 0; i < b.length; i++) {
-            write(b[i], false);
+        byte[] frame = new byte[b.length + 1];
+        System.arraycopy(b, 0, frame, 0, b.length);
+        frame[b.length] = (byte) checksum(b);
+        if (LogUtils.isTraceEnabled()) {
+            Logger.trace("> {}", toHex(frame));
         }
-        getCommunications().write(checksum(b) & 0xff);
+        getCommunications().writeBytes(frame);
     }
-    
+
+    /**
+     * Reads a frame of data followed by the checksum. The checksum is verified if enabled.
+     * 
+     * @param length The length of the data, without the checksum.
+     * @return The data.
+     * @throws Exception
+     */
     byte[] readWithChecksum(int length) throws Exception {
+        byte[] frame = new byte[length + 1];
+        getCommunications().readBytes(frame, frame.length);
+        if (LogUtils.isTraceEnabled()) {
+            Logger.trace("< {}", toHex(frame));
+        }
         byte[] b = new byte[length];
-        for (int i = 0; i < length; i++) {
-            b[i] = (byte) (read(false) & 0xff);
+        System.arraycopy(frame, 0, b, 0, length);
+        if (verifyChecksum && frame[length] != (byte) checksum(b)) {
+            throw new Exception(String.format("Checksum error, expected %02x but received %02x in %s.", 
+                    checksum(b) & 0xff, frame[length] & 0xff, toHex(frame)));
         }
-        int checksum = read(false);
-        // TODO STOPSHIP verify checksum
-        StringBuffer sb = new StringBuffer();
+        return b;
+    }
+
+    private static final char[] hexDigits = "0123456789abcdef".toCharArray();
+
+    static String toHex(int d) {
+        return new String(new char[] { hexDigits[(d >> 4) & 0xf], hexDigits[d & 0xf] });
+    }
+
+    static String toHex(byte[] b) {
+        char[] hex = new char[b.length*2];
         for (int i = 0; i < b.length; i++) {
-            sb.append(String.format("%02x", b[i] & 0xff));
+            hex[i*2] = hexDigits[(b[i] >> 4) & 0xf];
+            hex[i*2 + 1] = hexDigits[b[i] & 0xf];
         }
-        sb.append(String.format("%02x", checksum & 0xff));
-        Logger.trace("< " + sb.toString());
-        return b;
+        return new String(hex);
     }
     
     int expect(int expected) throws Exception {
@@ -441,7 +507,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         writeWithChecksum(b);
         pollFor(0x07, 0x43);
         
-        if (! waitForStatusReady(100, 30000)) {
+        if (! waitForStatusReady(longStatusPollMilliseconds, statusTimeoutMilliseconds)) {
             throw new Exception("home timeout while waiting for status==ready");
         }
 
@@ -492,7 +558,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
             this.z3 = 0;
             this.z4 = 0;
             
-            Thread.sleep(300);
+            waitForMoveCompletion("Z");
     	}
     }
     
@@ -548,7 +614,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         writeWithChecksum(b);
         pollFor(0x08, 0x4d);
         
-        if (! waitForStatusReady(100, 30000)) {
+        if (! waitForStatusReady(longStatusPollMilliseconds, statusTimeoutMilliseconds)) {
             throw new Exception("moveXy timeout while waiting for status==ready");
         }
 
@@ -575,18 +641,60 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
     }
 
     private Boolean waitForStatusReady(int sleepMilliS, int maxMilliS) throws Exception {
-        int totalWaitMilliS = 0;
+        // Measure the real time, as the status polls themselves take time too.
+        long t0 = System.currentTimeMillis();
+        int polls = 0;
         do {
             Thread.sleep(sleepMilliS);
-            totalWaitMilliS += sleepMilliS;
+            polls++;
 
-            if (totalWaitMilliS >= maxMilliS) {
+            if (System.currentTimeMillis() - t0 >= maxMilliS) {
+                Logger.debug("Neoden status not ready after {} ms, {} polls", System.currentTimeMillis() - t0, polls);
                 return false;
             }
         } while (! isStatusReady());
+        Logger.trace("Neoden status ready after {} ms, {} polls", System.currentTimeMillis() - t0, polls);
         return true;
     }
 
+    /**
+     * Recovers the communication after a failed operation, before it is retried. The line is given a quiet 
+     * period for any garbled response to arrive, which is then flushed. The controller status is polled until
+     * it is ready again, followed by another quiet period before the retry.
+     * 
+     * @param message The warning to log. 
+     * @throws Exception
+     */
+    private void recoverCommunications(String message) throws Exception {
+        long t0 = System.currentTimeMillis();
+        Thread.sleep(recoveryQuietMilliseconds);
+        flushInput();
+        try {
+            if (! waitForStatusReady(longStatusPollMilliseconds, timeoutMilliseconds)) {
+                Logger.warn("Neoden timeout while waiting for status==ready during recovery");
+            }
+        }
+        catch (Exception e) {
+            // The status poll was garbled too, discard what's left of it.
+            flushInput();
+        }
+        Thread.sleep(recoveryQuietMilliseconds);
+        Logger.warn("{}, recovered in {} ms", message, System.currentTimeMillis() - t0);
+    }
+
+    /**
+     * Polls the controller status until the C or Z moves that were issued have completed. This replaces 
+     * fixed delays, which were always as long as the slowest move.
+     * 
+     * @param axis The name of the moved axis, for the error message.
+     * @throws Exception
+     */
+    private void waitForMoveCompletion(String axis) throws Exception {
+        if (! waitForStatusReady(statusPollMilliseconds, timeoutMilliseconds)) {
+            throw new Exception("move"+axis+" timeout while waiting for status==ready");
+        }
+    }
+
     private void moveZ(int nozzle, double z) throws Exception {
         // Neoden thinks 13.0 is max retracted into the head, 0 is max out.
         // In our world, 0 is max up and -13 is max down.
@@ -693,10 +801,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         		break;
         	}
         	catch (Exception e){
-        		Thread.sleep(1000);
-        		flushInput();
-                Logger.warn(String.format("Recovered feed: try %d, exception %s, [%d %d %d]", i, e.toString(), id, strength, feedRate));
-        		Thread.sleep(1000);
+        		recoverCommunications(String.format("Recovered feed: try %d, exception %s, [%d %d %d]", i, e.toString(), id, strength, feedRate));
         	}
     	}
 
@@ -749,10 +854,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
                         break;
                     }
                     catch (Exception e){
-                        Thread.sleep(1000);
-                        flushInput();
-                        Logger.warn("Recovered changeFeederId");
-                        Thread.sleep(1000);
+                        recoverCommunications("Recovered changeFeederId");
                     }
                 }
                 
@@ -811,10 +913,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         		break;
         	}
         	catch (Exception e){
-        		Thread.sleep(1000);
-        		flushInput();
-                Logger.warn(String.format("Recovered peel: try %d, exception %s, [%d %d %d]", i, e.toString(), id, strength, feedRate));
-        		Thread.sleep(1000);
+        		recoverCommunications(String.format("Recovered peel: try %d, exception %s, [%d %d %d]", i, e.toString(), id, strength, feedRate));
         	}
     	}
     	
@@ -926,8 +1025,10 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
              isDelayNeeded = false;
          }
          
+         // The C move was issued before XY, so it ran concurrently and moveStep() has already waited for 
+         // the status to become ready. Only wait here if there was no XY move. 
          if(isDelayNeeded) {
-         	Thread.sleep(100);
+         	waitForMoveCompletion("C");
          }
          
          switch (hm.getId()) {
@@ -978,7 +1079,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
          
          
          if(isDelayNeeded) {
-         	Thread.sleep(200);
+         	waitForMoveCompletion("Z");
          }
          
          // Store the new location to the axes.
@@ -998,10 +1099,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         		break;
         	}
         	catch (Exception e){
-        		Thread.sleep(1000);
-        		flushInput();
-        		Thread.sleep(1000);
-                Logger.warn(String.format("Recovered moveTo: try %d, exception %s, [%s]", i, e.toString(), move.toString()));
+        		recoverCommunications(String.format("Recovered moveTo: try %d, exception %s, [%s]", i, e.toString(), move.toString()));
         	}
     	}
     	
@@ -1033,7 +1131,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
                     actuate(actuator, -128.0);
                 } else {
                     actuate(actuator, 20.0);
-                    Thread.sleep(100);
+                    Thread.sleep(vacuumReleasePulseMilliseconds);
                     actuate(actuator, 0.0);
                 }
                 break;
@@ -1287,10 +1385,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         		break;
         	}
         	catch (Exception e){
-        		Thread.sleep(1000);
-        		flushInput();
-        		Logger.warn(String.format("Recovered actuate: try %d, exception %s, [%s]", i, e.toString(), actuator.toString()));
-        		Thread.sleep(1000);
+        		recoverCommunications(String.format("Recovered actuate: try %d, exception %s, [%s]", i, e.toString(), actuator.toString()));
         	}
     	}
     	
@@ -1322,10 +1417,7 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
 				success = true;
 				break;
 			} catch (Exception e) {
-				Thread.sleep(1000);
-				flushInput();
-                Logger.warn(String.format("Recovered getNozzleAirValue: try %d, exception %s, Nozzle[%d]", i, e.toString(), nozzleNum));
-				Thread.sleep(1000);
+				recoverCommunications(String.format("Recovered getNozzleAirValue: try %d, exception %s, Nozzle[%d]", i, e.toString(), nozzleNum));
 			}
 		}
 
@@ -1407,6 +1499,66 @@ public class NeoDen4Driver extends AbstractReferenceDriver {
         this.timeoutMilliseconds = timeoutMilliseconds;
     }
 
+    public boolean isVerifyChecksum() {
+        return verifyChecksum;
+    }
+
+    public void setVerifyChecksum(boolean verifyChecksum) {
+        Object oldValue = this.verifyChecksum;
+        this.verifyChecksum = verifyChecksum;
+        firePropertyChange("verifyChecksum", oldValue, verifyChecksum);
+    }
+
+    public int getStatusTimeoutMilliseconds() {
+        return statusTimeoutMilliseconds;
+    }
+
+    public void setStatusTimeoutMilliseconds(int statusTimeoutMilliseconds) {
+        Object oldValue = this.statusTimeoutMilliseconds;
+        this.statusTimeoutMilliseconds = statusTimeoutMilliseconds;
+        firePropertyChange("statusTimeoutMilliseconds", oldValue, statusTimeoutMilliseconds);
+    }
+
+    public int getLongStatusPollMilliseconds() {
+        return longStatusPollMilliseconds;
+    }
+
+    public void setLongStatusPollMilliseconds(int longStatusPollMilliseconds) {
+        Object oldValue = this.longStatusPollMilliseconds;
+        this.longStatusPollMilliseconds = longStatusPollMilliseconds;
+        firePropertyChange("longStatusPollMilliseconds", oldValue, longStatusPollMilliseconds);
+    }
+
+    public int getRecoveryQuietMilliseconds() {
+        return recoveryQuietMilliseconds;
+    }
+
+    public void setRecoveryQuietMilliseconds(int recoveryQuietMilliseconds) {
+        Object oldValue = this.recoveryQuietMilliseconds;
+        this.recoveryQuietMilliseconds = recoveryQuietMilliseconds;
+        firePropertyChange("recoveryQuietMilliseconds", oldValue, recoveryQuietMilliseconds);
+    }
+
+    public int getVacuumReleasePulseMilliseconds() {
+        return vacuumReleasePulseMilliseconds;
+    }
+
+    public void setVacuumReleasePulseMilliseconds(int vacuumReleasePulseMilliseconds) {
+        Object oldValue = this.vacuumReleasePulseMilliseconds;
+        this.vacuumReleasePulseMilliseconds = vacuumReleasePulseMilliseconds;
+        firePropertyChange("vacuumReleasePulseMilliseconds", oldValue, vacuumReleasePulseMilliseconds);
+    }
+
+    public int getStatusPollMilliseconds() {
+        return statusPollMilliseconds;
+    }
+
+    public void setStatusPollMilliseconds(int statusPollMilliseconds) {
+        Object oldValue = this.statusPollMilliseconds;
+        this.statusPollMilliseconds = statusPollMilliseconds;
+        firePropertyChange("statusPollMilliseconds", oldValue, statusPollMilliseconds);
+    }
+
     public int getConnectWaitTimeMilliseconds() {
         return connectWaitTimeMilliseconds;
     }
@@ -104,20 +104,12 @@ public class Neoden4Feeder extends ReferenceFeeder {
     public void feed(Nozzle nozzle) throws Exception {
         Logger.debug("feed({})", nozzle);
 
-        if (actuatorName == null) {
-            throw new Exception("No actuator name set.");
-        }
-
         Head head = nozzle.getHead();
 
-		Actuator actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
-		if (actuator == null) {
-			throw new Exception(
-					String.format("No Actuator found with name %s on feed Head %s", actuatorName, head.getName()));
-		}
-
-        // Actuate actuator
-    	actuator.actuate(getPart().getPitchInTape());
+        if (!consumePreFeed()) {
+            // Actuate actuator, unless already done ahead of time
+            actuateFeed(nozzle);
+        }
 
         // CZARO: Check last offset distances - Calulation skipvision formula
         if (!suspendState){
@@ -164,6 +156,28 @@ public class Neoden4Feeder extends ReferenceFeeder {
         setFeedCount(getFeedCount() + 1);
     }
 
+    @Override
+    public boolean isPreFeedSupported() {
+        return isPreFeed();
+    }
+
+    @Override
+    protected void actuateFeed(Nozzle nozzle) throws Exception {
+        getFeedActuator(nozzle.getHead()).actuate(getPart().getPitchInTape());
+    }
+
+    private Actuator getFeedActuator(Head head) throws Exception {
+        if (actuatorName == null) {
+            throw new Exception("No actuator name set.");
+        }
+        Actuator actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
+        if (actuator == null) {
+            throw new Exception(
+                    String.format("No Actuator found with name %s on feed Head %s", actuatorName, head.getName()));
+        }
+        return actuator;
+    }
+
     private Location getVisionOffsets(Head head, Location pickLocation) throws Exception {
         Logger.debug("getVisionOffsets({}, {})", head.getName(), pickLocation);
 
@@ -332,6 +346,16 @@ public class Neoden4Feeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public long getCheckpointFeedCount() {
+        return getFeedCount();
+    }
+
+    @Override
+    public void setCheckpointFeedCount(long feedCount) {
+        setFeedCount((int) feedCount);
+    }
+
     public int getDiscardCount() {
         return discardCount;
     }
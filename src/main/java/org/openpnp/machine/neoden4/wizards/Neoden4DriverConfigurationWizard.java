@@ -23,6 +23,7 @@ package org.openpnp.machine.neoden4.wizards;
 import java.awt.Color;
 
 import javax.swing.SwingConstants;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.border.EtchedBorder;
@@ -48,6 +49,7 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
     private JTextField homeCoordinateYTextField;
     private JTextField scaleFactorXTextField;
     private JTextField scaleFactorYTextField;
+    private JCheckBox verifyChecksumCheckBox;
 
     public Neoden4DriverConfigurationWizard(NeoDen4Driver driver) {
         this.driver = driver;
@@ -72,6 +74,8 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
                     FormSpecs.DEFAULT_ROWSPEC,
                     FormSpecs.RELATED_GAP_ROWSPEC, 
                     FormSpecs.DEFAULT_ROWSPEC,
+                    FormSpecs.RELATED_GAP_ROWSPEC, 
+                    FormSpecs.DEFAULT_ROWSPEC,
                     FormSpecs.RELATED_GAP_ROWSPEC, }));
 
         JLabel lblHomeCoordinateX = new JLabel("Home Coordinate X");
@@ -102,6 +106,13 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
         scaleFactorYTextField.setColumns(10);
         panelMachineDetails.add(scaleFactorYTextField, "4, 8, fill, default");
 
+        JLabel lblVerifyChecksum = new JLabel("Verify Checksum?");
+        lblVerifyChecksum.setToolTipText("Reject response frames from the controller with a wrong checksum.");
+        panelMachineDetails.add(lblVerifyChecksum, "2, 10, right, default");
+
+        verifyChecksumCheckBox = new JCheckBox("");
+        panelMachineDetails.add(verifyChecksumCheckBox, "4, 10");
+
     }
 
     @Override
@@ -111,5 +122,6 @@ public class Neoden4DriverConfigurationWizard extends AbstractConfigurationWizar
         addWrappedBinding(driver, "homeCoordinateY", homeCoordinateYTextField, "text", doubleConverter);
         addWrappedBinding(driver, "scaleFactorX", scaleFactorXTextField, "text", doubleConverter);
         addWrappedBinding(driver, "scaleFactorY", scaleFactorYTextField, "text", doubleConverter);
+        addWrappedBinding(driver, "verifyChecksum", verifyChecksumCheckBox, "selected");
     }
 }
\ No newline at end of file
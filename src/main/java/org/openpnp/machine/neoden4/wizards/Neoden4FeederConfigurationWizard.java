@@ -83,6 +83,7 @@ public class Neoden4FeederConfigurationWizard extends AbstractReferenceFeederCon
     private JPanel suspendPanel;
 	private JLabel lblSuspendPart1;
     private JCheckBox suspendCalib;
+    private JCheckBox chckbxPreFeed;
     private JLabel lblSuspendPart2;
 	private JLabel lblSuspendPart3;
     private JTextField suspendTries;
@@ -108,6 +109,7 @@ public class Neoden4FeederConfigurationWizard extends AbstractReferenceFeederCon
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,
                         FormSpecs.RELATED_GAP_COLSPEC, FormSpecs.DEFAULT_COLSPEC,},
                 new RowSpec[] {
+                        FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC, FormSpecs.DEFAULT_ROWSPEC,}));
@@ -157,6 +159,13 @@ public class Neoden4FeederConfigurationWizard extends AbstractReferenceFeederCon
         btnResetDiscardCount.setHorizontalAlignment(SwingConstants.LEFT);
         panelOther.add(btnResetDiscardCount, "6, 6, left, default");
 
+        JLabel lblPreFeed = new JLabel("Pre-feed");
+        lblPreFeed.setToolTipText("Actuate the feed ahead of time, while the job is still placing the previous cycle.");
+        panelOther.add(lblPreFeed, "2, 8, right, default");
+
+        chckbxPreFeed = new JCheckBox();
+        panelOther.add(chckbxPreFeed, "4, 8, left, default");
+
         //
         panelVision = new JPanel();
         panelVision.setBorder(new TitledBorder(null, "Vision", TitledBorder.LEADING,
@@ -314,6 +323,7 @@ public class Neoden4FeederConfigurationWizard extends AbstractReferenceFeederCon
         addWrappedBinding(feeder, "actuatorName", textFieldActuatorId, "text");
         addWrappedBinding(feeder, "feedCount", textFieldFeedCount, "text", intConverter);
         addWrappedBinding(feeder, "discardCount", textFieldDiscardCount, "text", intConverter);
+        addWrappedBinding(feeder, "preFeed", chckbxPreFeed, "selected");
 
         addWrappedBinding(feeder, "vision.enabled", chckbxVisionEnabled, "selected");
         addWrappedBinding(feeder, "vision.templateImage", labelTemplateImage, "icon", imageConverter);
@@ -58,6 +58,24 @@ public class RapidFeeder extends ReferenceFeeder {
 
     @Override
     public void feed(Nozzle nozzle) throws Exception {
+        if (consumePreFeed()) {
+            // Already actuated ahead of time.
+            return;
+        }
+        actuateFeed(nozzle);
+    }
+
+    @Override
+    public boolean isPreFeedSupported() {
+        return isPreFeed();
+    }
+
+    @Override
+    protected void actuateFeed(Nozzle nozzle) throws Exception {
+        getFeedActuator(nozzle).actuate(String.format("%s %d", address, pitch));
+    }
+
+    protected Actuator getFeedActuator(Nozzle nozzle) throws Exception {
         Actuator actuator = nozzle.getHead().getActuatorByName(actuatorName);
         if (actuator == null) {
             actuator = Configuration.get().getMachine().getActuatorByName(actuatorName);
@@ -65,7 +83,7 @@ public class RapidFeeder extends ReferenceFeeder {
         if (actuator == null) {
             throw new Exception("Feed failed. Unable to find an actuator named " + actuatorName);
         }
-        actuator.actuate(String.format("%s %d", address, pitch));
+        return actuator;
     }
     
 	@Override
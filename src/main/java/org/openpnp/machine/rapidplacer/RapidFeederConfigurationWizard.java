@@ -28,6 +28,7 @@ import java.util.Set;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
@@ -84,6 +85,8 @@ public class RapidFeederConfigurationWizard
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -103,6 +106,13 @@ public class RapidFeederConfigurationWizard
         panelRapidFeederConfig.add(pitch, "4, 4, left, default");
         pitch.setColumns(10);
         
+        JLabel lblPreFeed = new JLabel("Pre-feed");
+        lblPreFeed.setToolTipText("Actuate the feed ahead of time, while the job is still placing the previous cycle.");
+        panelRapidFeederConfig.add(lblPreFeed, "2, 6, right, default");
+        
+        preFeed = new JCheckBox();
+        panelRapidFeederConfig.add(preFeed, "4, 6, left, default");
+        
         JPanel panelRapidFeederScan = new JPanel();
         panelRapidFeederScan.setBorder(new TitledBorder(new EtchedBorder(EtchedBorder.LOWERED, null, null), "Rapid Feeder Scanning", TitledBorder.LEADING, TitledBorder.TOP, null, new Color(0, 0, 0)));
         contentPanel.add(panelRapidFeederScan);
@@ -200,6 +210,7 @@ public class RapidFeederConfigurationWizard
         ComponentDecorators.decorateWithAutoSelect(address);
 
         addWrappedBinding(feeder, "pitch", pitch, "text", intConverter);
+        addWrappedBinding(feeder, "preFeed", preFeed, "selected");
         ComponentDecorators.decorateWithAutoSelect(pitch);
     }
 
@@ -351,4 +362,5 @@ public class RapidFeederConfigurationWizard
     private JLabel lblNewLabel_6;
     private JTextField address;
     private JTextField pitch;
+    private JCheckBox preFeed;
 }
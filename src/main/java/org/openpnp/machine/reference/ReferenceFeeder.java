@@ -2,13 +2,27 @@ package org.openpnp.machine.reference;
 
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.base.AbstractFeeder;
+import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
 
 public abstract class ReferenceFeeder extends AbstractFeeder {
     @Element
     protected Location location = new Location(LengthUnit.Millimeters);
 
+    /**
+     * Actuate the feed ahead of time, while the nozzle is still busy with the previous cycle. Only
+     * used by feeders that override {@link #isPreFeedSupported()} and {@link #actuateFeed(Nozzle)}.
+     */
+    @Attribute(required = false)
+    protected boolean preFeed = false;
+
+    /**
+     * True if the feed was already actuated by preFeed() and the next feed() must not actuate again.
+     */
+    private boolean preFed = false;
+
     public Location getLocation() {
         return location;
     }
@@ -19,6 +33,53 @@ public abstract class ReferenceFeeder extends AbstractFeeder {
         firePropertyChange("location", oldValue, location);
     }
 
+    public boolean isPreFeed() {
+        return preFeed;
+    }
+
+    public void setPreFeed(boolean preFeed) {
+        Object oldValue = this.preFeed;
+        this.preFeed = preFeed;
+        firePropertyChange("preFeed", oldValue, preFeed);
+    }
+
+    @Override
+    public void preFeed(Nozzle nozzle) throws Exception {
+        if (preFed || !isPreFeedSupported()) {
+            return;
+        }
+        actuateFeed(nozzle);
+        preFed = true;
+    }
+
+    @Override
+    public void cancelPreFeed() {
+        preFed = false;
+    }
+
+    /**
+     * Actuates the feed mechanism. Called by preFeed() ahead of time, feeders supporting pre-feed
+     * also call it from feed() unless {@link #consumePreFeed()} says it was already done.
+     *
+     * @param nozzle
+     * @throws Exception
+     */
+    protected void actuateFeed(Nozzle nozzle) throws Exception {
+        // the default ReferenceFeeder has nothing to actuate
+    }
+
+    /**
+     * Returns true if the feed was already actuated by preFeed(), and resets that, so the feed()
+     * that consumes it skips the actuation.
+     *
+     * @return
+     */
+    protected boolean consumePreFeed() {
+        boolean consumed = preFed;
+        preFed = false;
+        return consumed;
+    }
+
     @Override
     public Location getJobPreparationLocation()  {
         // the default RefrenceFeeder has no prep. location
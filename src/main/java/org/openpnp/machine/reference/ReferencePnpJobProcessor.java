@@ -19,14 +19,21 @@
 
 package org.openpnp.machine.reference;
 
+import java.io.File;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Future;
 import java.util.prefs.Preferences;
 import java.util.stream.Collectors;
 
@@ -36,25 +43,32 @@ import org.openpnp.machine.reference.wizards.ReferencePnpJobProcessorConfigurati
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Job;
+import org.openpnp.model.JobCheckpoint;
+import org.openpnp.model.JobTimeline;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Panel;
 import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
 import org.openpnp.model.Placement.ErrorHandling;
+import org.openpnp.spi.Camera;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.FiducialLocator;
 import org.openpnp.spi.Head;
+import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.Machine;
+import org.openpnp.spi.MotionPlanner;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.NozzleTip;
 import org.openpnp.spi.PartAlignment;
+import org.openpnp.spi.PartAlignment.PartAlignmentOffset;
 import org.openpnp.spi.PnpJobPlanner;
 import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
 import org.openpnp.spi.PnpJobProcessor;
 import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
 import org.openpnp.spi.base.AbstractJobProcessor;
 import org.openpnp.spi.base.AbstractPnpJobProcessor;
+import org.openpnp.spi.base.JobPlacementIndex;
 import org.openpnp.util.MovableUtils;
 import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
@@ -66,14 +80,15 @@ import org.simpleframework.xml.Root;
 
 @Root
 public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
-    interface Step {
+    protected interface Step {
         public Step step() throws JobProcessorException;
     }
 
     public enum JobPlannerHint {
         Simple,
         Straightforward,
-        Neoden4
+        Neoden4,
+        Global
     }
 
 	public enum JobBoardOrderHint {
@@ -98,6 +113,53 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Attribute(required = false)
     protected int maxVisionRetries = 3;
 
+    /**
+     * Process the picks and the places of a cycle in the order of the shortest travel time, rather than in
+     * the order of the planner.
+     */
+    @Attribute(required = false)
+    protected boolean optimizeCycleTravel = false;
+
+    /**
+     * The time the Global job planner may spend optimizing the plan for the whole job.
+     */
+    @Attribute(required = false)
+    protected long globalPlanningTimeMilliseconds = 2000;
+
+    /**
+     * Capture the bottom vision images of all the nozzles of a cycle in one camera pass and process
+     * them in the background while the next nozzle is being moved to the camera.
+     */
+    @Attribute(required = false)
+    protected boolean overlappedAlignment = false;
+
+    /**
+     * Write the step timeline of the last job as timeline.csv and timeline.json into the
+     * configuration directory, when the job ends. Each export replaces the previous one.
+     */
+    @Attribute(required = false)
+    protected boolean exportTimeline = false;
+
+    /**
+     * Checkpoint the job progress, i.e. the placed flags and the feeder feed counts, at the end of
+     * each cycle and at most every checkpointIntervalMilliseconds in between, so an interrupted job
+     * can be resumed. Resuming is never automatic, see
+     * {@link #resumeFromCheckpoint(boolean)}.
+     */
+    @Attribute(required = false)
+    protected boolean checkpointProgress = false;
+
+    @Attribute(required = false)
+    protected long checkpointIntervalMilliseconds = 5000;
+
+    /**
+     * Journal each completed placement between the checkpoints, and replay the journal when resuming,
+     * so no placement since the last checkpoint is lost. Otherwise only the last checkpoint is
+     * restored.
+     */
+    @Attribute(required = false)
+    protected boolean journalPlacements = false;
+
     protected int maxPlacementRetries = 2;
 
     @Element(required = false)
@@ -111,8 +173,46 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
     protected List<JobPlacement> jobPlacements = new ArrayList<>();
 
+    /**
+     * The jobPlacements indexed by their status.
+     */
+    protected JobPlacementIndex jobPlacementIndex = new JobPlacementIndex();
+
     private Step currentStep = null;
 
+    /**
+     * The next cycle, planned ahead of time, and the pending placements it was planned from.
+     */
+    protected List<PlannedPlacement> nextPlannedPlacements;
+    protected Set<JobPlacement> nextJobPlacements;
+
+    /**
+     * Feeders that failed during this job and are avoided as long as other feeders serve the same part.
+     */
+    protected Set<Feeder> failedFeeders = new HashSet<>();
+
+    /**
+     * The step timeline of the current job.
+     */
+    protected JobTimeline timeline = new JobTimeline();
+    private boolean timelineExported;
+
+    /**
+     * The job progress checkpoint, or null if disabled.
+     */
+    protected JobCheckpoint checkpoint;
+    private long lastCheckpointTime;
+    /**
+     * Set by {@link #resumeFromCheckpoint(boolean)} for the next {@link #initialize(Job)} only.
+     */
+    private boolean resumeFromCheckpoint;
+    private boolean restoreCheckpointFeedCounts;
+
+    /**
+     * The board location the job is currently working on.
+     */
+    protected BoardLocation activeBoardLocation;
+
     long startTime;
     int totalPartsPlaced;
 
@@ -124,6 +224,26 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             throw new Exception("Can't initialize with a null Job.");
         }
         this.job = job;
+        nextPlannedPlacements = null;
+        nextJobPlacements = null;
+        failedFeeders.clear();
+        timeline = new JobTimeline();
+        timelineExported = false;
+        activeBoardLocation = null;
+        checkpoint = null;
+        boolean resume = resumeFromCheckpoint;
+        boolean restoreFeedCounts = restoreCheckpointFeedCounts;
+        resumeFromCheckpoint = false;
+        restoreCheckpointFeedCounts = false;
+        if (checkpointProgress) {
+            checkpoint = JobCheckpoint.getDefault();
+            checkpoint.setReplayJournal(journalPlacements);
+            if (resume && checkpoint.restore(job, Configuration.get().getMachine(), restoreFeedCounts)) {
+                fireTextStatus("Job progress restored from the checkpoint of an interrupted run.");
+            }
+            // Start over with a snapshot of this job, which also truncates the journal.
+            checkpoint(true);
+        }
         currentStep = new PreFlight();
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.STOPPED);
     }
@@ -131,6 +251,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     @Override
     public synchronized boolean next() throws JobProcessorException {
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.RUNNING);
+        timeline.begin(currentStep.getClass().getSimpleName(), getTotalMotionTime());
         try {
             currentStep = currentStep.step();
         }
@@ -138,13 +259,18 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.ERROR);
             throw e;
         }
+        finally {
+            timeline.end(getTotalMotionTime());
+        }
         if (currentStep == null) {
+            exportTimeline();
             this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.FINISHED);
         }
         return currentStep != null;
     }
 
     public synchronized void abort() throws JobProcessorException {
+        timeline.begin(Abort.class.getSimpleName(), getTotalMotionTime());
         try {
             new Cleanup().step();
         }
@@ -153,10 +279,114 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             // we can do. We have to end the job.
             Logger.error(e);
         }
+        finally {
+            timeline.end(getTotalMotionTime());
+        }
+        exportTimeline();
+        clearCheckpoint();
         this.fireJobState(Configuration.get().getMachine().getSignalers(), AbstractJobProcessor.State.STOPPED);
         currentStep = null;
     }
 
+    /**
+     * @return The step timeline of the current or last job. It can be read live, while the job is running.
+     */
+    public JobTimeline getTimeline() {
+        return timeline;
+    }
+
+    private double getTotalMotionTime() {
+        MotionPlanner motionPlanner = Configuration.get().getMachine().getMotionPlanner();
+        return motionPlanner != null ? motionPlanner.getTotalMotionTime() : 0;
+    }
+
+    protected void addActivityTime(JobTimeline.Activity activity, long t0) {
+        timeline.addActivityTime(activity, System.nanoTime() - t0);
+    }
+
+    protected void runScript(String event, Map<String, Object> params) throws Exception {
+        long t0 = System.nanoTime();
+        try {
+            Configuration.get().getScripting().on(event, params);
+        }
+        finally {
+            addActivityTime(JobTimeline.Activity.Script, t0);
+        }
+    }
+
+    /**
+     * @return The board location the job is currently working on, or null.
+     */
+    public BoardLocation getActiveBoardLocation() {
+        return activeBoardLocation;
+    }
+
+    /**
+     * Make the given board location the active one. The JobPanel shows the last active board location
+     * from the preferences, they are only written when the board location changes, not for every
+     * placement. This is independent of checkpointing.
+     *
+     * @param boardLocation
+     */
+    protected void setActiveBoardLocation(BoardLocation boardLocation) {
+        if (boardLocation == activeBoardLocation) {
+            return;
+        }
+        activeBoardLocation = boardLocation;
+        if (boardLocation != null) {
+            Preferences prefs = Preferences.userNodeForPackage(JobPanel.class);
+            prefs.putInt("LAST_ACTIVE_BOARDLOCATION", boardLocation.hashCode());
+        }
+    }
+
+    /**
+     * Hand a snapshot of the job progress to the checkpoint writer.
+     *
+     * @param force Checkpoint even if the last checkpoint is more recent than the interval.
+     */
+    protected void checkpoint(boolean force) {
+        if (checkpoint == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now - lastCheckpointTime < checkpointIntervalMilliseconds) {
+            return;
+        }
+        lastCheckpointTime = now;
+        checkpoint.checkpoint(job, activeBoardLocation, Configuration.get().getMachine().getFeeders());
+    }
+
+    protected void clearCheckpoint() {
+        if (checkpoint != null) {
+            checkpoint.clear();
+        }
+    }
+
+    /**
+     * Log the cycle time breakdown of the job by step and export the timeline, if enabled.
+     */
+    protected void exportTimeline() {
+        if (timelineExported || timeline.getEntries().isEmpty()) {
+            return;
+        }
+        timelineExported = true;
+        for (Map.Entry<String, JobTimeline.Totals> totals : timeline.getTotals().entrySet()) {
+            Logger.info("Job step {}: {}", totals.getKey(), totals.getValue());
+        }
+        if (!exportTimeline) {
+            return;
+        }
+        try {
+            File csvFile = Configuration.get().getResourceFile(JobTimeline.class, "timeline.csv");
+            timeline.exportCsv(csvFile);
+            timeline.exportJson(Configuration.get().getResourceFile(JobTimeline.class, "timeline.json"));
+            Logger.info("Job timeline exported to {}", csvFile.getParent());
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Job timeline export failed.");
+        }
+    }
+
     /**
      * Create some internal shortcuts to various buried objects.
      *
@@ -177,9 +407,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             totalPartsPlaced = 0;
 
             jobPlacements.clear();
+            jobPlacementIndex.clear();
 
             // Create some shortcuts for things that won't change during the run
             machine = Configuration.get().getMachine();
+            invalidateFeederIndex();
+            cancelPreFeeds();
             try {
                 head = machine.getDefaultHead();
             }
@@ -234,6 +467,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     checkJobPlacement(jobPlacement);
 
                     jobPlacements.add(jobPlacement);
+                    jobPlacementIndex.add(jobPlacement);
                 }
             }
         }
@@ -299,7 +533,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             params.put("job", job);
             params.put("jobProcessor", this);
             try {
-                Configuration.get().getScripting().on("Job.Starting", params);
+                runScript("Job.Starting", params);
             }
             catch (Exception e) {
                 throw new JobProcessorException(null, e);
@@ -344,8 +578,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             }
 
             Location startLocation = null;
+            TravellingSalesman.TravelTime travelTime = null;
             try {
-                startLocation = head.getDefaultCamera().getLocation();
+                Camera camera = head.getDefaultCamera();
+                startLocation = camera.getLocation();
+                travelTime = MovableUtils.getTravelTimeEstimator(camera);
             }
             catch (Exception e) {
                 Logger.error(e);
@@ -363,7 +600,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     // start from current location
                     startLocation,
                     // no particular end location
-                    null);
+                    null,
+                    // optimize for travel time
+                    travelTime);
 
             // Solve it using the default heuristics.
             tsm.solve();
@@ -414,12 +653,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 BoardLocation boardLocation = job.getBoardLocations().get(0);
 
                 fireTextStatus("Panel fiducial check on %s", boardLocation);
+                long t0 = System.nanoTime();
                 try {
                     locator.locateBoard(boardLocation, p.isCheckFiducials());
                 }
                 catch (Exception e) {
                     throw new JobProcessorException(boardLocation, e);
                 }
+                finally {
+                    addActivityTime(JobTimeline.Activity.Vision, t0);
+                }
             }
 
             return new BoardLocationFiducialCheck();
@@ -428,10 +671,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
     protected class BoardLocationFiducialCheck implements Step {
         protected Set<BoardLocation> completed = new HashSet<>();
+        protected boolean preScanned = false;
 
         public Step step() throws JobProcessorException {
             FiducialLocator locator = Configuration.get().getMachine().getFiducialLocator();
 
+            if (!preScanned) {
+                preScanned = true;
+                preScan(locator);
+            }
+
             for (BoardLocation boardLocation : job.getBoardLocations()) {
                 if (!boardLocation.isEnabled()) {
                     continue;
@@ -444,12 +693,16 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 }
 
                 fireTextStatus("Fiducial check for %s", boardLocation);
+                long t0 = System.nanoTime();
                 try {
                     locator.locateBoard(boardLocation);
                 }
                 catch (Exception e) {
                     throw new JobProcessorException(boardLocation, e);
                 }
+                finally {
+                    addActivityTime(JobTimeline.Activity.Vision, t0);
+                }
 
                 completed.add(boardLocation);
                 return this;
@@ -457,6 +710,35 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             return new Plan();
         }
+
+        /**
+         * Give the locator the chance to locate all the boards in one go. The boards it does not
+         * locate are checked one by one.
+         */
+        protected void preScan(FiducialLocator locator) throws JobProcessorException {
+            List<BoardLocation> boardLocations = new ArrayList<>();
+            for (BoardLocation boardLocation : job.getBoardLocations()) {
+                if (boardLocation.isEnabled() 
+                        && boardLocation.isCheckFiducials() 
+                        && !completed.contains(boardLocation)) {
+                    boardLocations.add(boardLocation);
+                }
+            }
+            if (boardLocations.size() < 2) {
+                return;
+            }
+            fireTextStatus("Fiducial check for %d boards", boardLocations.size());
+            long t0 = System.nanoTime();
+            try {
+                completed.addAll(locator.locateBoards(boardLocations));
+            }
+            catch (Exception e) {
+                throw new JobProcessorException(locator, e);
+            }
+            finally {
+                addActivityTime(JobTimeline.Activity.Vision, t0);
+            }
+        }
     }
 
     protected class Plan implements Step {
@@ -465,66 +747,25 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             List<JobPlacement> jobPlacements = getPendingJobPlacements();
 
-
-			switch (jobPartOrder) {
-			case Part:
-                // Get the list of unfinished placements and sort them by part.
-                jobPlacements = jobPlacements.stream()
-                        .sorted(Comparator.comparing(JobPlacement::getPartId))
-                        .collect(Collectors.toList());
-				break;
-			case PartHeight:
-                // Get the list of unfinished placements and sort them by part height.
-                jobPlacements = jobPlacements.stream()
-                        .sorted(Comparator
-                            .comparing(JobPlacement::getPartHeight)
-                            .thenComparing(JobPlacement::getPartId))
-                        .collect(Collectors.toList());
-				break;
-			default:
-				throw new JobProcessorException(planner,
-						String.format("Wrong job parts order seleced (%s)!", jobBoardOrder.name()));
-			}
-
-
-			switch (jobBoardOrder) {
-			case AllAtOnce:
-				break;
-			case OneByOne:
-				jobPlacements = jobPlacements.stream()
-									.sorted(Comparator
-											.comparing(l-> ((JobPlacement)l).getBoardLocation().getPanelPos()))
-									.collect(Collectors.toList());
-				break;
-			default:
-				throw new JobProcessorException(planner,
-						String.format("Wrong job boards order seleced (%s)!", jobBoardOrder.name()));
-			}
-
             if (jobPlacements.isEmpty()) {
                 return new Finish();
             }
 
-//			if (planner == null) {
-				switch (jobPlanner) {
-				case Neoden4:
-					planner = new Neoden4PnpJobPlanner();
-					break;
-				case Simple:
-					planner = new SimplePnpJobPlanner();
-					break;
-				case Straightforward:
-					planner = new StraightforwardPnpJobPlanner();
-					break;
-				default:
-					throw new JobProcessorException(planner,
-							String.format("Wrong job planner seleced (%s)!", jobPlanner.name()));
-				}
-//			}
-
-            long t = System.currentTimeMillis();
-            List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
-            Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+            List<PlannedPlacement> plannedPlacements;
+            if (nextPlannedPlacements != null
+                    && nextJobPlacements.equals(new HashSet<>(jobPlacements))) {
+                // Already planned ahead, during the last cycle.
+                plannedPlacements = nextPlannedPlacements;
+            }
+            else {
+                if (nextPlannedPlacements != null) {
+                    // The cycle planned ahead is dropped, so are its pre-feeds.
+                    cancelPreFeeds();
+                }
+                plannedPlacements = planCycle(jobPlacements);
+            }
+            nextPlannedPlacements = null;
+            nextJobPlacements = null;
 
             if (plannedPlacements.isEmpty()) {
                 throw new JobProcessorException(planner, "Planner failed to plan any placements. Please contact support.");
@@ -544,6 +785,211 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         }
     }
 
+    /**
+     * Select the feeder to pick the part from, avoiding feeders that failed before, unless no others are
+     * left.
+     *
+     * @param part
+     * @param nozzle
+     * @return
+     * @throws JobProcessorException
+     */
+    protected Feeder selectFeeder(Part part, Nozzle nozzle) throws JobProcessorException {
+        try {
+            return findFeeder(machine, part, nozzle, failedFeeders);
+        }
+        catch (JobProcessorException e) {
+            if (failedFeeders.isEmpty()) {
+                throw e;
+            }
+            return findFeeder(machine, part, nozzle, null);
+        }
+    }
+
+    /**
+     * Get the feeder planned for the placement. The feeder is selected once and then kept, so the
+     * travel order, the pre-feed and the pick all use the same feeder, even though the nearest feeder
+     * changes as the head moves. It is selected again, if it can no longer serve the part, e.g. after
+     * a fail-over.
+     *
+     * @param plannedPlacement
+     * @return
+     * @throws JobProcessorException
+     */
+    protected Feeder getPlannedFeeder(PlannedPlacement plannedPlacement) throws JobProcessorException {
+        Part part = plannedPlacement.jobPlacement.getPlacement().getPart();
+        Feeder feeder = plannedPlacement.feeder;
+        if (feeder == null || feeder.getPart() != part || !feeder.isEnabled()
+                || failedFeeders.contains(feeder)) {
+            feeder = selectFeeder(part, plannedPlacement.nozzle);
+            plannedPlacement.feeder = feeder;
+        }
+        return feeder;
+    }
+
+    /**
+     * After the given feeder failed, check if another feeder can serve the part. If so, the failed feeder
+     * is avoided for the rest of the job.
+     *
+     * @param feeder
+     * @param part
+     * @param nozzle
+     * @return True if the part can be picked from another feeder.
+     */
+    protected boolean failOver(Feeder feeder, Part part, Nozzle nozzle) {
+        Set<Feeder> excluded = new HashSet<>(failedFeeders);
+        excluded.add(feeder);
+        try {
+            Feeder alternative = findFeeder(machine, part, nozzle, excluded);
+            failedFeeders.add(feeder);
+            Logger.warn("Feeder {} failed, failing over to feeder {} for part {}.",
+                    feeder.getName(), alternative.getName(), part.getId());
+            return true;
+        }
+        catch (JobProcessorException e) {
+            return false;
+        }
+    }
+
+    /**
+     * If any feeders support pre-feeding, plan the next cycle ahead of time and pre-feed its feeders, so
+     * they can advance while the current cycle is aligning and placing. The plan is then used by the
+     * next Plan step, unless the pending placements have changed in the meantime.
+     *
+     * @throws JobProcessorException
+     */
+    protected void preFeedNextCycle() throws JobProcessorException {
+        boolean preFeedSupported = false;
+        for (Feeder feeder : machine.getFeeders()) {
+            if (feeder.isEnabled() && feeder.isPreFeedSupported()) {
+                preFeedSupported = true;
+                break;
+            }
+        }
+        if (!preFeedSupported) {
+            return;
+        }
+        List<JobPlacement> jobPlacements = getPendingJobPlacements();
+        if (jobPlacements.isEmpty()) {
+            return;
+        }
+        nextJobPlacements = new HashSet<>(jobPlacements);
+        nextPlannedPlacements = planCycle(jobPlacements);
+        for (PlannedPlacement plannedPlacement : nextPlannedPlacements) {
+            Feeder feeder;
+            try {
+                feeder = getPlannedFeeder(plannedPlacement);
+            }
+            catch (JobProcessorException e) {
+                // Reported when the pick is due.
+                continue;
+            }
+            if (!feeder.isPreFeedSupported()) {
+                continue;
+            }
+            long t0 = System.nanoTime();
+            try {
+                fireTextStatus("Pre-feed %s on %s.", feeder.getName(), feeder.getPart().getId());
+                feeder.preFeed(plannedPlacement.nozzle);
+            }
+            catch (Exception e) {
+                // Not fatal, the regular feed will be done when the pick is due.
+                Logger.warn(e, "Pre-feed failed on feeder {}.", feeder.getName());
+            }
+            finally {
+                addActivityTime(JobTimeline.Activity.Feed, t0);
+            }
+        }
+    }
+
+    /**
+     * Forget any pre-feeds that were not consumed, so no later feed relies on them.
+     */
+    protected void cancelPreFeeds() {
+        if (machine == null) {
+            return;
+        }
+        for (Feeder feeder : machine.getFeeders()) {
+            feeder.cancelPreFeed();
+        }
+    }
+
+    /**
+     * Plan the next cycle from the given pending placements.
+     *
+     * @param jobPlacements
+     * @return
+     * @throws JobProcessorException
+     */
+    protected List<PlannedPlacement> planCycle(List<JobPlacement> jobPlacements) throws JobProcessorException {
+		switch (jobPartOrder) {
+		case Part:
+            // Get the list of unfinished placements and sort them by part.
+            jobPlacements = jobPlacements.stream()
+                    .sorted(Comparator.comparing(JobPlacement::getPartId))
+                    .collect(Collectors.toList());
+			break;
+		case PartHeight:
+            // Get the list of unfinished placements and sort them by part height.
+            jobPlacements = jobPlacements.stream()
+                    .sorted(Comparator
+                        .comparing(JobPlacement::getPartHeight)
+                        .thenComparing(JobPlacement::getPartId))
+                    .collect(Collectors.toList());
+			break;
+		default:
+			throw new JobProcessorException(planner,
+					String.format("Wrong job parts order seleced (%s)!", jobBoardOrder.name()));
+		}
+
+
+		switch (jobBoardOrder) {
+		case AllAtOnce:
+			break;
+		case OneByOne:
+			jobPlacements = jobPlacements.stream()
+								.sorted(Comparator
+										.comparing(l-> ((JobPlacement)l).getBoardLocation().getPanelPos()))
+								.collect(Collectors.toList());
+			break;
+		default:
+			throw new JobProcessorException(planner,
+					String.format("Wrong job boards order seleced (%s)!", jobBoardOrder.name()));
+		}
+
+//			if (planner == null) {
+			switch (jobPlanner) {
+			case Neoden4:
+				planner = new Neoden4PnpJobPlanner();
+				break;
+			case Simple:
+				planner = new SimplePnpJobPlanner();
+				break;
+			case Straightforward:
+				planner = new StraightforwardPnpJobPlanner();
+				break;
+			case Global:
+				// Keep the planner, as it holds the plan for the whole job.
+				if (!(planner instanceof GlobalPnpJobPlanner)) {
+					planner = new GlobalPnpJobPlanner();
+				}
+				((GlobalPnpJobPlanner) planner).setPlanningTimeMilliseconds(globalPlanningTimeMilliseconds);
+				((GlobalPnpJobPlanner) planner).setOrderHints(jobPartOrder, jobBoardOrder);
+				((GlobalPnpJobPlanner) planner).setTravelTime(head.getNozzles().isEmpty() ? null
+				        : MovableUtils.getTravelTimeEstimator(head.getNozzles().get(0)));
+				break;
+			default:
+				throw new JobProcessorException(planner,
+						String.format("Wrong job planner seleced (%s)!", jobPlanner.name()));
+			}
+//			}
+
+        long t = System.currentTimeMillis();
+        List<PlannedPlacement> plannedPlacements = planner.plan(head, jobPlacements);
+        Logger.debug("Planner complete in {}ms: {}", (System.currentTimeMillis() - t), plannedPlacements);
+        return plannedPlacements;
+    }
+
     protected class ChangeNozzleTips extends PlannedPlacementStep {
         public ChangeNozzleTips(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
@@ -619,9 +1065,27 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             super(plannedPlacements);
         }
 
+        @Override
+        protected Location getTravelLocation(PlannedPlacement plannedPlacement) throws Exception {
+            // The pick uses the same feeder.
+            return getPlannedFeeder(plannedPlacement).getPickLocation();
+        }
+
+        @Override
+        protected Location getTravelEndLocation() throws Exception {
+            // After picking, the parts are aligned on the bottom camera, if any.
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                if (findPartAligner(machine, plannedPlacement.jobPlacement.getPlacement().getPart()) != null) {
+                    return toHeadLocation(plannedPlacement.nozzle, VisionUtils.getBottomVisionCamera().getLocation());
+                }
+            }
+            return null;
+        }
+
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
+                preFeedNextCycle();
                 return new Align(plannedPlacements);
             }
 
@@ -641,7 +1105,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                  * Find an available feeder. If one cannot be found this will throw. There's nothing
                  * else we can do with this part.
                  */
-                final Feeder feeder = findFeeder(machine, part);
+                final Feeder feeder = getPlannedFeeder(plannedPlacement);
 
                 /**
                  * Run the placement starting script. An error here will throw. That's the user's
@@ -656,18 +1120,12 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                     params.put("placement", placement);
                     params.put("boardLocation", boardLocation);
                     params.put("feeder", feeder);
-                    Configuration.get()
-                                 .getScripting()
-                                 .on("Job.Placement.Starting", params);
-
-
-                    Preferences prefs = Preferences.userNodeForPackage(JobPanel.class);
-                    prefs.putInt("LAST_ACTIVE_BOARDLOCATION", boardLocation.hashCode());
-
+                    runScript("Job.Placement.Starting", params);
                 }
                 catch (Exception e) {
                     throw new JobProcessorException(null, e);
                 }
+                setActiveBoardLocation(boardLocation);
 
                 /**
                  * Feed the feeder, retrying up to feedRetryCount times. That happens within the
@@ -679,6 +1137,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 }
                 catch (JobProcessorException jpe) {
                     lastException = jpe;
+                    if (failOver(feeder, part, nozzle)) {
+                        // Switching feeders does not count as a retry.
+                        partPickTry--;
+                    }
                     continue;
                 }
 
@@ -697,6 +1159,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 catch (JobProcessorException jpe) {
                     lastException = jpe;
                     discard(nozzle);
+                    if (failOver(feeder, part, nozzle)) {
+                        partPickTry--;
+                    }
                     continue;
                 }
 
@@ -716,6 +1181,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         private void feed(Feeder feeder, Nozzle nozzle, Placement placement) throws JobProcessorException {
             Exception lastException = null;
             for (int i = 0; i < 1 + feeder.getFeedRetryCount(); i++) {
+                long t0 = System.nanoTime();
                 try {
                     fireTextStatus("Feed %s on %s.", feeder.getName(), feeder.getPart().getId());
                     // Reset Vision Suspension after one fail in bottom Vision detection
@@ -731,6 +1197,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 	e.printStackTrace();
                     lastException = e;
                 }
+                finally {
+                    addActivityTime(JobTimeline.Activity.Feed, t0);
+                }
             }
 
             if (placement.getErrorHandling() == ErrorHandling.Defer) {
@@ -843,10 +1312,40 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     protected class Align extends PlannedPlacementStep {
+        /**
+         * The pending overlapped alignments, started all at once before the first placement is aligned.
+         */
+        private Map<PlannedPlacement, Future<PartAlignmentOffset>> overlappedAlignments;
+
         public Align(List<PlannedPlacement> plannedPlacements) {
             super(plannedPlacements);
         }
 
+        private void startOverlappedAlignments() {
+            overlappedAlignments = new HashMap<>();
+            if (!overlappedAlignment) {
+                return;
+            }
+            for (PlannedPlacement plannedPlacement : getTravelOrder()) {
+                final JobPlacement jobPlacement = plannedPlacement.jobPlacement;
+                if (jobPlacement.getStatus() != Status.Processing) {
+                    continue;
+                }
+                final Placement placement = jobPlacement.getPlacement();
+                final Part part = placement.getPart();
+                final PartAlignment partAlignment = findPartAligner(machine, part);
+                if (partAlignment == null) {
+                    continue;
+                }
+                fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
+                overlappedAlignments.put(plannedPlacement, VisionUtils.startPartAlignment(
+                        partAlignment,
+                        part,
+                        jobPlacement.getBoardLocation(),
+                        placement.getLocation(), plannedPlacement.nozzle));
+            }
+        }
+
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
@@ -858,6 +1357,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             final Placement placement = jobPlacement.getPlacement();
             final Part part = placement.getPart();
 
+            if (overlappedAlignments == null) {
+                startOverlappedAlignments();
+            }
             final PartAlignment partAlignment = findPartAligner(machine, part);
             if (partAlignment == null) {
                 plannedPlacement.alignmentOffsets = null;
@@ -872,7 +1374,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             	part.failNumber++;
             	if(part.failNumber >= part.getPlaceRetryCount()) {
                     if (placement.getErrorHandling() == ErrorHandling.Defer) {
-                		findFeeder(machine, part).setEnabled(false);
+                        Feeder feeder = plannedPlacement.feeder != null
+                                ? plannedPlacement.feeder : findFeeder(machine, part);
+                        feeder.setEnabled(false);
                     }
             		part.failNumber = 0;
             		throw e;
@@ -898,8 +1402,27 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             final Part part = placement.getPart();
 
             Exception lastException = null;
-            for (int i = 0; i < ReferencePnpJobProcessor.this.getMaxVisionRetries(); i++) {
+            int i = 0;
+            Future<PartAlignmentOffset> overlapped = overlappedAlignments.remove(plannedPlacement);
+            if (overlapped != null) {
+                long t0 = System.nanoTime();
+                try {
+                    plannedPlacement.alignmentOffsets = VisionUtils.finishPartAlignment(part, nozzle, overlapped);
+                    Logger.debug("Align {} with {}, offsets {}", part, nozzle, plannedPlacement.alignmentOffsets);
+                    return;
+                }
+                catch (Exception e) {
+                    // Retry sequentially.
+                    lastException = e;
+                    i++;
+                }
+                finally {
+                    addActivityTime(JobTimeline.Activity.Vision, t0);
+                }
+            }
+            for (; i < ReferencePnpJobProcessor.this.getMaxVisionRetries(); i++) {
                 fireTextStatus("Aligning %s for %s.", part.getId(), placement.getId());
+                long t0 = System.nanoTime();
                 try {
                     plannedPlacement.alignmentOffsets = VisionUtils.findPartAlignmentOffsets(
                             partAlignment,
@@ -912,6 +1435,9 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 catch (Exception e) {
                     lastException = e;
                 }
+                finally {
+                    addActivityTime(JobTimeline.Activity.Vision, t0);
+                }
             }
             throw new JobProcessorException(part, lastException);
         }
@@ -939,6 +1465,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             super(plannedPlacements);
         }
 
+        @Override
+        protected Location getTravelLocation(PlannedPlacement plannedPlacement) throws Exception {
+            return getPlacementLocation(plannedPlacement);
+        }
+
         @Override
         public Step stepImpl(PlannedPlacement plannedPlacement) throws JobProcessorException {
             if (plannedPlacement == null) {
@@ -969,6 +1500,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
 
             totalPartsPlaced++;
 
+            if (checkpoint != null && journalPlacements) {
+                checkpoint.journalPlaced(job, boardLocation, jobPlacement.getPlacement(), plannedPlacement.feeder);
+            }
+            checkpoint(false);
+
             scriptComplete(plannedPlacement, placementLocation);
 
             return this;
@@ -1042,7 +1578,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 params.put("boardLocation", boardLocation);
                 params.put("placementLocation", placementLocation);
                 params.put("alignmentOffsets", plannedPlacement.alignmentOffsets);
-                Configuration.get().getScripting().on("Job.Placement.BeforeAssembly", params);
+                runScript("Job.Placement.BeforeAssembly", params);
             }
             catch (Exception e) {
             }
@@ -1063,7 +1599,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 params.put("placement", placement);
                 params.put("boardLocation", boardLocation);
                 params.put("placementLocation", placementLocation);
-                Configuration.get().getScripting().on("Job.Placement.Complete", params);
+                runScript("Job.Placement.Complete", params);
             }
             catch (Exception e) {
                 throw new JobProcessorException(null, e);
@@ -1131,6 +1667,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class FinishCycle implements Step {
         public Step step() throws JobProcessorException {
             discardAll(head);
+            checkpoint(true);
             return new Plan();
         }
     }
@@ -1139,6 +1676,10 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         public Step step() throws JobProcessorException {
             fireTextStatus("Cleaning up.");
 
+            nextPlannedPlacements = null;
+            nextJobPlacements = null;
+            cancelPreFeeds();
+
             try {
                 // Safe Z the machine
                 head.moveToSafeZ();
@@ -1168,17 +1709,13 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     protected class Finish implements Step {
         public Step step() throws JobProcessorException {
             new Cleanup().step();
+            clearCheckpoint();
 
             double dtSec = (System.currentTimeMillis() - startTime) / 1000.0;
             DecimalFormat df = new DecimalFormat("###,###.0");
 
             // Collect the errored placements
-            List<JobPlacement> erroredPlacements = jobPlacements
-                    .stream()
-                    .filter(jp -> {
-                        return jp.getStatus() == JobPlacement.Status.Errored;
-                    })
-                    .collect(Collectors.toList());
+            List<JobPlacement> erroredPlacements = jobPlacementIndex.getJobPlacements(Status.Errored);
 
             Logger.info("Job finished {} parts in {} sec. This is {} CPH", totalPartsPlaced,
                     df.format(dtSec), df.format(totalPartsPlaced / (dtSec / 3600.0)));
@@ -1187,9 +1724,7 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
                 HashMap<String, Object> params = new HashMap<>();
                 params.put("job", job);
                 params.put("jobProcessor", this);
-                Configuration.get()
-                             .getScripting()
-                             .on("Job.Finished", params);
+                runScript("Job.Finished", params);
             }
             catch (Exception e) {
                 throw new JobProcessorException(null, e);
@@ -1229,13 +1764,11 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
     }
 
     protected List<JobPlacement> getPendingJobPlacements() {
-        return this.jobPlacements.stream().filter((jobPlacement) -> {
-            return jobPlacement.getStatus() == Status.Pending;
-        }).collect(Collectors.toList());
+        return jobPlacementIndex.getJobPlacements(Status.Pending);
     }
 
     protected boolean isJobComplete() {
-        return getPendingJobPlacements().isEmpty();
+        return jobPlacementIndex.getCount(Status.Pending) == 0;
     }
 
     @Override
@@ -1275,14 +1808,233 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
         this.maxVisionRetries = maxVisionRetries;
     }
 
-    protected abstract class PlannedPlacementStep implements Step {
+    public long getGlobalPlanningTimeMilliseconds() {
+        return globalPlanningTimeMilliseconds;
+    }
+
+    public void setGlobalPlanningTimeMilliseconds(long globalPlanningTimeMilliseconds) {
+        this.globalPlanningTimeMilliseconds = globalPlanningTimeMilliseconds;
+    }
+
+    public boolean isOverlappedAlignment() {
+        return overlappedAlignment;
+    }
+
+    public void setOverlappedAlignment(boolean overlappedAlignment) {
+        this.overlappedAlignment = overlappedAlignment;
+    }
+
+    public boolean isCheckpointProgress() {
+        return checkpointProgress;
+    }
+
+    public void setCheckpointProgress(boolean checkpointProgress) {
+        this.checkpointProgress = checkpointProgress;
+    }
+
+    /**
+     * @param job
+     * @return True if checkpointing is enabled and an interrupted run of the job left a checkpoint
+     * behind, i.e. the user can be offered to resume it.
+     */
+    public boolean hasCheckpoint(Job job) {
+        if (!checkpointProgress) {
+            return false;
+        }
+        try {
+            JobCheckpoint checkpoint = JobCheckpoint.getDefault();
+            checkpoint.setReplayJournal(journalPlacements);
+            return checkpoint.hasCheckpoint(job);
+        }
+        catch (Exception e) {
+            Logger.warn(e);
+            return false;
+        }
+    }
+
+    /**
+     * Resume the progress from the checkpoint in the next {@link #initialize(Job)}. Call this only
+     * when the user has chosen to resume, otherwise the job starts over and the checkpoint is replaced.
+     *
+     * @param restoreFeedCounts Whether the feed counts of the feeders are restored too. Only if the
+     * user confirmed the feeders were not reloaded since the run was interrupted.
+     */
+    public void resumeFromCheckpoint(boolean restoreFeedCounts) {
+        resumeFromCheckpoint = true;
+        restoreCheckpointFeedCounts = restoreFeedCounts;
+    }
+
+    public long getCheckpointIntervalMilliseconds() {
+        return checkpointIntervalMilliseconds;
+    }
+
+    public void setCheckpointIntervalMilliseconds(long checkpointIntervalMilliseconds) {
+        this.checkpointIntervalMilliseconds = checkpointIntervalMilliseconds;
+    }
+
+    public boolean isJournalPlacements() {
+        return journalPlacements;
+    }
+
+    public void setJournalPlacements(boolean journalPlacements) {
+        this.journalPlacements = journalPlacements;
+    }
+
+    public boolean isExportTimeline() {
+        return exportTimeline;
+    }
+
+    public void setExportTimeline(boolean exportTimeline) {
+        this.exportTimeline = exportTimeline;
+    }
+
+    public boolean isOptimizeCycleTravel() {
+        return optimizeCycleTravel;
+    }
+
+    public void setOptimizeCycleTravel(boolean optimizeCycleTravel) {
+        this.optimizeCycleTravel = optimizeCycleTravel;
+    }
+
+    /**
+     * @param hm
+     * @param location
+     * @return The given HeadMountable location converted to the location of the head, so locations of
+     * different nozzles can be compared.
+     */
+    protected static Location toHeadLocation(HeadMountable hm, Location location) {
+        if (hm instanceof ReferenceHeadMountable) {
+            return location.subtract(((ReferenceHeadMountable) hm).getHeadOffsets());
+        }
+        return location;
+    }
+
+    /**
+     * @param hm
+     * @param location
+     * @return The given head location converted to the location of the HeadMountable, the inverse of
+     * {@link #toHeadLocation(HeadMountable, Location)}.
+     */
+    protected static Location fromHeadLocation(HeadMountable hm, Location location) {
+        if (hm instanceof ReferenceHeadMountable) {
+            return location.add(((ReferenceHeadMountable) hm).getHeadOffsets());
+        }
+        return location;
+    }
+
+    protected abstract class PlannedPlacementStep implements Step {
         protected final List<PlannedPlacement> plannedPlacements;
         private Set<PlannedPlacement> completed = new HashSet<>();
 
+        /**
+         * The position in the travel order before which no PlannedPlacement is left to process.
+         * Placements only ever leave the Processing status during a step, so it only moves forward.
+         */
+        private int cursor = 0;
+        private List<PlannedPlacement> travelOrder;
+
         protected PlannedPlacementStep(List<PlannedPlacement> plannedPlacements) {
             this.plannedPlacements = plannedPlacements;
         }
 
+        /**
+         * Steps that travel to a Location for each planned placement can override this, so the planned
+         * placements are processed in the order of the shortest travel time, rather than in list order.
+         *
+         * @param plannedPlacement
+         * @return The Location the given plannedPlacement's nozzle will be moved to, or null if the step does
+         * not travel or the Location is not known.
+         * @throws Exception
+         */
+        protected Location getTravelLocation(PlannedPlacement plannedPlacement) throws Exception {
+            return null;
+        }
+
+        /**
+         * @return The Location where the head is going after the step, converted with 
+         * {@link ReferencePnpJobProcessor#toHeadLocation(HeadMountable, Location)}, or null if the route is 
+         * open ended.
+         * @throws Exception
+         */
+        protected Location getTravelEndLocation() throws Exception {
+            return null;
+        }
+
+        /**
+         * @return The planned placements in the order they are processed. Computed once, on the first step, when
+         * the head is at the start of the route.
+         */
+        protected List<PlannedPlacement> getTravelOrder() {
+            if (travelOrder == null) {
+                travelOrder = optimizeTravelOrder();
+            }
+            return travelOrder;
+        }
+
+        private List<PlannedPlacement> optimizeTravelOrder() {
+            if (!isOptimizeCycleTravel() || plannedPlacements.size() < 2) {
+                return plannedPlacements;
+            }
+            // Placements with an unknown Location go first, in list order, so any error surfaces just as before.
+            List<PlannedPlacement> order = new ArrayList<>();
+            List<PlannedPlacement> travel = new ArrayList<>();
+            HashMap<PlannedPlacement, Location> locations = new HashMap<>();
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                Location location = null;
+                try {
+                    location = getTravelLocation(plannedPlacement);
+                }
+                catch (Exception e) {
+                    Logger.trace(e);
+                }
+                if (location == null) {
+                    order.add(plannedPlacement);
+                }
+                else {
+                    locations.put(plannedPlacement, toHeadLocation(plannedPlacement.nozzle, location));
+                    travel.add(plannedPlacement);
+                }
+            }
+            if (travel.size() < 2) {
+                return plannedPlacements;
+            }
+            // The head locations are estimated as moves of the first nozzle, with its offsets added back, 
+            // so the estimator sees the nozzle's own axes, limits and Safe Z.
+            Nozzle nozzle = travel.get(0).nozzle;
+            for (PlannedPlacement plannedPlacement : travel) {
+                locations.put(plannedPlacement, fromHeadLocation(nozzle, locations.get(plannedPlacement)));
+            }
+            Location startLocation = null;
+            Location endLocation = null;
+            TravellingSalesman.TravelTime travelTime = null;
+            try {
+                startLocation = nozzle.getLocation();
+                travelTime = MovableUtils.getTravelTimeEstimator(nozzle);
+                endLocation = getTravelEndLocation();
+                if (endLocation != null) {
+                    endLocation = fromHeadLocation(nozzle, endLocation);
+                }
+            }
+            catch (Exception e) {
+                Logger.warn(e);
+            }
+            TravellingSalesman<PlannedPlacement> tsm = new TravellingSalesman<>(
+                    travel,
+                    new TravellingSalesman.Locator<PlannedPlacement>() {
+                        @Override
+                        public Location getLocation(PlannedPlacement locatable) {
+                            return locations.get(locatable);
+                        }
+                    },
+                    startLocation,
+                    endLocation,
+                    travelTime);
+            tsm.solve();
+            order.addAll(tsm.getTravel());
+            Logger.debug("{} travel order {} solved in {}ms", getClass().getSimpleName(), order, tsm.getSolverDuration());
+            return order;
+        }
+
         /**
          * Process the step for the given planned placement. The method should perform everything
          * that needs to be done with that planned placement before returning. If there is an
@@ -1307,16 +2059,20 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
              * Get the first planned placement from the list that is still in processing status
              * and that is not marked completed.
              */
-            PlannedPlacement plannedPlacement = plannedPlacements
-                    .stream()
-                    .filter(p -> {
-                        return p.jobPlacement.getStatus() == Status.Processing;
-                    })
-                    .filter(p -> {
-                        return !completed.contains(p);
-                    })
-                    .findFirst()
-                    .orElse(null);
+            List<PlannedPlacement> travelOrder = getTravelOrder();
+            PlannedPlacement plannedPlacement = null;
+            for (; cursor < travelOrder.size(); cursor++) {
+                PlannedPlacement p = travelOrder.get(cursor);
+                if (p.jobPlacement.getStatus() == Status.Processing && !completed.contains(p)) {
+                    plannedPlacement = p;
+                    break;
+                }
+            }
+            if (plannedPlacement != null) {
+                timeline.setPlacement(plannedPlacement.jobPlacement.getPlacement().getId(),
+                        plannedPlacement.jobPlacement.getPlacement().getPart().getId(),
+                        plannedPlacement.nozzle.getName());
+            }
             try {
                 Step result = stepImpl(plannedPlacement);
                 completed.add(plannedPlacement);
@@ -1651,4 +2407,465 @@ public class ReferencePnpJobProcessor extends AbstractPnpJobProcessor {
             return null;
         }
     }
+
+    /**
+     * A planner that plans the whole job up front, as a sequence of cycles, and then hands out one
+     * cycle after the other. As long as the pending placements are the ones that were planned, the
+     * plan is kept; if they change, e.g. because a placement is retried or the job was edited, the
+     * remaining job is re-planned.
+     *
+     * Planning is done in two phases. The first phase fills the cycles, keeping loaded nozzle tips as
+     * long as there are compatible placements left and otherwise changing to the nozzle tip that can
+     * serve the most placements, so nozzle tip changes are minimized. Within a cycle the nozzles are
+     * filled with placements whose feeders and board locations are close to each other. The second
+     * phase swaps placements between cycles for as long as the planning time allows, whenever this
+     * reduces the travel time within the cycles. The travel time is estimated with the given TravelTime
+     * function, or by the distance if none is given. A re-plan only gets a fraction of the planning time,
+     * as it typically happens in the middle of the job.
+     *
+     * Placements are only ever grouped or swapped with placements of the same order tier, i.e. the
+     * same part height with the PartHeight part order, and the same board with the OneByOne board
+     * order, so the order given by the job processor is preserved from cycle to cycle.
+     */
+    @Root
+    public static class GlobalPnpJobPlanner implements PnpJobPlanner {
+        /**
+         * Fraction of the planning time given to a re-plan.
+         */
+        private static final int replanningTimeDivisor = 10;
+
+        private long planningTimeMilliseconds = 2000;
+        private JobPartOrderHint jobPartOrder = JobPartOrderHint.PartHeight;
+        private JobBoardOrderHint jobBoardOrder = JobBoardOrderHint.AllAtOnce;
+        private TravellingSalesman.TravelTime travelTime;
+
+        private List<Cycle> cycles = new ArrayList<>();
+        private Set<JobPlacement> plannedJobPlacements = new HashSet<>();
+        private HashMap<JobPlacement, Location> pickLocations = new HashMap<>();
+        private HashMap<JobPlacement, Location> placeLocations = new HashMap<>();
+        /**
+         * The TravelTime used by the current planning, or null to use the distance. 
+         */
+        private TravellingSalesman.TravelTime estimator;
+        /**
+         * Estimated travel times, by the identity of the from and to Locations.
+         */
+        private IdentityHashMap<Location, IdentityHashMap<Location, Double>> travelTimes = new IdentityHashMap<>();
+
+        @SuppressWarnings("serial")
+        private static class TravelTimeException extends RuntimeException {
+            TravelTimeException(Exception cause) {
+                super(cause);
+            }
+        }
+
+        private static class Cycle {
+            final List<Nozzle> nozzles = new ArrayList<>();
+            final List<NozzleTip> nozzleTips = new ArrayList<>();
+            final List<JobPlacement> jobPlacements = new ArrayList<>();
+            double cost;
+        }
+
+        public void setPlanningTimeMilliseconds(long planningTimeMilliseconds) {
+            this.planningTimeMilliseconds = planningTimeMilliseconds;
+        }
+
+        public void setOrderHints(JobPartOrderHint jobPartOrder, JobBoardOrderHint jobBoardOrder) {
+            this.jobPartOrder = jobPartOrder;
+            this.jobBoardOrder = jobBoardOrder;
+        }
+
+        /**
+         * @param travelTime The function to estimate the travel time between pick and place locations, or
+         * null to use the distance.
+         */
+        public void setTravelTime(TravellingSalesman.TravelTime travelTime) {
+            this.travelTime = travelTime;
+        }
+
+        @Override
+        public List<PlannedPlacement> plan(Head head, List<JobPlacement> jobPlacements) {
+            Set<JobPlacement> pending = new HashSet<>(jobPlacements);
+            if (!plannedJobPlacements.equals(pending)) {
+                // If some of the placements were already planned, this is a re-plan in the middle of the job.
+                boolean replan = !Collections.disjoint(plannedJobPlacements, pending);
+                planJob(head, jobPlacements, replan 
+                        ? planningTimeMilliseconds/replanningTimeDivisor : planningTimeMilliseconds);
+            }
+            List<PlannedPlacement> plannedPlacements = new ArrayList<>();
+            if (cycles.isEmpty()) {
+                return plannedPlacements;
+            }
+            Cycle cycle = cycles.remove(0);
+            for (int i = 0; i < cycle.jobPlacements.size(); i++) {
+                JobPlacement jobPlacement = cycle.jobPlacements.get(i);
+                plannedPlacements.add(new PlannedPlacement(cycle.nozzles.get(i), cycle.nozzleTips.get(i), jobPlacement));
+                plannedJobPlacements.remove(jobPlacement);
+            }
+            plannedPlacements.sort(Comparator.comparing(plannedPlacement -> {
+                return plannedPlacement.nozzle.getName();
+            }));
+            return plannedPlacements;
+        }
+
+        protected void planJob(Head head, List<JobPlacement> jobPlacements, long planningTime) {
+            try {
+                planJob(head, jobPlacements, planningTime, travelTime);
+            }
+            catch (TravelTimeException e) {
+                Logger.warn("Global planner: travel time estimation failed, planning by distance instead. {}", 
+                        e.getCause());
+                planJob(head, jobPlacements, planningTime, null);
+            }
+        }
+
+        protected void planJob(Head head, List<JobPlacement> jobPlacements, long planningTime, 
+                TravellingSalesman.TravelTime estimator) {
+            long t = System.currentTimeMillis();
+            this.estimator = estimator;
+            travelTimes.clear();
+            cycles.clear();
+            plannedJobPlacements.clear();
+            // Remember all the placements, including any that can't be planned, so the plan is kept.
+            plannedJobPlacements.addAll(jobPlacements);
+            computeLocations(head, jobPlacements);
+
+            // Phase one: fill the cycles.
+            HashMap<Nozzle, NozzleTip> loadedNozzleTips = new HashMap<>();
+            for (Nozzle nozzle : head.getNozzles()) {
+                loadedNozzleTips.put(nozzle, nozzle.getNozzleTip());
+            }
+            List<JobPlacement> remaining = new ArrayList<>(jobPlacements);
+            int nozzleTipChanges = 0;
+            while (!remaining.isEmpty()) {
+                Cycle cycle = new Cycle();
+                nozzleTipChanges += planCycle(head, cycle, remaining, loadedNozzleTips);
+                if (cycle.jobPlacements.isEmpty()) {
+                    // The rest can't be planned with the nozzles and nozzle tips of this machine.
+                    break;
+                }
+                cycle.cost = getCost(cycle);
+                cycles.add(cycle);
+            }
+            double initialCost = getTotalCost();
+
+            // Phase two: improve the travel.
+            int swaps = optimize(System.currentTimeMillis() + planningTime);
+
+            Logger.info("Global planner: {} placements in {} cycles with {} nozzle tip changes, travel {}{} "
+                    + "reduced to {}{} by {} swaps, planned in {}ms.",
+                    jobPlacements.size() - remaining.size(), cycles.size(), nozzleTipChanges,
+                    String.format("%.1f", initialCost), estimator != null ? "s" : "mm",
+                    String.format("%.1f", getTotalCost()), estimator != null ? "s" : "mm", 
+                    swaps, System.currentTimeMillis() - t);
+        }
+
+        /**
+         * Plan the next cycle from the remaining placements, removing the planned ones.
+         *
+         * @return The number of nozzle tip changes needed.
+         */
+        protected int planCycle(Head head, Cycle cycle, List<JobPlacement> remaining,
+                HashMap<Nozzle, NozzleTip> loadedNozzleTips) {
+            int nozzleTipChanges = 0;
+            List<Nozzle> free = new ArrayList<>(head.getNozzles());
+            Set<NozzleTip> claimed = new HashSet<>();
+            int windowEnd = getTierEnd(remaining, 0);
+            while (!free.isEmpty()) {
+                // The window is the remaining placements of the current tier.
+                List<JobPlacement> window = new ArrayList<>(remaining.subList(0, windowEnd));
+                window.removeAll(cycle.jobPlacements);
+                // First pass without, second pass with nozzle tip changes.
+                for (boolean change : new boolean[] { false, true }) {
+                    for (Nozzle nozzle : new ArrayList<>(free)) {
+                        NozzleTip nozzleTip = change
+                                ? getBestNozzleTip(head, nozzle, window, claimed)
+                                : loadedNozzleTips.get(nozzle);
+                        if (nozzleTip == null || claimed.contains(nozzleTip)) {
+                            continue;
+                        }
+                        JobPlacement jobPlacement = getClosestJobPlacement(cycle, window, nozzleTip);
+                        if (jobPlacement == null) {
+                            continue;
+                        }
+                        if (loadedNozzleTips.get(nozzle) != nozzleTip) {
+                            // The nozzle tip might be loaded on another nozzle, which loses it.
+                            for (Nozzle other : head.getNozzles()) {
+                                if (loadedNozzleTips.get(other) == nozzleTip) {
+                                    loadedNozzleTips.put(other, null);
+                                }
+                            }
+                            loadedNozzleTips.put(nozzle, nozzleTip);
+                            nozzleTipChanges++;
+                        }
+                        claimed.add(nozzleTip);
+                        cycle.nozzles.add(nozzle);
+                        cycle.nozzleTips.add(nozzleTip);
+                        cycle.jobPlacements.add(jobPlacement);
+                        window.remove(jobPlacement);
+                        free.remove(nozzle);
+                    }
+                }
+                // Only fill up the cycle from the next tier, if the current tier is used up.
+                if (!window.isEmpty() || windowEnd >= remaining.size()) {
+                    break;
+                }
+                windowEnd = getTierEnd(remaining, windowEnd);
+            }
+            remaining.removeAll(cycle.jobPlacements);
+            return nozzleTipChanges;
+        }
+
+        /**
+         * @return The nozzle tip that is compatible with the nozzle and not yet claimed in the cycle,
+         * that can serve the most placements in the window, or null if none can.
+         */
+        protected NozzleTip getBestNozzleTip(Head head, Nozzle nozzle, List<JobPlacement> window,
+                Set<NozzleTip> claimed) {
+            NozzleTip best = null;
+            int bestCount = 0;
+            for (NozzleTip nozzleTip : head.getMachine().getNozzleTips()) {
+                if (claimed.contains(nozzleTip) || !nozzle.getCompatibleNozzleTips().contains(nozzleTip)) {
+                    continue;
+                }
+                int count = 0;
+                for (JobPlacement jobPlacement : window) {
+                    if (isCompatible(jobPlacement, nozzleTip)) {
+                        count++;
+                    }
+                }
+                if (count > bestCount) {
+                    best = nozzleTip;
+                    bestCount = count;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * @return For an empty cycle, the first placement in the window that is compatible with the
+         * nozzle tip, otherwise the compatible placement with its feeder and board location closest to
+         * the ones already in the cycle.
+         */
+        protected JobPlacement getClosestJobPlacement(Cycle cycle, List<JobPlacement> window, NozzleTip nozzleTip) {
+            if (cycle.jobPlacements.isEmpty()) {
+                for (JobPlacement jobPlacement : window) {
+                    if (isCompatible(jobPlacement, nozzleTip)) {
+                        return jobPlacement;
+                    }
+                }
+                return null;
+            }
+            Location pickCenter = getCenter(cycle.jobPlacements, pickLocations);
+            Location placeCenter = getCenter(cycle.jobPlacements, placeLocations);
+            JobPlacement best = null;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (JobPlacement jobPlacement : window) {
+                if (!isCompatible(jobPlacement, nozzleTip)) {
+                    continue;
+                }
+                double distance = getDistance(pickCenter, pickLocations.get(jobPlacement))
+                        + getDistance(placeCenter, placeLocations.get(jobPlacement));
+                if (distance < bestDistance) {
+                    best = jobPlacement;
+                    bestDistance = distance;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Swap placements between random cycles, as long as this reduces the travel, until the deadline.
+         *
+         * @return The number of swaps done.
+         */
+        protected int optimize(long deadline) {
+            if (cycles.size() < 2) {
+                return 0;
+            }
+            Random random = new Random(0);
+            int swaps = 0;
+            long maxIterations = 1000L * plannedJobPlacements.size();
+            for (long iteration = 0; iteration < maxIterations; iteration++) {
+                if ((iteration & 0xFF) == 0 && System.currentTimeMillis() > deadline) {
+                    break;
+                }
+                Cycle cycleA = cycles.get(random.nextInt(cycles.size()));
+                Cycle cycleB = cycles.get(random.nextInt(cycles.size()));
+                if (cycleA == cycleB) {
+                    continue;
+                }
+                int a = random.nextInt(cycleA.jobPlacements.size());
+                int b = random.nextInt(cycleB.jobPlacements.size());
+                JobPlacement jobPlacementA = cycleA.jobPlacements.get(a);
+                JobPlacement jobPlacementB = cycleB.jobPlacements.get(b);
+                if (!isSameTier(jobPlacementA, jobPlacementB)
+                        || !isCompatible(jobPlacementA, cycleB.nozzleTips.get(b))
+                        || !isCompatible(jobPlacementB, cycleA.nozzleTips.get(a))) {
+                    continue;
+                }
+                cycleA.jobPlacements.set(a, jobPlacementB);
+                cycleB.jobPlacements.set(b, jobPlacementA);
+                double costA = getCost(cycleA);
+                double costB = getCost(cycleB);
+                if (costA + costB < cycleA.cost + cycleB.cost - 1e-6) {
+                    cycleA.cost = costA;
+                    cycleB.cost = costB;
+                    swaps++;
+                }
+                else {
+                    cycleA.jobPlacements.set(a, jobPlacementA);
+                    cycleB.jobPlacements.set(b, jobPlacementB);
+                }
+            }
+            return swaps;
+        }
+
+        protected void computeLocations(Head head, List<JobPlacement> jobPlacements) {
+            pickLocations.clear();
+            placeLocations.clear();
+            HashMap<Part, Location> feederLocations = new HashMap<>();
+            for (JobPlacement jobPlacement : jobPlacements) {
+                Part part = jobPlacement.getPlacement().getPart();
+                if (!feederLocations.containsKey(part)) {
+                    Location location = null;
+                    try {
+                        location = findFeeder(head.getMachine(), part).getPickLocation()
+                                .convertToUnits(LengthUnit.Millimeters);
+                    }
+                    catch (Exception e) {
+                        // No feeder yet, the location is unknown.
+                    }
+                    feederLocations.put(part, location);
+                }
+                pickLocations.put(jobPlacement, feederLocations.get(part));
+                placeLocations.put(jobPlacement, Utils2D.calculateBoardPlacementLocation(
+                        jobPlacement.getBoardLocation(), jobPlacement.getPlacement().getLocation())
+                        .convertToUnits(LengthUnit.Millimeters));
+            }
+        }
+
+        /**
+         * @return The travel of the cycle, as the travel time (or length) of the shortest nearest neighbor 
+         * paths through the pick locations and through the place locations.
+         */
+        protected double getCost(Cycle cycle) {
+            return getPathLength(cycle.jobPlacements, pickLocations)
+                    + getPathLength(cycle.jobPlacements, placeLocations);
+        }
+
+        protected double getTotalCost() {
+            double cost = 0;
+            for (Cycle cycle : cycles) {
+                cost += cycle.cost;
+            }
+            return cost;
+        }
+
+        private double getPathLength(List<JobPlacement> jobPlacements, HashMap<JobPlacement, Location> locations) {
+            List<Location> points = new ArrayList<>();
+            for (JobPlacement jobPlacement : jobPlacements) {
+                Location point = locations.get(jobPlacement);
+                if (point != null) {
+                    points.add(point);
+                }
+            }
+            int n = points.size();
+            double best = Double.POSITIVE_INFINITY;
+            for (int start = 0; start < n; start++) {
+                boolean [] visited = new boolean[n];
+                visited[start] = true;
+                int current = start;
+                double length = 0;
+                for (int k = 1; k < n; k++) {
+                    int next = -1;
+                    double nextDistance = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < n; i++) {
+                        if (!visited[i]) {
+                            double distance = getTravelCost(points.get(current), points.get(i));
+                            if (distance < nextDistance) {
+                                next = i;
+                                nextDistance = distance;
+                            }
+                        }
+                    }
+                    visited[next] = true;
+                    current = next;
+                    length += nextDistance;
+                }
+                best = Math.min(best, length);
+            }
+            return n > 0 ? best : 0;
+        }
+
+        private Location getCenter(List<JobPlacement> jobPlacements, HashMap<JobPlacement, Location> locations) {
+            double x = 0;
+            double y = 0;
+            int n = 0;
+            for (JobPlacement jobPlacement : jobPlacements) {
+                Location point = locations.get(jobPlacement);
+                if (point != null) {
+                    x += point.getX();
+                    y += point.getY();
+                    n++;
+                }
+            }
+            return n > 0 ? new Location(LengthUnit.Millimeters, x/n, y/n, 0, 0) : null;
+        }
+
+        private static double getDistance(Location a, Location b) {
+            if (a == null || b == null) {
+                return 0;
+            }
+            return Math.hypot(a.getX() - b.getX(), a.getY() - b.getY());
+        }
+
+        /**
+         * @return The estimated travel time from one location to the other, or the distance if there is no
+         * estimator. The times are memoized, as the same pairs are evaluated over and over by the optimization.
+         */
+        private double getTravelCost(Location a, Location b) {
+            if (estimator == null || a == null || b == null) {
+                return getDistance(a, b);
+            }
+            IdentityHashMap<Location, Double> times = travelTimes.computeIfAbsent(a, k -> new IdentityHashMap<>());
+            Double time = times.get(b);
+            if (time == null) {
+                try {
+                    time = estimator.getTravelTime(a, b);
+                }
+                catch (Exception e) {
+                    throw new TravelTimeException(e);
+                }
+                times.put(b, time);
+            }
+            return time;
+        }
+
+        private static boolean isCompatible(JobPlacement jobPlacement, NozzleTip nozzleTip) {
+            Part part = jobPlacement.getPlacement().getPart();
+            return part != null && part.getPackage() != null
+                    && part.getPackage().getCompatibleNozzleTips().contains(nozzleTip);
+        }
+
+        private boolean isSameTier(JobPlacement a, JobPlacement b) {
+            if (jobBoardOrder == JobBoardOrderHint.OneByOne
+                    && !Objects.equals(a.getBoardLocation().getPanelPos(), b.getBoardLocation().getPanelPos())) {
+                return false;
+            }
+            if (jobPartOrder == JobPartOrderHint.PartHeight
+                    && a.getPartHeight() != b.getPartHeight()) {
+                return false;
+            }
+            return true;
+        }
+
+        private int getTierEnd(List<JobPlacement> jobPlacements, int start) {
+            int end = start + 1;
+            while (end < jobPlacements.size() && isSameTier(jobPlacements.get(start), jobPlacements.get(end))) {
+                end++;
+            }
+            return end;
+        }
+    }
 }
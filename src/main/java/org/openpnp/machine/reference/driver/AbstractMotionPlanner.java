@@ -24,8 +24,10 @@ package org.openpnp.machine.reference.driver;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -42,9 +44,13 @@ import org.openpnp.model.AxesLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.Length;
 import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
 import org.openpnp.model.Motion;
 import org.openpnp.model.Motion.MotionOption;
 import org.openpnp.model.Motion.MoveToCommand;
+import org.openpnp.model.MotionHistory;
+import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfileCache;
 import org.openpnp.spi.Actuator;
 import org.openpnp.spi.Axis;
 import org.openpnp.spi.Axis.Type;
@@ -59,6 +65,7 @@ import org.openpnp.util.NanosecondTime;
 import org.openpnp.util.Utils2D;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
+import org.simpleframework.xml.core.Commit;
 
 /**
  * The AbstractMotionPlanner does all the boring legwork for a typical MotionPlanner and provides the basis for 
@@ -80,14 +87,82 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     @Attribute(required=false)
     private double maximumPlanHistory = 60; // s
 
+    /**
+     * Number of solved motion profiles cached for reuse by repeated moves. 0 switches the cache off,
+     * which is the default.
+     */
+    @Attribute(required=false)
+    private int motionProfileCacheSize = 0;
+
+    /**
+     * If the machine has multiple drivers, dispatch the command streams and completion waits to the 
+     * drivers concurrently. Off by default, as drivers sharing one communications link or relying on a
+     * fixed command order across controllers must be serviced sequentially.
+     */
+    @Attribute(required=false)
+    private boolean parallelDriverDispatch = false;
+
+    private static ExecutorService driverExecutor;
+
+    /**
+     * Maximum number of Motions retained in the real-time motion plan, regardless of maximumPlanHistory.
+     */
+    private static final int maximumPlanSize = 4096;
+
     private ReferenceMachine machine;
 
     protected LinkedList<Motion> motionCommands = new LinkedList<>();
-    protected TreeMap<Double, Motion> motionPlan = new TreeMap<Double, Motion>();
+    protected MotionHistory motionPlan = new MotionHistory(maximumPlanSize);
 
     private AxesLocation lastDirectionalBacklashOffset = new AxesLocation();
+    private double totalMotionTime = 0;
     private List<Driver> lastPlannedDrivers = new ArrayList<Driver>(); 
 
+    public AbstractMotionPlanner() {
+        applyMotionProfileCacheSize();
+    }
+
+    @Commit
+    public void commit() {
+        applyMotionProfileCacheSize();
+    }
+
+    protected void applyMotionProfileCacheSize() {
+        if (motionProfileCacheSize > 0) {
+            MotionProfileCache cache = MotionProfile.getSolutionCache();
+            if (cache == null) {
+                MotionProfile.setSolutionCache(new MotionProfileCache(motionProfileCacheSize));
+            }
+            else {
+                cache.setCapacity(motionProfileCacheSize);
+            }
+        }
+        else {
+            MotionProfile.setSolutionCache(null);
+        }
+    }
+
+    public boolean isParallelDriverDispatch() {
+        return parallelDriverDispatch;
+    }
+
+    public void setParallelDriverDispatch(boolean parallelDriverDispatch) {
+        Object oldValue = this.parallelDriverDispatch;
+        this.parallelDriverDispatch = parallelDriverDispatch;
+        firePropertyChange("parallelDriverDispatch", oldValue, parallelDriverDispatch);
+    }
+
+    public int getMotionProfileCacheSize() {
+        return motionProfileCacheSize;
+    }
+
+    public void setMotionProfileCacheSize(int motionProfileCacheSize) {
+        Object oldValue = this.motionProfileCacheSize;
+        this.motionProfileCacheSize = motionProfileCacheSize;
+        applyMotionProfileCacheSize();
+        firePropertyChange("motionProfileCacheSize", oldValue, motionProfileCacheSize);
+    }
+
     @Override
     public synchronized void home() throws Exception {
         // Reset lastDirectionalBacklashOffset (we don't actually know it after homing, but it will be known after the first move).
@@ -346,9 +421,9 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         // Now execute the plan against the drivers.
         // We also record it into the real-time motionPlan to enable motion prediction and simulation. 
         double t = NanosecondTime.getRuntimeSeconds();
-        if (motionPlan.isEmpty() == false && motionPlan.lastKey() > t) {
+        if (motionPlan.getLastTime() > t) {
             // Append to a plan that is still running. 
-            t = motionPlan.lastKey();
+            t = motionPlan.getLastTime();
         }
         ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
         List<Head> movedHeads = new ArrayList<>();
@@ -357,11 +432,12 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
             if (!plannedMotion.hasOption(MotionOption.Stillstand)) {
                 // Put into timed plan.
                 double dt = plannedMotion.getTime();
-                // Note, all-virtual moves can have dt == 0.0, so we take a nano-second, to make sure a new Map entry is created 
+                // Note, all-virtual moves can have dt == 0.0, so we take a nano-second, to make sure a new entry is created 
                 // in the motionPlan.
                 t += Math.max(dt, 1e-9);  
+                totalMotionTime += dt;
                 plannedMotion.setPlannedTime1(t);
-                motionPlan.put(t, plannedMotion);
+                motionPlan.add(t, plannedMotion);
                 // Execute across drivers.
                 ReferenceHeadMountable  hm = (ReferenceHeadMountable) plannedMotion.getHeadMountable();
                 if (hm != null) {
@@ -374,6 +450,10 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         }
         // Publish recorded Diagnostics
         publishDiagnostics();
+        MotionProfileCache solutionCache = MotionProfile.getSolutionCache();
+        if (solutionCache != null) {
+            Logger.trace("{}", solutionCache);
+        }
         // Notify heads.
         for (Head movedHead : movedHeads) {
             machine.fireMachineHeadActivity(movedHead);
@@ -403,9 +483,37 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
     protected boolean executeMoveTo(ReferenceMachine machine, ReferenceHeadMountable hm,
             Motion plannedMotion, boolean firstAfterCoordination) throws Exception {
         AxesLocation motionSegment = plannedMotion.getLocation0().motionSegmentTo(plannedMotion.getLocation1());
+        List<Driver> drivers = motionSegment.getAxesDrivers(machine);
+        if (parallelDriverDispatch && drivers.size() > 1) {
+            // Multiple drivers: interpolate up front, then send the command streams to the drivers concurrently. 
+            // Note, interlockMotionAcrossDrivers() has already made sure that nothing else is pending on the drivers.  
+            List<List<Motion.MoveToCommand>> streams = new ArrayList<>();
+            for (Driver driver : drivers) {
+                streams.add(plannedMotion.interpolatedMoveToCommands(driver, isInterpolationRetiming()));
+            }
+            executeOnDrivers(drivers, (driver) -> {
+                for (Motion.MoveToCommand moveToCommand : streams.get(drivers.indexOf(driver))) {
+                    driver.moveTo(hm, moveToCommand);
+                }
+            });
+            // Record the diagnostics afterwards, in driver order.
+            boolean firstDriver = true;
+            for (int i = 0; i < drivers.size(); i++) {
+                for (Motion.MoveToCommand moveToCommand : streams.get(i)) {
+                    try {
+                        recordDiagnostics(plannedMotion, moveToCommand, drivers.get(i), firstAfterCoordination, firstDriver);
+                    }
+                    catch (Exception e) {
+                        Logger.error(drivers.get(i).getName()+" diagnostics failed: {}", e);
+                    }
+                }
+                firstDriver = false;
+            }
+            return true;
+        }
         // Note, this loop will be empty if the motion is empty, i.e. if it only contains VirtualAxis movement.
         boolean firstDriver = true;
-        for (Driver driver : motionSegment.getAxesDrivers(machine)) {
+        for (Driver driver : drivers) {
             for (Motion.MoveToCommand moveToCommand : plannedMotion
                     .interpolatedMoveToCommands(driver, isInterpolationRetiming())) {
                 driver.moveTo(hm, moveToCommand);
@@ -510,21 +618,80 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
         }
     }
 
+    @Override
+    public double estimateTravelTime(HeadMountable hm, Location from, Location to, double speed)
+            throws Exception {
+        to = to.convertToUnits(from.getUnits());
+        Length safeZ = hm.getEffectiveSafeZ();
+        if (safeZ == null) {
+            return estimateMotionTime(hm, from, to, speed);
+        }
+        // Same legs as MovableUtils.moveToLocationAtSafeZ(): up to Safe Z (unless already higher),
+        // across at Safe Z, then down to the target.
+        double z = safeZ.convertToUnits(from.getUnits()).getValue();
+        Location fromSafeZ = from.derive(null, null, Math.max(z, from.getZ()), null);
+        Location toSafeZ = to.derive(null, null, fromSafeZ.getZ(), null);
+        return estimateMotionTime(hm, from, fromSafeZ, speed)
+                + estimateMotionTime(hm, fromSafeZ, toSafeZ, speed)
+                + estimateMotionTime(hm, toSafeZ, to, speed);
+    }
+
+    /**
+     * Estimate the time of a single straight move of the HeadMountable. The Motion is created but never
+     * added to the plan. As the axes MotionProfiles are solved through the MotionProfile solution cache,
+     * repeated estimates of similar moves are cheap.
+     *
+     * Note, the estimate does not include backlash compensation or any motion blending by advanced planners,
+     * it is therefore slightly conservative.
+     *
+     * @param hm
+     * @param location0
+     * @param location1
+     * @param speed
+     * @return
+     * @throws Exception
+     */
+    protected double estimateMotionTime(HeadMountable hm, Location location0, Location location1, double speed)
+            throws Exception {
+        if (location0.equals(location1)) {
+            return 0;
+        }
+        AxesLocation axesLocation0 = hm.toRaw(hm.toHeadLocation(location0));
+        AxesLocation axesLocation1 = hm.toRaw(hm.toHeadLocation(location1));
+        // Take the shortest way around on wrap-around rotation axes, like limitAxesLocation() does for real moves.
+        for (ControllerAxis axis : axesLocation1.getControllerAxes()) {
+            if (axis instanceof ReferenceControllerAxis
+                    && ((ReferenceControllerAxis) axis).getType() == Axis.Type.Rotation
+                    && ((ReferenceControllerAxis) axis).isWrapAroundRotation()) {
+                double angle0 = axesLocation0.getCoordinate(axis);
+                double angle1 = angle0 + Utils2D.normalizeAngle180(axesLocation1.getCoordinate(axis) - angle0);
+                axesLocation1 = axesLocation1.put(new AxesLocation(axis, angle1));
+            }
+        }
+        double maxPartSpeed = (hm.getHead() != null ? hm.getHead().getMaxPartSpeed() : 1.0);
+        Motion motion = new Motion(hm, axesLocation0, axesLocation1, maxPartSpeed*speed);
+        return motion.getTime();
+    }
+
+    @Override
+    public synchronized double getTotalMotionTime() {
+        return totalMotionTime;
+    }
+
     @Override
     public synchronized Motion getMomentaryMotion(double time) {
-        Map.Entry<Double, Motion> entry1 = motionPlan.higherEntry(time);
-        if (entry1 != null) {
+        Motion motion1 = motionPlan.getMotionAfter(time);
+        if (motion1 != null) {
             // Return the motion.
-            Motion motion = entry1.getValue();
-            return motion;
+            return motion1;
         }
         else {
             // Plan empty or machine stopped before this time.  
-            entry1 = motionPlan.lastEntry();
+            motion1 = motionPlan.getLastMotion();
             AxesLocation currentLocation; 
-            if (entry1 != null) {
+            if (motion1 != null) {
                 // Machine stopped before this time, take the last exit location.
-                currentLocation = entry1.getValue().getLocation1();
+                currentLocation = motion1.getLocation1();
             }
             else {
                 // Nothing in the plan (yet), just get the current axes location.
@@ -613,12 +780,78 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
                 hm.getMappedAxes(machine) 
                 : new AxesLocation(machine));
         if (!mappedAxes.isEmpty()) {
-            for (Driver driver : mappedAxes.getAxesDrivers(machine)) {
-                driver.waitForCompletion((ReferenceHeadMountable) hm, completionType);
+            executeOnDrivers(mappedAxes.getAxesDrivers(machine), (driver) -> 
+                driver.waitForCompletion((ReferenceHeadMountable) hm, completionType));
+        }
+    }
+
+    @FunctionalInterface
+    protected interface DriverTask {
+        void execute(Driver driver) throws Exception;
+    }
+
+    /**
+     * Executes the task on each of the drivers. With parallelDriverDispatch and multiple drivers, the drivers are 
+     * serviced concurrently, the first one on the calling thread. Returns when all the drivers are done. If any 
+     * of them failed, the first exception (in driver order) is thrown, any further ones are logged and added as 
+     * suppressed. 
+     * 
+     * @param drivers
+     * @param task
+     * @throws Exception
+     */
+    protected void executeOnDrivers(List<Driver> drivers, DriverTask task) throws Exception {
+        if (!parallelDriverDispatch || drivers.size() < 2) {
+            for (Driver driver : drivers) {
+                task.execute(driver);
             }
+            return;
+        }
+        List<Future<Void>> futures = new ArrayList<>();
+        for (Driver driver : drivers.subList(1, drivers.size())) {
+            futures.add(getDriverExecutor().submit(() -> {
+                task.execute(driver);
+                return null;
+            }));
+        }
+        Exception error = null;
+        try {
+            task.execute(drivers.get(0));
+        }
+        catch (Exception e) {
+            error = e;
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                Exception cause = (e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                if (error == null) {
+                    error = cause;
+                }
+                else {
+                    Logger.warn("Concurrent driver task failed too: {}", cause);
+                    error.addSuppressed(cause);
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
         }
     }
 
+    protected static synchronized ExecutorService getDriverExecutor() {
+        if (driverExecutor == null) {
+            driverExecutor = Executors.newCachedThreadPool((runnable) -> {
+                Thread thread = new Thread(runnable, "MotionPlanner driver dispatch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return driverExecutor;
+    }
+
     public ReferenceMachine getMachine() {
         if (machine == null) {
             machine = (ReferenceMachine) Configuration.get().getMachine();
@@ -628,9 +861,7 @@ public abstract class AbstractMotionPlanner extends AbstractModelObject implemen
 
     @Override
     public synchronized void clearMotionPlanOlderThan(double time) {
-        while (motionPlan.isEmpty() == false && motionPlan.firstKey() < time) {
-            motionPlan.remove(motionPlan.firstKey());
-        }
+        motionPlan.clearOlderThan(time);
     }
 
     public boolean isInterpolationRetiming() {
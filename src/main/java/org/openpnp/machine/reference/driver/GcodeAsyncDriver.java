@@ -22,8 +22,10 @@
 package org.openpnp.machine.reference.driver;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import org.openpnp.gui.support.PropertySheetWizardAdapter;
 import org.openpnp.machine.reference.ReferenceHeadMountable;
@@ -57,6 +59,12 @@ import org.simpleframework.xml.Element;
  * will therefore issue specific reporting commands where needed, making the responses uniquely recognizable, 
  * and marking the position in the response stream. 
  * 
+ * With confirmation flow control, the GcodeAsyncDriver normally waits for the confirmation of the last
+ * command before sending the next, so only one command is ever in flight. If the controller's receive buffer
+ * size is configured, it instead keeps a window of unconfirmed commands and only waits when the next command
+ * would no longer fit into the buffer (character-counting flow control as known from Grbl). Confirmations and
+ * errors arrive in command order, so they are matched to the oldest outstanding command.
+ * 
  * FUTURE WORK:
  * 
  * To optimize the asynchronous operation, Actuator reads should also be handled differently. Often the 
@@ -97,6 +105,20 @@ public class GcodeAsyncDriver extends GcodeDriver {
     @Attribute(required=false)
     private boolean reportedLocationConfirmation = true;
 
+    /**
+     * Size of the controller's receive buffer in characters (including line endings), used for windowed
+     * confirmation flow control. 0 means one command at a time. 
+     */
+    @Attribute(required=false)
+    private int controllerBufferSize = 0;
+
+    /**
+     * Maximum number of unconfirmed command lines in the controller's receive buffer, used for windowed
+     * confirmation flow control. 0 means no line limit. 
+     */
+    @Attribute(required=false)
+    private int controllerBufferLines = 0;
+
     @Attribute(required = false)
     private int interpolationMaxSteps = 32;
 
@@ -136,6 +158,19 @@ public class GcodeAsyncDriver extends GcodeDriver {
     private boolean waitedForCommands;
     private boolean confirmationComplete;
 
+    /**
+     * The commands sent but not yet confirmed in windowed flow control, oldest first. Also used as the
+     * monitor to signal confirmations from the reader thread to the writer thread.
+     */
+    private final ArrayDeque<CommandLine> commandWindow = new ArrayDeque<>();
+    private int commandWindowChars;
+    /**
+     * Set when a command in the window timed out. From then on the responses can no longer be matched 
+     * to the commands, so no more commands are sent until the window is reset by re-enabling the machine
+     * or reconnecting. 
+     */
+    private volatile boolean commandWindowLost;
+
     public boolean isConfirmationFlowControl() {
         return confirmationFlowControl;
     }
@@ -156,6 +191,35 @@ public class GcodeAsyncDriver extends GcodeDriver {
         firePropertyChange("reportedLocationConfirmation", oldValue, reportedLocationConfirmation);
     }
 
+    public int getControllerBufferSize() {
+        return controllerBufferSize;
+    }
+
+    public void setControllerBufferSize(int controllerBufferSize) {
+        Object oldValue = this.controllerBufferSize;
+        this.controllerBufferSize = controllerBufferSize;
+        firePropertyChange("controllerBufferSize", oldValue, controllerBufferSize);
+    }
+
+    public int getControllerBufferLines() {
+        return controllerBufferLines;
+    }
+
+    public void setControllerBufferLines(int controllerBufferLines) {
+        Object oldValue = this.controllerBufferLines;
+        this.controllerBufferLines = controllerBufferLines;
+        firePropertyChange("controllerBufferLines", oldValue, controllerBufferLines);
+    }
+
+    /**
+     * @return True if multiple unconfirmed commands may be in flight, tracked against the controller's
+     * receive buffer.
+     */
+    public boolean isWindowedFlowControl() {
+        return confirmationFlowControl 
+                && (controllerBufferSize > 0 || controllerBufferLines > 1);
+    }
+
     @Override 
     public Integer getInterpolationMaxSteps() {
         return interpolationMaxSteps;
@@ -205,6 +269,7 @@ public class GcodeAsyncDriver extends GcodeDriver {
     protected void connectThreads() throws Exception {
         super.connectThreads();
         commandQueue = new LinkedBlockingQueue<>(maxCommandsQueued);
+        resetCommandWindow();
         writerThread = new WriterThread();
         writerThread.setDaemon(true);
         writerThread.start();
@@ -246,7 +311,18 @@ public class GcodeAsyncDriver extends GcodeDriver {
                     continue;
                 }
                 try {
-                    if (confirmationFlowControl && lastCommand != null) {
+                    if (commandWindowLost && command.line != null) {
+                        // The window is out of sync with the controller, never send anything blindly.
+                        Logger.trace("[{}] discarded {}", getCommunications().getConnectionName(), command);
+                        continue;
+                    }
+                    if (isWindowedFlowControl()) {
+                        // Wait until the new command fits into the controller's buffer, or for all commands 
+                        // to be confirmed, if this is the drain command.
+                        acquireCommandWindow(command);
+                        lastCommand = null;
+                    }
+                    else if (confirmationFlowControl && lastCommand != null) {
                         try {
                             // Before we can send the new command, make sure the wanted confirmation count of the last command was received.
                             waitForConfirmation(lastCommand.toString(), lastCommand.getTimeout());
@@ -257,9 +333,11 @@ public class GcodeAsyncDriver extends GcodeDriver {
                         }
                     }
                     if (command.line != null) {
-                        // Set up the wanted confirmations for next time.
-                        lastCommand = command;
-                        receivedConfirmationsQueue.clear();
+                        if (!isWindowedFlowControl()) {
+                            // Set up the wanted confirmations for next time.
+                            lastCommand = command;
+                            receivedConfirmationsQueue.clear();
+                        }
                         getCommunications().writeLine(command.line);
                         Logger.trace("[{}] >> {}", getCommunications().getConnectionName(), command);
                     }
@@ -286,12 +364,134 @@ public class GcodeAsyncDriver extends GcodeDriver {
         }
     }
 
+    /**
+     * Number of characters the command line occupies in the controller's receive buffer.
+     * 
+     * @param command
+     * @return
+     */
+    protected int getBufferedLength(CommandLine command) {
+        return command.line.length() 
+                + getCommunications().getLineEndingType().getLineEnding().length();
+    }
+
+    /**
+     * Waits for the command window to have enough room for the given command, then adds it to the window.
+     * For the drain command (null line), waits for all the commands in the window to be confirmed. 
+     * The timeout of the oldest unconfirmed command applies, from the moment it became the oldest. 
+     * 
+     * @param command
+     * @throws Exception on timeout. As the following responses can no longer be matched to the commands,
+     * the window is then cleared and marked as lost, see {@link #resetCommandWindow()}.
+     */
+    protected void acquireCommandWindow(CommandLine command) throws Exception {
+        boolean drain = (command.line == null);
+        int chars = drain ? 0 : getBufferedLength(command);
+        synchronized (commandWindow) {
+            CommandLine oldest = null;
+            long t1 = 0;
+            while (!commandWindow.isEmpty() 
+                    && (drain 
+                            || (controllerBufferLines > 0 && commandWindow.size() >= controllerBufferLines)
+                            || (controllerBufferSize > 0 && commandWindowChars + chars > controllerBufferSize))) {
+                if (commandWindow.peekFirst() != oldest) {
+                    // Confirmation(s) received, but not enough room yet. Restart the timeout for the new oldest command.
+                    oldest = commandWindow.peekFirst();
+                    long timeout = oldest.getTimeout() == -1 ? infinityTimeoutMilliseconds : oldest.getTimeout();
+                    t1 = System.currentTimeMillis() + timeout;
+                }
+                long remaining = t1 - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // We don't know whether the confirmation is just late or lost, so we can't tell which 
+                    // command the next one would belong to. Give up on the whole window.
+                    int lostCommands = commandWindow.size();
+                    commandWindow.clear();
+                    commandWindowChars = 0;
+                    commandWindowLost = true;
+                    throw new Exception(getCommunications().getConnectionName()+" timeout waiting for response to "+oldest
+                            +", "+lostCommands+" command(s) unconfirmed, command window out of sync with the controller.");
+                }
+                commandWindow.wait(remaining);
+            }
+            if (!drain) {
+                commandWindow.addLast(command);
+                commandWindowChars += chars;
+            }
+        }
+    }
+
+    /**
+     * Clears the command window, including the lost state after a timeout.
+     */
+    protected void resetCommandWindow() {
+        synchronized (commandWindow) {
+            commandWindow.clear();
+            commandWindowChars = 0;
+            commandWindowLost = false;
+            commandWindow.notifyAll();
+        }
+    }
+
+    /**
+     * Releases the oldest command in the window, as its confirmation or error response was received. 
+     * 
+     * @return The released command or null if none was outstanding. 
+     */
+    protected CommandLine releaseCommandWindow() {
+        synchronized (commandWindow) {
+            CommandLine command = commandWindow.pollFirst();
+            if (command != null) {
+                commandWindowChars -= getBufferedLength(command);
+                commandWindow.notifyAll();
+            }
+            return command;
+        }
+    }
+
+    @Override
+    protected void processResponse(Line line) {
+        if (!isWindowedFlowControl()) {
+            super.processResponse(line);
+            return;
+        }
+        // In windowed flow control, the responses are matched against the outstanding commands, in order. 
+        // Controllers like Grbl respond with an error instead of the confirmation, so both release the command.
+        Pattern pattern = getCommandPattern(null, CommandType.COMMAND_CONFIRM_REGEX);
+        boolean confirmation = (pattern != null && pattern.matcher(line.getLine()).matches());
+        pattern = getCommandPattern(null, CommandType.COMMAND_ERROR_REGEX);
+        boolean error = (pattern != null && pattern.matcher(line.getLine()).matches());
+        if (confirmation || error) {
+            CommandLine command = releaseCommandWindow();
+            if (command != null) {
+                Logger.trace("[{}] confirmed {}", getCommunications().getConnectionName(), command);
+            }
+            if (error) {
+                errorResponse = (command != null ? 
+                        new Line(line.getLine()+" in response to "+command) : line);
+            }
+        }
+        processPositionReport(line);
+    }
+
     @Override
     protected void bailOnError() throws Exception {
         super.bailOnError();
         if (writerThread == null || ! writerThread.isAlive()) {
             throw new Exception(getCommunications().getConnectionName()+" IO Error on writing to the controller.");
         }
+        if (commandWindowLost) {
+            throw new Exception(getCommunications().getConnectionName()+" command window out of sync with the controller, "
+                    + "disable and re-enable the machine to resynchronize.");
+        }
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) throws Exception {
+        if (enabled && connected) {
+            // Any late responses to the lost window have arrived by now, start afresh.
+            resetCommandWindow();
+        }
+        super.setEnabled(enabled);
     }
     /**
      * Note this Override will completely change the way commands are sent and hand-shaking is done.
@@ -28,10 +28,15 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,6 +79,7 @@ import org.openpnp.spi.base.AbstractHeadMountable;
 import org.openpnp.spi.base.AbstractSingleTransformedAxis;
 import org.openpnp.spi.base.AbstractTransformedAxis;
 import org.openpnp.util.NanosecondTime;
+import org.openpnp.util.TextTemplate;
 import org.openpnp.util.TextUtils;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
@@ -167,6 +173,9 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         @ElementList(required = false, inline = true, entry = "text", data = true)
         public ArrayList<String> commands = new ArrayList<>();
 
+        private Pattern pattern;
+        private TextTemplate template;
+
         public Command(String headMountableId, CommandType type, String text) {
             this.headMountableId = headMountableId;
             this.type = type;
@@ -174,6 +183,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         public void setCommand(String text) {
+            this.pattern = null;
+            this.template = null;
             this.commands.clear();
             if (text != null) {
                 text = text.trim();
@@ -187,6 +198,32 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             return Joiner.on('\n').join(commands);
         }
 
+        /**
+         * @return The command compiled as a regular expression. The Pattern is compiled once and then 
+         * cached until the command is changed. 
+         */
+        public Pattern getPattern() {
+            Pattern pattern = this.pattern;
+            if (pattern == null) {
+                pattern = Pattern.compile(getCommand());
+                this.pattern = pattern;
+            }
+            return pattern;
+        }
+
+        /**
+         * @return The command compiled as a TextTemplate. The template is compiled once and then 
+         * cached until the command is changed. 
+         */
+        public TextTemplate getTemplate() {
+            TextTemplate template = this.template;
+            if (template == null) {
+                template = new TextTemplate(getCommand());
+                this.template = template;
+            }
+            return template;
+        }
+
         private Command() {
 
         }
@@ -257,6 +294,14 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     @Attribute(required = false) 
     int infinityTimeoutMilliseconds = 60000; // 1 Minute is considered an "eternity" for a controller.
 
+    /**
+     * Maximum number of received responses retained for {@link #receiveResponses()}, and for each
+     * {@link ResponseSubscription}. If nobody receives them (e.g. with chatty firmware reporting 
+     * temperatures/status), the oldest are dropped. Takes effect when connecting.
+     */
+    @Attribute(required = false)
+    protected int maxResponsesQueued = 1000;
+
     @Element(required = false, data=true) 
     String detectedFirmware = null; 
 
@@ -277,6 +322,13 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     @ElementList(required = false)
     protected List<Axis> axes = null;
 
+    /**
+     * Cache of the effective Command per HeadMountable and CommandType, as looked up by 
+     * {@link #getCommand(HeadMountable, CommandType)}. Cleared whenever the commands are changed.
+     */
+    private final Map<String, Command> commandCache = new ConcurrentHashMap<>();
+    private static final Command noCommand = new Command();
+
     private ReaderThread readerThread;
     volatile boolean disconnectRequested;
     protected boolean connected;
@@ -308,13 +360,161 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
     }
 
+    /**
+     * A subscription to the responses received from the controller. Unlike {@link GcodeDriver#receiveResponses()}
+     * each subscriber receives all the responses matching its Pattern, independently of other consumers, 
+     * so the responses a caller waits for are not lost when the shared responseQueue overflows with 
+     * unrelated responses. Subscribe before sending the command that provokes the response. The 
+     * subscription is bounded too, so a subscriber that stops polling cannot exhaust memory. Subscriptions 
+     * must be closed when no longer needed.  
+     */
+    public class ResponseSubscription implements AutoCloseable {
+        private final Pattern filter;
+        private final LinkedBlockingQueue<Line> queue = new LinkedBlockingQueue<>(Math.max(1, maxResponsesQueued));
+        private volatile long dropped;
+
+        protected ResponseSubscription(Pattern filter) {
+            this.filter = filter;
+        }
+
+        protected void offer(Line line) {
+            if (filter != null && !filter.matcher(line.getLine()).matches()) {
+                return;
+            }
+            while (!queue.offer(line)) {
+                if (queue.poll() != null) {
+                    dropped++;
+                }
+            }
+        }
+
+        /**
+         * @param timeout Timeout in milliseconds.
+         * @return The next response or null if none was received within the timeout.
+         * @throws InterruptedException
+         */
+        public Line poll(long timeout) throws InterruptedException {
+            return queue.poll(timeout, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Wait for at least one response, like {@link GcodeDriver#receiveResponses(Pattern, long, TimeoutAction)}
+         * does.
+         * 
+         * @param timeout Timeout in milliseconds, -1 for "infinity".
+         * @param timeoutAction Applied if no response was received within the timeout.
+         * @return All the responses received so far.
+         * @throws Exception
+         */
+        public List<Line> receive(long timeout, TimeoutAction timeoutAction) throws Exception {
+            if (timeout == -1) {
+                timeout = infinityTimeoutMilliseconds;
+            }
+            long t1 = System.currentTimeMillis() + timeout;
+            List<Line> responses = drain();
+            while (responses.isEmpty()) {
+                bailOnError();
+                long remaining = t1 - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // Timeout expired, apply timeout action.
+                    return timeoutAction.apply(responses);
+                }
+                Line response = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                if (response != null) {
+                    responses.add(response);
+                    queue.drainTo(responses);
+                }
+            }
+            return responses;
+        }
+
+        /**
+         * @return All the responses received so far. 
+         */
+        public List<Line> drain() {
+            List<Line> responses = new ArrayList<>();
+            queue.drainTo(responses);
+            return responses;
+        }
+
+        public int getDepth() {
+            return queue.size();
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        @Override
+        public void close() {
+            responseSubscriptions.remove(this);
+        }
+    }
+
     protected LinkedBlockingQueue<Line> responseQueue = new LinkedBlockingQueue<>();
-    protected LinkedBlockingQueue<AxesLocation> reportedLocationsQueue = new LinkedBlockingQueue<>();
+    protected final List<ResponseSubscription> responseSubscriptions = new CopyOnWriteArrayList<>();
+    private volatile long responsesReceived;
+    private volatile long responsesDropped;
+    private volatile int responseQueueHighWater;
+    /**
+     * A position report as parsed by the reader thread. The sequence number increases with every report.
+     */
+    public static class PositionReport {
+        final long sequence;
+        final AxesLocation location;
+        final boolean motionPending;
+
+        public PositionReport(long sequence, AxesLocation location, boolean motionPending) {
+            this.sequence = sequence;
+            this.location = location;
+            this.motionPending = motionPending;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public AxesLocation getLocation() {
+            return location;
+        }
+
+        /**
+         * @return True if motion might still have been pending when the report was received.
+         */
+        public boolean isMotionPending() {
+            return motionPending;
+        }
+
+        @Override
+        public String toString() {
+            return "#"+sequence+" "+location;
+        }
+    }
+
+    private static final PositionReport noPositionReport = new PositionReport(0, null, true);
+
+    /**
+     * The latest position report. It is only ever replaced by the reader thread, without locking. Waiting 
+     * callers are signaled through the phaser, whose phase advances with every report.
+     */
+    private final AtomicReference<PositionReport> latestPositionReport = new AtomicReference<>(noPositionReport);
+    private final Phaser positionReportPhaser = new Phaser(1);
+    /**
+     * The sequence of the last report that was applied to (or is superseded by) the driver coordinates. 
+     * Only accessed by the machine thread. 
+     */
+    private long appliedPositionReportSequence;
     protected LinkedBlockingQueue<Line> receivedConfirmationsQueue = new LinkedBlockingQueue<>();
 
     protected Line errorResponse;
     private boolean motionPending;
 
+    /**
+     * The ControllerAxes of this driver, in Machine Setup order, as parsed from position reports. 
+     * Determined on the first report after connecting. 
+     */
+    private List<ControllerAxis> positionReportAxes;
+
     private PrintWriter gcodeLogger;
 
     @Commit
@@ -330,6 +530,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     }
 
     public void createDefaultCommands() {
+        commandCache.clear();
         commands = new ArrayList<>();
         commands.add(new Command(null, CommandType.COMMAND_CONFIRM_REGEX, "^ok.*"));
         commands.add(new Command(null, CommandType.CONNECT_COMMAND, "G21 ; Set millimeters mode\nG90 ; Set absolute positioning mode\nM82 ; Set absolute mode for extruder"));
@@ -374,12 +575,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      * @throws Exception
      */
     protected void connectThreads() throws Exception {
+        responseQueue = new LinkedBlockingQueue<>(Math.max(1, maxResponsesQueued));
+        responsesReceived = 0;
+        responsesDropped = 0;
+        responseQueueHighWater = 0;
         readerThread = new ReaderThread();
         readerThread.setDaemon(true);
         readerThread.start();
         errorResponse = null;
         receivedConfirmationsQueue = new LinkedBlockingQueue<>();
-        reportedLocationsQueue = new LinkedBlockingQueue<>();
+        discardPositionReports();
+        positionReportAxes = null;
     }
 
     @Override
@@ -413,6 +619,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
 
     @Override
     public void home(ReferenceMachine machine) throws Exception {
+        discardPositionReports();
         // Home is sent with an infinite timeout since it's tough to tell how long it will
         // take.
         String command = getCommand(null, CommandType.HOME_COMMAND);
@@ -421,14 +628,18 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         command = substituteVariable(command, "Id", head.getId()); 
         command = substituteVariable(command, "Name", head.getName());
         long timeout = -1;
-        sendGcode(command, timeout);
-
         // Check home complete response against user's regex
-        String homeCompleteRegex = getCommand(null, CommandType.HOME_COMPLETE_REGEX);
+        Pattern homeCompleteRegex = getCommandPattern(null, CommandType.HOME_COMPLETE_REGEX);
         if (homeCompleteRegex != null) {
-            receiveResponses(homeCompleteRegex, timeout, (responses) -> { 
-                throw new Exception("Timed out waiting for home to complete."); 
-            });
+            try (ResponseSubscription subscription = subscribeResponses(homeCompleteRegex)) {
+                sendGcode(command, timeout);
+                subscription.receive(timeout, (responses) -> { 
+                    throw new Exception("Timed out waiting for home to complete."); 
+                });
+            }
+        }
+        else {
+            sendGcode(command, timeout);
         }
 
         AxesLocation homeLocation = new AxesLocation(machine, this, (axis) -> (axis.getHomeCoordinate()));
@@ -460,6 +671,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     @Override
     public void setGlobalOffsets(ReferenceMachine machine, AxesLocation axesLocation)
             throws Exception {
+        discardPositionReports();
         // Compose the command
         String command = getCommand(null, CommandType.SET_GLOBAL_OFFSETS_COMMAND);
         if (command != null) {
@@ -537,16 +749,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             throw new Exception(getName()+" configuration error: missing POSITION_REPORT_REGEX.");
         }
 
-        // TODO: true queued reporting. For now it is sufficient to poll one for one.
-        reportedLocationsQueue.clear();
+        // Wait for a report that is newer than the one we have now. 
+        long sequence = getLatestPositionReport().getSequence();
         sendGcode(command, -1);
         if (timeout == -1) {
             timeout = infinityTimeoutMilliseconds;
         }
-        AxesLocation lastReportedLocation = reportedLocationsQueue.poll(timeout, TimeUnit.MILLISECONDS);
-        if (lastReportedLocation != null) {
-            Logger.trace("{} got lastReportedLocation {}", getName(), lastReportedLocation);
-            return lastReportedLocation;
+        PositionReport report = waitForPositionReport(sequence, timeout);
+        if (report != null) {
+            Logger.trace("{} got lastReportedLocation {}", getName(), report);
+            applyPositionReport(report);
+            return report.getLocation();
         }
         // Timeout expired.
         throw new Exception(getName()+" timeout waiting for response to " + command);
@@ -576,15 +789,67 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return null;
     }
 
+    /**
+     * Like {@link #getCommand(HeadMountable, CommandType, boolean)} with defaults, but cached. 
+     * 
+     * @param hm
+     * @param type
+     * @return
+     */
+    protected Command getEffectiveCommand(HeadMountable hm, CommandType type) {
+        String key = (type.headMountable && hm != null ? hm.getId() : "")+"/"+type.name();
+        Command c = commandCache.get(key);
+        if (c == null) {
+            c = getCommand(hm, type, true);
+            commandCache.put(key, c != null ? c : noCommand);
+        }
+        else if (c == noCommand) {
+            c = null;
+        }
+        return c;
+    }
+
     public String getCommand(HeadMountable hm, CommandType type) {
-        Command c = getCommand(hm, type, true);
+        Command c = getEffectiveCommand(hm, type);
         if (c == null) {
             return null;
         }
         return c.getCommand();
     }
 
+    /**
+     * Like {@link #getCommand(HeadMountable, CommandType)} but returns the command compiled as a TextTemplate. 
+     * 
+     * @param hm
+     * @param type
+     * @return
+     */
+    public TextTemplate getCommandTemplate(HeadMountable hm, CommandType type) {
+        Command c = getEffectiveCommand(hm, type);
+        if (c == null) {
+            return null;
+        }
+        return c.getTemplate();
+    }
+
+    /**
+     * Like {@link #getCommand(HeadMountable, CommandType)} but returns the command compiled as a regular
+     * expression. Use this for the regex command types, the Pattern is cached on the Command.
+     * 
+     * @param hm
+     * @param type
+     * @return
+     */
+    public Pattern getCommandPattern(HeadMountable hm, CommandType type) {
+        Command c = getEffectiveCommand(hm, type);
+        if (c == null) {
+            return null;
+        }
+        return c.getPattern();
+    }
+
     public void setCommand(HeadMountable hm, CommandType type, String text) {
+        commandCache.clear();
         Command c = getCommand(hm, type, false);
         if (text == null || text.trim().length() == 0) {
             if (c != null) {
@@ -615,20 +880,22 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             movedAxesLocation.getLengthCoordinate(axis).convertToUnits(getUnits()).getValue() - axis.getDriverCoordinate()).third;
 
         // Start composing the command, will decide later, whether we actually send it.
-        String command = getCommand(hm, CommandType.MOVE_TO_COMMAND);
+        // The template is compiled once, the variables are collected and then rendered in one pass.
+        TextTemplate command = getCommandTemplate(hm, CommandType.MOVE_TO_COMMAND);
         if (command == null) {
             return;
         }
-        if (hasVariable(command, "BacklashFeedRate")) {
+        if (command.hasVariable("BacklashFeedRate")) {
             throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                     +"Backlash compensation is now done outside of the drivers.");
         }
 
-        command = substituteVariable(command, "Id", hm.getId());
-        command = substituteVariable(command, "Name", hm.getName());
-        command = substituteVariable(command, "FeedRate", feedRate);
-        command = substituteVariable(command, "Acceleration", acceleration);
-        command = substituteVariable(command, "Jerk", jerk);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("Id", hm.getId());
+        variables.put("Name", hm.getName());
+        variables.put("FeedRate", feedRate);
+        variables.put("Acceleration", acceleration);
+        variables.put("Jerk", jerk);
 
         ReferenceMachine machine = (ReferenceMachine) hm.getHead().getMachine();
         // Get a map of the axes of ...
@@ -655,7 +922,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // position change after all. 
                 // Note, there is no need for separate backlash compensation variables, as these are always 
                 // substituted alongside. 
-                if (hasVariable(command, variable+"F")) {
+                if (command.hasVariable(variable+"F")) {
                     // Force it! Must get it from the mappedAxes. If the mappedAxes do not have it, it is 
                     // still suppressed (this never happens when using letter variables). 
                     axis = mappedAxes.getAxisByVariable(this, variable);
@@ -676,15 +943,15 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 double previousCoordinate = axis.getDriverCoordinate(); 
                 int direction = ((Double)coordinate).compareTo(previousCoordinate);
                 // Substitute the axis variables.
-                command = substituteVariable(command, variable, coordinate);
-                command = substituteVariable(command, variable+"F", coordinate);
-                command = substituteVariable(command, variable+"L", axis.getLetter());
-                if (hasVariable(command, "BacklashOffset"+variable)) {
+                variables.put(variable, coordinate);
+                variables.put(variable+"F", coordinate);
+                variables.put(variable+"L", axis.getLetter());
+                if (command.hasVariable("BacklashOffset"+variable)) {
                     throw new Exception(getName()+" configuration upgrade needed: Please remove the extra backlash compensation move from your MOVE_TO_COMMAND. "
                             +"Backlash compensation is now done outside of the drivers.");
                 }
-                command = substituteVariable(command, variable+"Decreasing", direction < 0 ? true : null);
-                command = substituteVariable(command, variable+"Increasing", direction > 0 ? true : null);
+                variables.put(variable+"Decreasing", direction < 0 ? true : null);
+                variables.put(variable+"Increasing", direction > 0 ? true : null);
                 if (isSupportingPreMove() && axis instanceof ReferenceControllerAxis) {
                     // Check for a pre-move command.
                     String preMoveCommand = ((ReferenceControllerAxis) axis).getPreMoveCommand();
@@ -696,27 +963,28 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // Axis specific jerk limits are needed on TinyG.
                 double axisDistance = coordinate - previousCoordinate;
                 double axisJerk = (jerk != null ? jerk : 0)*Math.abs(axisDistance)/driverDistance;
-                command = substituteVariable(command, variable+"Jerk", axisJerk > 1 ? axisJerk : null);
-                command = substituteVariable(command, variable+"JerkMupm3", axisJerk > 4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
+                variables.put(variable+"Jerk", axisJerk > 1 ? axisJerk : null);
+                variables.put(variable+"JerkMupm3", axisJerk > 4.63 ? axisJerk*1e-6*Math.pow(60, 3) : null); // TinyG: Megaunits/min^3 
                 // Store the new driver coordinate on the axis.
                 axis.setDriverCoordinate(coordinate);
             }
             else {
                 // Delete the unused axis variables.
-                command = substituteVariable(command, variable, null);
-                command = substituteVariable(command, variable+"F", null);
-                command = substituteVariable(command, variable+"L", null); 
-                command = substituteVariable(command, "BacklashOffset"+variable, null);
-                command = substituteVariable(command, variable+"Decreasing", null);
-                command = substituteVariable(command, variable+"Increasing", null);
-                command = substituteVariable(command, variable+"Jerk", null);
-                command = substituteVariable(command, variable+"JerkMupm3", null);  
+                variables.put(variable, null);
+                variables.put(variable+"F", null);
+                variables.put(variable+"L", null); 
+                variables.put("BacklashOffset"+variable, null);
+                variables.put(variable+"Decreasing", null);
+                variables.put(variable+"Increasing", null);
+                variables.put(variable+"Jerk", null);
+                variables.put(variable+"JerkMupm3", null);  
             }
         }
         if (doesMove) {
             // We do actually send the command.
             motionPending = true;
-            sendGcode(command);
+            discardPositionReports();
+            sendGcode(command.render(variables));
         }
     }
 
@@ -755,7 +1023,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                  * AFAIK, this was used on TinyG and it is now obsolete with new firmware :  
                  * https://makr.zone/tinyg-new-g-code-commands-for-openpnp-use/577/
                  */
-                String moveToCompleteRegex = getCommand(hm, CommandType.MOVE_TO_COMPLETE_REGEX);
+                Pattern moveToCompleteRegex = getCommandPattern(hm, CommandType.MOVE_TO_COMPLETE_REGEX);
                 if (moveToCompleteRegex != null) {
                     receiveResponses(moveToCompleteRegex, completionType == CompletionType.WaitForStillstandIndefinitely ?
                             -1 : getTimeoutAtMachineSpeed(), 
@@ -766,12 +1034,14 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             }
             // Remember, we're now standing still.  
             motionPending = false;
+            // Apply any position report that was received in the meantime.
+            applyPositionReport(getLatestPositionReport());
         }
     }
 
-    private boolean containsMatch(List<Line> responses, String regex) {
+    private boolean containsMatch(List<Line> responses, Pattern pattern) {
         for (Line response : responses) {
-            if (response.line.matches(regex)) {
+            if (pattern.matcher(response.line).matches()) {
                 return true;
             }
         }
@@ -824,8 +1094,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         else {
             command = getCommand(actuator, CommandType.ACTUATOR_READ_WITH_DOUBLE_COMMAND);
         }
-        String regex = getCommand(actuator, CommandType.ACTUATOR_READ_REGEX);
-        if (command != null && regex != null) {
+        Pattern pattern = getCommandPattern(actuator, CommandType.ACTUATOR_READ_REGEX);
+        if (command != null && pattern != null) {
             command = substituteVariable(command, "Id", actuator.getId());
             command = substituteVariable(command, "Name", actuator.getName());
             command = substituteVariable(command, "Index", actuator.getIndex());
@@ -833,12 +1103,14 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 command = substituteVariable(command, "DoubleValue", parameter);
                 command = substituteVariable(command, "IntegerValue", (int) parameter.doubleValue());
             }
-            sendGcode(command);
-            List<Line> responses = receiveResponses(regex, timeoutMilliseconds, (r) -> {
-                throw new Exception(String.format("Actuator \"%s\" read error: No matching responses found.", actuator.getName()));
-            }); 
+            List<Line> responses;
+            try (ResponseSubscription subscription = subscribeResponses(pattern)) {
+                sendGcode(command);
+                responses = subscription.receive(timeoutMilliseconds, (r) -> {
+                    throw new Exception(String.format("Actuator \"%s\" read error: No matching responses found.", actuator.getName()));
+                }); 
+            }
 
-            Pattern pattern = Pattern.compile(regex);
             for (Line line : responses) {
                 Matcher matcher = pattern.matcher(line.getLine());
                 if (matcher.matches()) {
@@ -857,7 +1129,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                     }
                 }
             }
-            // This should not happen, as the regex is pre-matched in receiveResponses().
+            // This should not happen, as the subscription only receives matching responses.
             throw new Exception(String.format("Actuator \"%s\" read error: Regex matching response vanished.", actuator.getName()));
         }
         else {
@@ -899,6 +1171,8 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             if (readerThread != null && readerThread.isAlive()) {
                 readerThread.join(3000);
             }
+            Logger.debug("[{}] responses received: {}, queue high water: {}, dropped: {}", 
+                    getCommunications().getConnectionName(), responsesReceived, responseQueueHighWater, responsesDropped);
         }
         catch (Exception e) {
             Logger.error("disconnect()", e);
@@ -1011,6 +1285,12 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
     public List<Line> receiveResponses(String regex, long timeout, 
             TimeoutAction timeoutAction)
             throws Exception {
+        return receiveResponses(Pattern.compile(regex), timeout, timeoutAction);
+    }
+
+    public List<Line> receiveResponses(Pattern pattern, long timeout, 
+            TimeoutAction timeoutAction)
+            throws Exception {
         if (timeout == -1) {
             timeout = infinityTimeoutMilliseconds;
         }
@@ -1018,7 +1298,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         List<Line> responses = new ArrayList<>();
         do{ 
             responses.addAll(receiveResponses());
-            if (containsMatch(responses, regex)) {
+            if (containsMatch(responses, pattern)) {
                 return responses;
             }
             Line response = responseQueue.poll(Math.max(1, t1 - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
@@ -1032,14 +1312,33 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         return timeoutAction.apply(responses);
     }
 
+    /**
+     * Send the command and receive the first response that matches the regex. The response is 
+     * subscribed before sending, so it cannot be lost in the shared responseQueue.
+     * 
+     * @param command
+     * @param regex
+     * @return The matching response.
+     * @throws Exception If no matching response was received within the timeout.
+     */
+    public String sendCommandReceiveSingleResponse(String command, String regex) throws Exception {
+        try (ResponseSubscription subscription = subscribeResponses(Pattern.compile(regex))) {
+            sendCommand(command);
+            List<Line> responses = subscription.receive(getTimeoutMilliseconds(), (r) -> {
+                throw new Exception(String.format("\"%s\" read error: No matching responses found.", regex));
+            });
+            return responses.get(0).getLine();
+        }
+    }
+
     public String receiveSingleResponse(String regex) throws Exception {
-        List<Line> responses = receiveResponses(regex, getTimeoutMilliseconds(), (r) -> {
+        Pattern pattern = Pattern.compile(regex);
+        List<Line> responses = receiveResponses(pattern, getTimeoutMilliseconds(), (r) -> {
             throw new Exception(String.format("\"%s\" read error: No matching responses found.", regex));
         });
         if (responses == null) {
             return null;   
         }
-        Pattern pattern = Pattern.compile(regex);
         for (Line line : responses) {
             Matcher matcher = pattern.matcher(line.getLine());
             if (matcher.matches()) {
@@ -1056,8 +1355,10 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
             boolean insideComment = false;
             boolean decimal = false;
             int trailingZeroes = 0;
-            StringBuilder compressedCommand = new StringBuilder();
-            for (char ch : command.toCharArray()) {
+            int length = command.length();
+            StringBuilder compressedCommand = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                char ch = command.charAt(i);
                 col++;
                 if (ch == ' ') {
                     // Note, in Gcode, spaces are allowed in the middle of decimals.
@@ -1092,7 +1393,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                     }
                     else {
                         // Not removed, append as is.
-                        compressedCommand.append(command.substring(col-1));
+                        compressedCommand.append(command, col-1, length);
                         break;
                     }
                 }
@@ -1184,46 +1485,125 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 // Process the response.
                 processResponse(line);
                 // Add to the responseQueue for further processing by the caller.
-                responseQueue.offer(line);
+                queueResponse(line);
             }
             Logger.trace("[{}] disconnectRequested, bye-bye.", getCommunications().getConnectionName());
         }
     }
 
+    /**
+     * Queue a received response for the callers of {@link #receiveResponses()} and for the subscribers. If the 
+     * responseQueue is full, the oldest response is dropped, the subscriptions retain theirs.
+     * 
+     * @param line
+     */
+    protected void queueResponse(Line line) {
+        LinkedBlockingQueue<Line> responseQueue = this.responseQueue;
+        while (!responseQueue.offer(line)) {
+            if (responseQueue.poll() != null) {
+                if (responsesDropped++ == 0) {
+                    Logger.warn("[{}] response queue full, dropping the oldest responses. Nobody is receiving them.", 
+                            getCommunications().getConnectionName());
+                }
+            }
+        }
+        responsesReceived++;
+        int depth = responseQueue.size();
+        if (depth > responseQueueHighWater) {
+            responseQueueHighWater = depth;
+        }
+        for (ResponseSubscription subscription : responseSubscriptions) {
+            subscription.offer(line);
+        }
+    }
+
+    /**
+     * Subscribe to the responses received from the controller.
+     * 
+     * @param filter Only responses matching this Pattern are delivered, or all if null.
+     * @return The subscription, to be closed when no longer needed. 
+     */
+    public ResponseSubscription subscribeResponses(Pattern filter) {
+        ResponseSubscription subscription = new ResponseSubscription(filter);
+        responseSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    public int getMaxResponsesQueued() {
+        return maxResponsesQueued;
+    }
+
+    public void setMaxResponsesQueued(int maxResponsesQueued) {
+        Object oldValue = this.maxResponsesQueued;
+        this.maxResponsesQueued = maxResponsesQueued;
+        firePropertyChange("maxResponsesQueued", oldValue, maxResponsesQueued);
+    }
+
+    /**
+     * @return The number of responses currently queued for {@link #receiveResponses()}.
+     */
+    public int getResponseQueueDepth() {
+        return responseQueue.size();
+    }
+
+    /**
+     * @return The highest number of responses queued since connecting.
+     */
+    public int getResponseQueueHighWater() {
+        return responseQueueHighWater;
+    }
+
+    /**
+     * @return The number of responses received since connecting.
+     */
+    public long getResponsesReceived() {
+        return responsesReceived;
+    }
+
+    /**
+     * @return The number of responses dropped since connecting, because nobody received them.
+     */
+    public long getResponsesDropped() {
+        return responsesDropped;
+    }
+
     /**
      * Process a received response immediately. 
      *  
      * @param line
      */
     protected void processResponse(Line line) {
-        String regex = getCommand(null, CommandType.COMMAND_CONFIRM_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        Pattern pattern = getCommandPattern(null, CommandType.COMMAND_CONFIRM_REGEX);
+        if (pattern != null && pattern.matcher(line.getLine()).matches()) {
             receivedConfirmationsQueue.add(line);
         }
-        regex = getCommand(null, CommandType.COMMAND_ERROR_REGEX);
-        if (regex != null && line.getLine().matches(regex)) {
+        pattern = getCommandPattern(null, CommandType.COMMAND_ERROR_REGEX);
+        if (pattern != null && pattern.matcher(line.getLine()).matches()) {
             errorResponse = line;
         }
         processPositionReport(line);
     }
 
     protected boolean processPositionReport(Line line) {
-        String regex = getCommand(null, CommandType.POSITION_REPORT_REGEX); 
-        if (regex == null) {
+        Pattern pattern = getCommandPattern(null, CommandType.POSITION_REPORT_REGEX); 
+        if (pattern == null) {
             return false;
         }
 
-        if (!line.getLine().matches(regex)) {
+        Matcher matcher = pattern.matcher(line.getLine());
+        if (!matcher.matches()) {
             return false;
         }
 
         Logger.trace("Position report: {}", line);
-        ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
-        Matcher matcher =
-                Pattern.compile(regex).matcher(line.getLine());
-        matcher.matches();
+        List<ControllerAxis> axes = positionReportAxes;
+        if (axes == null) {
+            ReferenceMachine machine = ((ReferenceMachine) Configuration.get().getMachine());
+            axes = new ArrayList<>(new AxesLocation(machine).getAxes(this));
+            positionReportAxes = axes;
+        }
         AxesLocation position = AxesLocation.zero;
-        for (ControllerAxis axis : new AxesLocation(machine).getAxes(this)) {
+        for (ControllerAxis axis : axes) {
             try {
                 String variable = axis.getLetter(); 
                 String s = matcher.group(variable);
@@ -1244,21 +1624,80 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
                 Logger.warn("Error processing position report for axis {}: {}", axis.getName(), e);
             }
         }
-        // Store the latest momentary position.
-        reportedLocationsQueue.add(position);
+        // Publish the latest momentary position. The actual driver location is then applied by the machine thread, 
+        // see applyPositionReport(). 
+        boolean motionPending = this.motionPending;
+        latestPositionReport.set(new PositionReport(latestPositionReport.get().getSequence() + 1, position, motionPending));
+        positionReportPhaser.arrive();
 
         if (motionPending) {
             Logger.warn("Position report cannot be processed when motion might still be pending. Missing Machine Coordination on Actuators?", 
                     position);
         }
-        else {
-            // Store the actual driver location. This is used to re-sync OpenPnP to the actual controller 
-            // location, when its axes might have moved/homed etc. behind its back. 
-            position.setToDriverCoordinates(this);
-        }
         return true;
     }
 
+    /**
+     * @return The latest position report received from the controller. If none was received yet, the sequence is 0
+     * and the location null. 
+     */
+    public PositionReport getLatestPositionReport() {
+        return latestPositionReport.get();
+    }
+
+    /**
+     * Waits for a position report newer than the given sequence. 
+     * 
+     * @param sequence
+     * @param timeout Timeout in milliseconds.
+     * @return The position report or null if none arrived within the timeout. 
+     * @throws InterruptedException
+     */
+    public PositionReport waitForPositionReport(long sequence, long timeout) throws InterruptedException {
+        long t1 = System.currentTimeMillis() + timeout;
+        while (true) {
+            // Get the phase before checking, so a report published in the meantime advances past it.
+            int phase = positionReportPhaser.getPhase();
+            PositionReport report = latestPositionReport.get();
+            if (report.getSequence() > sequence) {
+                return report;
+            }
+            long remaining = t1 - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return null;
+            }
+            try {
+                positionReportPhaser.awaitAdvanceInterruptibly(phase, remaining, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Store the actual driver location from the position report. This is used to re-sync OpenPnP to the actual 
+     * controller location, when its axes might have moved/homed etc. behind its back. 
+     * Reports received while motion was pending, or already superseded by later commands, are not applied. 
+     * 
+     * @param report
+     */
+    protected void applyPositionReport(PositionReport report) {
+        if (report.getSequence() > appliedPositionReportSequence 
+                && !report.isMotionPending() 
+                && !motionPending) {
+            appliedPositionReportSequence = report.getSequence();
+            report.getLocation().setToDriverCoordinates(this);
+        }
+    }
+
+    /**
+     * Marks all the position reports received so far as superseded, e.g. because new motion was commanded. 
+     */
+    protected void discardPositionReports() {
+        appliedPositionReportSequence = getLatestPositionReport().getSequence();
+    }
+
     static protected String substituteVariable(String command, String name, Object value) {
         return TextUtils.substituteVar(command, name, value);
     }
@@ -1267,18 +1706,7 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
      * Find matches of variables in the format {Name:Format} and return true if present.
      */
     static protected boolean hasVariable(String command, String name) {
-        if (command == null) {
-            return false;
-        }
-        Matcher matcher = Pattern.compile("\\{(\\w+)(?::(.+?))?\\}").matcher(command);
-        while (matcher.find()) {
-            String n = matcher.group(1);
-            if (!n.equals(name)) {
-                continue;
-            }
-            return true;
-        }
-        return false;
+        return TextUtils.hasVar(command, name);
     }
 
 
@@ -1454,20 +1882,17 @@ public class GcodeDriver extends AbstractReferenceDriver implements Named {
         }
 
         try {
-            sendCommand("M115");
-            String firmware = receiveSingleResponse("^FIRMWARE.*");
+            String firmware = sendCommandReceiveSingleResponse("M115", "^FIRMWARE.*");
             if (firmware != null) {
                 setDetectedFirmware(firmware);
             }
             if (!getAxisVariables((ReferenceMachine) Configuration.get().getMachine()).isEmpty()) {
-                sendCommand("M114");
-                String reportedAxes = receiveSingleResponse(".*[XYZABCDEUVW]:-?\\d+\\.\\d+.*");
+                String reportedAxes = sendCommandReceiveSingleResponse("M114", ".*[XYZABCDEUVW]:-?\\d+\\.\\d+.*");
                 if (reportedAxes != null) {
                     if (firmware != null) {
                         try {
                             if (getFirmwareProperty("FIRMWARE_NAME", "").contains("Duet")) {
-                                sendCommand("M584");
-                                String axisConfig = receiveSingleResponse("^Driver assignments:.*");
+                                String axisConfig = sendCommandReceiveSingleResponse("M584", "^Driver assignments:.*");
                                 if (axisConfig != null) {
                                     setConfiguredAxes(axisConfig);
                                 }
@@ -363,7 +363,7 @@ public class ReferenceAdvancedMotionPlanner extends AbstractMotionPlanner {
     protected void optimizeExecutionPlan(List<Motion> executionPlan,
             CompletionType completionType) throws Exception {
         PlannerPath path = new PlannerPath(executionPlan);
-        path.solve();
+        path.solveParallel();
     }
 
     protected void startNewMotionGraph() {
@@ -59,6 +59,21 @@ public abstract class ReferenceDriverCommunications {
 
     abstract public int read() throws TimeoutException, IOException;
 
+    /**
+     * Read exactly length bytes into the data array, e.g. a binary protocol frame. Blocks for the default 
+     * timeout per byte. If the read times out a TimeoutException is thrown.
+     *
+     * @param data
+     * @param length
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    public void readBytes(byte[] data, int length) throws TimeoutException, IOException {
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) read();
+        }
+    }
+
     /**
      * Read a line from the input stream. Blocks for the default timeout. If the read times out a
      * TimeoutException is thrown. Any other failure to read results in an IOExeption;
@@ -86,7 +101,7 @@ public abstract class ReferenceDriverCommunications {
      * @throws IOException
      */
     public String readUntil(String characters) throws TimeoutException, IOException {
-        StringBuffer line = new StringBuffer();
+        StringBuilder line = new StringBuilder();
         while (true) {
             int ch = read();
             if (ch == -1) {
@@ -97,6 +97,19 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
 
     private SerialPort serialPort;
 
+    /**
+     * Receive buffer. Bytes are read from the port in bulk and then consumed from here, which 
+     * avoids a native call per byte.
+     */
+    private final byte[] readBuffer = new byte[4096];
+    private int readPosition = 0;
+    private int readLength = 0;
+    /**
+     * Line being assembled by readUntil(). It is kept across read timeouts, so a line that 
+     * arrives in pieces is not lost when the caller retries.
+     */
+    private final StringBuilder partialLine = new StringBuilder();
+
     public synchronized void connect() throws Exception {
         disconnect();
         serialPort = SerialPort.getCommPort(portName);
@@ -111,9 +124,13 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         }
         serialPort.setComPortTimeouts(
                 SerialPort.TIMEOUT_READ_SEMI_BLOCKING | SerialPort.TIMEOUT_WRITE_BLOCKING, 500, 0);
+        readPosition = readLength = 0;
+        partialLine.setLength(0);
     }
 
     public synchronized void disconnect() throws Exception {
+        readPosition = readLength = 0;
+        partialLine.setLength(0);
         if (serialPort != null && serialPort.isOpen()) {
             serialPort.closePort();
             serialPort = null;
@@ -136,39 +153,77 @@ public class SerialPortCommunications extends ReferenceDriverCommunications {
         return portNames.toArray(new String[] {});
     }
 
-//    long start = System.currentTimeMillis();
-// // ...
-// long finish = System.currentTimeMillis();
-// long timeElapsed = finish - start;
-    
-    
-    public int read() throws TimeoutException, IOException {
-    	long start = System.currentTimeMillis();
-    	int l = 0;
-    	byte[] b = new byte[1];
-    	
-    	while(System.currentTimeMillis() - start < 500) {	
-    		if(serialPort.bytesAvailable() > 0) {
-    			l = serialPort.readBytes(b, 1);
-    			break;
-    		}
-    		else {
-    			try {
-					Thread.sleep(1);
-				} catch (InterruptedException e) {
-					continue;
-				}
-    		}
-    	}
-        
-
+    /**
+     * Makes sure there are bytes in the receive buffer. The port is opened semi-blocking, so
+     * readBytes() returns as soon as any bytes have arrived, taking all that are available, or 
+     * after the read timeout. 
+     * 
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    private void fillReadBuffer() throws TimeoutException, IOException {
+        if (readPosition < readLength) {
+            return;
+        }
+        readPosition = readLength = 0;
+        int l = serialPort.readBytes(readBuffer, readBuffer.length);
         if (l == -1) {
             throw new IOException("Read error.");
         }
-        if (l == 0 ) {
+        if (l == 0) {
             throw new TimeoutException("Read timeout.");
         }
-        return b[0];
+        readLength = l;
+    }
+
+    public int read() throws TimeoutException, IOException {
+        fillReadBuffer();
+        return readBuffer[readPosition++];
+    }
+
+    /**
+     * Copies the bytes directly from the receive buffer.
+     */
+    @Override
+    public void readBytes(byte[] data, int length) throws TimeoutException, IOException {
+        int i = 0;
+        while (i < length) {
+            fillReadBuffer();
+            int n = Math.min(length - i, readLength - readPosition);
+            System.arraycopy(readBuffer, readPosition, data, i, n);
+            readPosition += n;
+            i += n;
+        }
+    }
+
+    /**
+     * Assembles the line directly from the receive buffer. Same semantics as 
+     * {@link ReferenceDriverCommunications#readUntil(String)}, except that the characters 
+     * received before a read timeout are kept and continued on the next call.
+     */
+    @Override
+    public String readUntil(String characters) throws TimeoutException, IOException {
+        StringBuilder line = partialLine;
+        while (true) {
+            fillReadBuffer();
+            while (readPosition < readLength) {
+                int ch = readBuffer[readPosition++];
+                if (ch == -1) {
+                    line.setLength(0);
+                    return null;
+                }
+                else if (characters.indexOf((char)ch) >= 0) {
+                    if (line.length() > 0) {
+                        String result = line.toString();
+                        line.setLength(0);
+                        return result;
+                    }
+                }
+                else {
+                    line.append((char) ch);
+                }
+            }
+        }
     }
 
     public void writeBytes(byte[] data) throws IOException {
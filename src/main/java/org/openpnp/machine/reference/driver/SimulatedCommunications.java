@@ -26,6 +26,7 @@ public class SimulatedCommunications extends ReferenceDriverCommunications {
     public synchronized void connect() throws Exception {
         disconnect();
         clientSocket = new Socket("localhost", getGcodeServer().getListenerPort());
+        clientSocket.setTcpNoDelay(true);
         input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
         output = new DataOutputStream(clientSocket.getOutputStream());
     }
@@ -1,20 +1,26 @@
 package org.openpnp.machine.reference.driver;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeoutException;
 
-import org.openpnp.machine.reference.driver.ReferenceDriverCommunications.LineEndingType;
 import org.openpnp.util.GcodeServer;
 import org.simpleframework.xml.Attribute;
 
 /**
  * A base class for basic TCP based Drivers. Includes functions for connecting,
  * disconnecting, reading and sending lines.
+ * 
+ * The connection uses a non-blocking SocketChannel with TCP_NODELAY, so small command lines and 
+ * confirmations are not delayed by Nagle's algorithm. Reads are buffered, and lines are written
+ * as one packet. 
  */
 public class TcpCommunications extends ReferenceDriverCommunications {
     @Attribute(required = false)
@@ -26,34 +32,93 @@ public class TcpCommunications extends ReferenceDriverCommunications {
     @Attribute(required = false)
     protected String name = "TcpCommunications";
 
+    /**
+     * Read timeout. Reading threads will get a TimeoutException when nothing was received within that time, 
+     * so they can check for disconnection.
+     */
+    @Attribute(required = false)
+    protected int readTimeoutMilliseconds = 500;
+
+    @Attribute(required = false)
+    protected int writeTimeoutMilliseconds = 5000;
 
-    protected Socket clientSocket;
-    protected BufferedReader input;
-    protected DataOutputStream output;
+    @Attribute(required = false)
+    protected int connectTimeoutMilliseconds = 5000;
+
+    protected SocketChannel channel;
+    protected Selector readSelector;
+    protected Selector writeSelector;
+    protected ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+    /**
+     * Line being assembled by readUntil(). It is kept across read timeouts, so a line that arrives in 
+     * pieces is not lost when the reading thread retries.
+     */
+    protected StringBuilder partialLine = new StringBuilder();
     protected GcodeServer gcodeServer;
     protected AbstractReferenceDriver driver;
 
     public synchronized void connect() throws Exception {
         disconnect();
+        InetSocketAddress address;
         if (ipAddress.equals("GcodeServer")) {
             gcodeServer = new GcodeServer();
             gcodeServer.setDriver(driver);
             port = gcodeServer.getListenerPort();
-            clientSocket = new Socket("localhost", port);
+            address = new InetSocketAddress("localhost", port);
         }
         else {
-            clientSocket = new Socket(ipAddress,port);
+            address = new InetSocketAddress(ipAddress, port);
+        }
+        channel = openChannel(address);
+        readSelector = Selector.open();
+        channel.register(readSelector, SelectionKey.OP_READ);
+        writeSelector = Selector.open();
+        channel.register(writeSelector, SelectionKey.OP_WRITE);
+        readBuffer.clear();
+        readBuffer.flip();
+        partialLine.setLength(0);
+    }
+
+    /**
+     * Connects a non-blocking channel to the address, waiting up to the connect timeout. 
+     * 
+     * @param address
+     * @return The connected channel.
+     * @throws IOException on timeout or when the connection is refused.
+     */
+    protected SocketChannel openChannel(InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            if (!channel.connect(address)) {
+                try (Selector connectSelector = Selector.open()) {
+                    channel.register(connectSelector, SelectionKey.OP_CONNECT);
+                    if (connectSelector.select(connectTimeoutMilliseconds) == 0) {
+                        throw new IOException("Connect timeout on "+getConnectionName()+".");
+                    }
+                    channel.finishConnect();
+                }
+            }
+            return channel;
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
         }
-        input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-        output = new DataOutputStream(clientSocket.getOutputStream());
     }
 
     public synchronized void disconnect() throws Exception {
-        if (clientSocket != null && clientSocket.isBound()) {
-            clientSocket.close();
-            input = null;
-            output = null;
-            clientSocket = null;
+        partialLine.setLength(0);
+        if (channel != null) {
+            // Wake up any reading thread, it will then get a ClosedChannelException.
+            readSelector.wakeup();
+            channel.close();
+            readSelector.close();
+            writeSelector.close();
+            channel = null;
+            readSelector = null;
+            writeSelector = null;
         }
         if (gcodeServer != null) {
             gcodeServer.shutdown();
@@ -65,26 +130,140 @@ public class TcpCommunications extends ReferenceDriverCommunications {
         return "tcp://" + ipAddress + ":" + port;
     }
 
-    public int read() throws TimeoutException, IOException {
+    /**
+     * Makes sure there are bytes in the read buffer, waiting up to the read timeout.
+     * 
+     * @return false on end of stream.
+     * @throws TimeoutException
+     * @throws IOException
+     */
+    protected boolean fillReadBuffer() throws TimeoutException, IOException {
+        if (readBuffer.hasRemaining()) {
+            return true;
+        }
+        SocketChannel channel = this.channel;
+        Selector readSelector = this.readSelector;
+        if (channel == null) {
+            throw new IOException("Not connected.");
+        }
+        readBuffer.clear();
         try {
-            return input.read();
+            int n = channel.read(readBuffer);
+            if (n == 0) {
+                readSelector.select(readTimeoutMilliseconds);
+                readSelector.selectedKeys().clear();
+                n = channel.read(readBuffer);
+            }
+            if (n == 0) {
+                throw new TimeoutException("Read timeout.");
+            }
+            return n > 0;
         }
-        catch (IOException ex) {
-            if (ex.getCause() instanceof SocketTimeoutException) {
-                throw new TimeoutException(ex.getMessage());
+        catch (ClosedSelectorException e) {
+            throw new IOException("Disconnected.", e);
+        }
+        finally {
+            readBuffer.flip();
+        }
+    }
+
+    public int read() throws TimeoutException, IOException {
+        if (!fillReadBuffer()) {
+            return -1;
+        }
+        return readBuffer.get() & 0xff;
+    }
+
+    @Override
+    public void readBytes(byte[] data, int length) throws TimeoutException, IOException {
+        int i = 0;
+        while (i < length) {
+            if (!fillReadBuffer()) {
+                throw new IOException("End of stream.");
+            }
+            int n = Math.min(length - i, readBuffer.remaining());
+            readBuffer.get(data, i, n);
+            i += n;
+        }
+    }
+
+    /**
+     * Assembles the line directly from the read buffer. Same semantics as 
+     * {@link ReferenceDriverCommunications#readUntil(String)}, except that the characters received before 
+     * a read timeout are kept and continued on the next call.
+     */
+    @Override
+    public String readUntil(String characters) throws TimeoutException, IOException {
+        StringBuilder line = partialLine;
+        while (true) {
+            if (!fillReadBuffer()) {
+                line.setLength(0);
+                return null;
+            }
+            while (readBuffer.hasRemaining()) {
+                int ch = readBuffer.get() & 0xff;
+                if (characters.indexOf((char)ch) >= 0) {
+                    if (line.length() > 0) {
+                        String result = line.toString();
+                        line.setLength(0);
+                        return result;
+                    }
+                }
+                else {
+                    line.append((char) ch);
+                }
             }
-            throw ex;
         }
     }
 
+    /**
+     * Writes the line including the line ending as one packet. Characters are encoded as single bytes, 
+     * the same way {@link #readUntil(String)} decodes them.
+     */
+    @Override
+    public void writeLine(String data) throws IOException {
+        byte[] line = data.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] lineEnding = getLineEndingType().getLineEnding().getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer buffer = ByteBuffer.allocate(line.length + lineEnding.length);
+        buffer.put(line);
+        buffer.put(lineEnding);
+        buffer.flip();
+        write(buffer);
+    }
+
     @Override
     public void write(int d) throws IOException {
-        output.write(d);
+        write(ByteBuffer.wrap(new byte[] { (byte) d }));
     }
 
     @Override
     public void writeBytes(byte[] data) throws IOException {
-        output.write(data);
+        write(ByteBuffer.wrap(data));
+    }
+
+    protected void write(ByteBuffer buffer) throws IOException {
+        SocketChannel channel = this.channel;
+        Selector writeSelector = this.writeSelector;
+        if (channel == null) {
+            throw new IOException("Not connected.");
+        }
+        try {
+            // Only one thread must write at a time, so the packets are not interleaved.
+            synchronized (writeSelector) {
+                while (buffer.hasRemaining()) {
+                    if (channel.write(buffer) == 0) {
+                        // Socket send buffer full, wait until writable.
+                        if (writeSelector.select(writeTimeoutMilliseconds) == 0) {
+                            throw new IOException("Write timeout.");
+                        }
+                        writeSelector.selectedKeys().clear();
+                    }
+                }
+            }
+        }
+        catch (ClosedSelectorException e) {
+            throw new IOException("Disconnected.", e);
+        }
     }
 
     public String getIpAddress() {
@@ -33,6 +33,8 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
     private JTextField junctionDeviation;
     private JTextField interpolationJerkSteps;
     private JCheckBox reportedLocationConfirmation;
+    private JTextField controllerBufferSize;
+    private JTextField controllerBufferLines;
 
     public GcodeAsyncDriverSettings(GcodeAsyncDriver driver) {
         this.driver = driver;
@@ -50,6 +52,10 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -156,6 +162,22 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
         });
         settingsPanel.add(reportedLocationConfirmation, "4, 4");
 
+        JLabel lblControllerBufferSize = new JLabel("Controller Buffer Size");
+        lblControllerBufferSize.setToolTipText("<html>\r\n<p>Size of the controller's receive buffer in characters, including line endings (e.g. 128 on Grbl).</p>\r\n<p>With Confirmation Flow Control, commands are sent as long as they fit into the buffer, <br/>\r\ninstead of awaiting the \"ok\" for each command. Use 0 to send one command at a time.</p>\r\n</html>");
+        settingsPanel.add(lblControllerBufferSize, "2, 6, right, default");
+
+        controllerBufferSize = new JTextField();
+        settingsPanel.add(controllerBufferSize, "4, 6, fill, default");
+        controllerBufferSize.setColumns(10);
+
+        JLabel lblControllerBufferLines = new JLabel("Controller Buffer Lines");
+        lblControllerBufferLines.setToolTipText("<html>\r\n<p>Maximum number of unconfirmed command lines the controller can buffer.</p>\r\n<p>With Confirmation Flow Control, commands are sent as long as the number of unconfirmed <br/>\r\nlines is below this limit. Use 0 for no line limit.</p>\r\n</html>");
+        settingsPanel.add(lblControllerBufferLines, "2, 8, right, default");
+
+        controllerBufferLines = new JTextField();
+        settingsPanel.add(controllerBufferLines, "4, 8, fill, default");
+        controllerBufferLines.setColumns(10);
+
     }
 
     @Override
@@ -167,12 +189,16 @@ public class GcodeAsyncDriverSettings extends AbstractConfigurationWizard {
 
         addWrappedBinding(driver, "confirmationFlowControl", confirmationFlowControl, "selected");
         addWrappedBinding(driver, "reportedLocationConfirmation", reportedLocationConfirmation, "selected");
+        addWrappedBinding(driver, "controllerBufferSize", controllerBufferSize, "text", intConverter);
+        addWrappedBinding(driver, "controllerBufferLines", controllerBufferLines, "text", intConverter);
         addWrappedBinding(driver, "interpolationMaxSteps", interpolationMaxSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationJerkSteps", interpolationJerkSteps, "text", intConverter);
         addWrappedBinding(driver, "interpolationTimeStep", interpolationTimeStep, "text", doubleConverterFine);
         addWrappedBinding(driver, "interpolationMinStep", interpolationMinStep, "text", intConverter);
         addWrappedBinding(driver, "junctionDeviation", junctionDeviation, "text", lengthConverter);
 
+        ComponentDecorators.decorateWithAutoSelect(controllerBufferSize);
+        ComponentDecorators.decorateWithAutoSelect(controllerBufferLines);
         ComponentDecorators.decorateWithAutoSelect(interpolationMaxSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationJerkSteps);
         ComponentDecorators.decorateWithAutoSelect(interpolationTimeStep);
@@ -1983,6 +1983,11 @@ public class BlindsFeeder extends ReferenceFeeder {
         }
     }
 
+    @Override
+    public int getRemainingCount() {
+        return Math.max(0, getLastPocket() - getFirstPocket() - getFeedCount() + 1);
+    }
+
     public int getFeedCount() {
         return feedCount;
     }
@@ -1993,6 +1998,16 @@ public class BlindsFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public long getCheckpointFeedCount() {
+        return getFeedCount();
+    }
+
+    @Override
+    public void setCheckpointFeedCount(long feedCount) {
+        setFeedCount((int) feedCount);
+    }
+
     public boolean isVisionEnabled() {
         return visionEnabled;
     }
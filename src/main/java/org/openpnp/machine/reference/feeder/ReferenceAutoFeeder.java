@@ -85,9 +85,39 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
 
     @Override
     public void feed(Nozzle nozzle) throws Exception {
+        if (consumePreFeed()) {
+            // Already actuated ahead of time.
+            return;
+        }
+        Actuator actuator = getFeedActuator(nozzle);
+        if (actuator == null) {
+            return;
+        }
+        if (isMoveBeforeFeed()) {
+            MovableUtils.moveToLocationAtSafeZ(nozzle, getPickLocation().derive(null, null, Double.NaN, null));
+        }
+        // Note by using the Object generic method, the value will be properly interpreted according to actuator.valueType.
+        actuator.actuate((Object)actuatorValue);
+    }
+
+    @Override
+    public boolean isPreFeedSupported() {
+        // Moving before the feed needs the nozzle.
+        return isPreFeed() && !isMoveBeforeFeed();
+    }
+
+    @Override
+    protected void actuateFeed(Nozzle nozzle) throws Exception {
+        Actuator actuator = getFeedActuator(nozzle);
+        if (actuator != null) {
+            actuator.actuate((Object)actuatorValue);
+        }
+    }
+
+    protected Actuator getFeedActuator(Nozzle nozzle) throws Exception {
         if (actuatorName == null || actuatorName.equals("")) {
             Logger.warn("No actuatorName specified for feeder {}.", getName());
-            return;
+            return null;
         }
         Actuator actuator = nozzle.getHead().getActuatorByName(actuatorName);
         if (actuator == null) {
@@ -96,11 +126,7 @@ public class ReferenceAutoFeeder extends ReferenceFeeder {
         if (actuator == null) {
             throw new Exception("Feed failed. Unable to find an actuator named " + actuatorName);
         }
-        if (isMoveBeforeFeed()) {
-            MovableUtils.moveToLocationAtSafeZ(nozzle, getPickLocation().derive(null, null, Double.NaN, null));
-        }
-        // Note by using the Object generic method, the value will be properly interpreted according to actuator.valueType.
-        actuator.actuate((Object)actuatorValue);
+        return actuator;
     }
     
     @Override
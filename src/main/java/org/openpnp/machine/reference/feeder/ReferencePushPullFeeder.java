@@ -852,6 +852,16 @@ public class ReferencePushPullFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public long getCheckpointFeedCount() {
+        return getFeedCount();
+    }
+
+    @Override
+    public void setCheckpointFeedCount(long feedCount) {
+        setFeedCount(feedCount);
+    }
+
     public long getFeedMultiplier() {
         return feedMultiplier;
     }
@@ -188,6 +188,16 @@ public class ReferenceRotatedTrayFeeder extends ReferenceFeeder {
 		firePropertyChange("feedCount", oldValue, feedCount);
 	}
 
+	@Override
+	public long getCheckpointFeedCount() {
+		return getFeedCount();
+	}
+
+	@Override
+	public void setCheckpointFeedCount(long feedCount) {
+		setFeedCount((int) feedCount);
+	}
+
 	@Override
 	public String toString() {
 		return getName();
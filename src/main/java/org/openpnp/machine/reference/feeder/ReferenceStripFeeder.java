@@ -395,6 +395,24 @@ public class ReferenceStripFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public long getCheckpointFeedCount() {
+        return getFeedCount();
+    }
+
+    @Override
+    public void setCheckpointFeedCount(long feedCount) {
+        setFeedCount((int) feedCount);
+    }
+
+    @Override
+    public int getRemainingCount() {
+        if (maxFeedCount <= 0) {
+            return -1;
+        }
+        return Math.max(0, maxFeedCount - feedCount);
+    }
+
 	public int getMaxFeedCount() {
 		return maxFeedCount;
 	}
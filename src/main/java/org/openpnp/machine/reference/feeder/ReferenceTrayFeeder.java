@@ -117,6 +117,11 @@ public class ReferenceTrayFeeder extends ReferenceFeeder {
         this.offsets = offsets;
     }
 
+    @Override
+    public int getRemainingCount() {
+        return Math.max(0, trayCountX * trayCountY - feedCount);
+    }
+
     public int getFeedCount() {
         return feedCount;
     }
@@ -127,6 +132,16 @@ public class ReferenceTrayFeeder extends ReferenceFeeder {
         firePropertyChange("feedCount", oldValue, feedCount);
     }
 
+    @Override
+    public long getCheckpointFeedCount() {
+        return getFeedCount();
+    }
+
+    @Override
+    public void setCheckpointFeedCount(long feedCount) {
+        setFeedCount((int) feedCount);
+    }
+
     @Override
     public String toString() {
         return getName();
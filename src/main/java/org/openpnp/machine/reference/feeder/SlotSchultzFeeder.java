@@ -88,6 +88,19 @@ public class SlotSchultzFeeder extends SchultzFeeder {
         super.feed(nozzle);
     }
 
+    @Override
+    public boolean isPreFeedSupported() {
+        return getFeeder() != null && super.isPreFeedSupported();
+    }
+
+    @Override
+    public void preFeed(Nozzle nozzle) throws Exception {
+        if (getFeeder() == null) {
+            throw new Exception("No feeder loaded in slot.");
+        }
+        super.preFeed(nozzle);
+    }
+
     @Override
     public void postPick(Nozzle nozzle) throws Exception {
         if (getFeeder() == null) {
@@ -56,6 +56,7 @@ public class ReferenceAutoFeederConfigurationWizard extends AbstractReferenceFee
     private JButton btnTestFeedActuator;
     private JButton btnTestPostPickActuator;
     private JCheckBox ckBoxMoveBeforeFeed;
+    private JCheckBox ckBoxPreFeed;
 
 
     public ReferenceAutoFeederConfigurationWizard(ReferenceAutoFeeder feeder) {
@@ -85,6 +86,8 @@ public class ReferenceAutoFeederConfigurationWizard extends AbstractReferenceFee
                         FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,
                         FormSpecs.RELATED_GAP_ROWSPEC,
+                        FormSpecs.DEFAULT_ROWSPEC,
+                        FormSpecs.RELATED_GAP_ROWSPEC,
                         FormSpecs.DEFAULT_ROWSPEC,}));
 
         JLabel lblActuator = new JLabel("Actuator");
@@ -133,6 +136,15 @@ public class ReferenceAutoFeederConfigurationWizard extends AbstractReferenceFee
 
         ckBoxMoveBeforeFeed = new JCheckBox();
         panelActuator.add(ckBoxMoveBeforeFeed, "4, 8, left, default");
+
+        JLabel lblPreFeed = new JLabel("Pre-feed");
+        panelActuator.add(lblPreFeed, "2, 10, right, default");
+        lblPreFeed.setToolTipText("<html>Actuate the feed ahead of time, while the job is still placing the previous cycle.<br/>"
+                + "The feed actuator should not be coordinated before actuation, so it can run while the machine moves.<br/>"
+                + "Not available with Move before feed.</html>");
+
+        ckBoxPreFeed = new JCheckBox();
+        panelActuator.add(ckBoxPreFeed, "4, 10, left, default");
     }
 
     @Override
@@ -149,6 +161,7 @@ public class ReferenceAutoFeederConfigurationWizard extends AbstractReferenceFee
         addWrappedBinding(feeder, "postPickActuatorValue", postPickActuatorValue, "text", doubleConverter);
 
         addWrappedBinding(feeder, "moveBeforeFeed", ckBoxMoveBeforeFeed, "selected");
+        addWrappedBinding(feeder, "preFeed", ckBoxPreFeed, "selected");
 
         ComponentDecorators.decorateWithAutoSelect(actuatorValue);
         ComponentDecorators.decorateWithAutoSelect(postPickActuatorValue);
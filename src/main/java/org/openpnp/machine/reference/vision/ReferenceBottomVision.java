@@ -2,6 +2,10 @@ package org.openpnp.machine.reference.vision;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -34,6 +38,7 @@ import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
 import org.openpnp.vision.pipeline.CvStage.Result;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -73,6 +78,8 @@ public class ReferenceBottomVision implements PartAlignment {
     @ElementMap(required = false)
     protected Map<String, PartSettings> partSettingsByPartId = new HashMap<>();
 
+    private static ExecutorService processingExecutor;
+
     @Override
     public PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation,
             Location placementLocation, Nozzle nozzle) throws Exception {
@@ -82,17 +89,11 @@ public class ReferenceBottomVision implements PartAlignment {
             return new PartAlignmentOffset(new Location(LengthUnit.Millimeters), false);
         }
 
-        if (part == null || nozzle.getPart() == null) {
-            throw new Exception("No part on nozzle.");
-        }
-        if (part != nozzle.getPart()) {
-            throw new Exception("Part mismatch with part on nozzle.");
-        }
+        checkPartOnNozzle(part, nozzle);
 
         Camera camera = VisionUtils.getBottomVisionCamera();
 
-        if ((partSettings.getPreRotateUsage() == PreRotateUsage.Default && preRotate)
-                || (partSettings.getPreRotateUsage() == PreRotateUsage.AlwaysOn)) {
+        if (isPreRotate(partSettings)) {
             return findOffsetsPreRotate(part, boardLocation, placementLocation, nozzle, camera,
                     partSettings);
         }
@@ -101,6 +102,70 @@ public class ReferenceBottomVision implements PartAlignment {
                     partSettings);
         }
     }
+
+    /**
+     * Without pre-rotation, the nozzle only needs to stay over the camera until the image is captured.
+     * The pipeline is then processed in the background on a copy, while the next nozzle can already
+     * move over the camera. Pre-rotation needs the result of each pass for the next and is done right
+     * away, as are pipelines that capture more than one image.
+     */
+    @Override
+    public Future<PartAlignmentOffset> findOffsetsOverlapped(Part part, BoardLocation boardLocation,
+            Location placementLocation, Nozzle nozzle) {
+        PartSettings partSettings = getPartSettings(part);
+        ImageCapture imageCapture = null;
+        if (isEnabled() && partSettings.isEnabled() && !isPreRotate(partSettings)) {
+            imageCapture = ImageCapture.getSingleImageCapture(partSettings.getPipeline());
+        }
+        if (imageCapture == null) {
+            return PartAlignment.super.findOffsetsOverlapped(part, boardLocation, placementLocation, nozzle);
+        }
+        CompletableFuture<PartAlignmentOffset> future = new CompletableFuture<>();
+        try {
+            checkPartOnNozzle(part, nozzle);
+            Camera camera = VisionUtils.getBottomVisionCamera();
+            MovableUtils.moveToLocationAtSafeZ(nozzle, getCameraLocationAtPartHeight(part, camera, nozzle, 0.));
+            CvPipeline pipeline = partSettings.getPipeline().clone();
+            pipeline.setProperty(ImageCapture.CAPTURED_IMAGE_PROPERTY, imageCapture.captureImage(camera));
+            getProcessingExecutor().execute(() -> {
+                try (CvPipeline processingPipeline = pipeline) {
+                    future.complete(processPostRotate(processingPipeline, part, nozzle, camera, partSettings));
+                }
+                catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    protected boolean isPreRotate(PartSettings partSettings) {
+        return (partSettings.getPreRotateUsage() == PreRotateUsage.Default && preRotate)
+                || (partSettings.getPreRotateUsage() == PreRotateUsage.AlwaysOn);
+    }
+
+    private static void checkPartOnNozzle(Part part, Nozzle nozzle) throws Exception {
+        if (part == null || nozzle.getPart() == null) {
+            throw new Exception("No part on nozzle.");
+        }
+        if (part != nozzle.getPart()) {
+            throw new Exception("Part mismatch with part on nozzle.");
+        }
+    }
+
+    private static synchronized ExecutorService getProcessingExecutor() {
+        if (processingExecutor == null) {
+            processingExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "ReferenceBottomVision processing");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return processingExecutor;
+    }
     
     public Location getCameraLocationAtPartHeight(Part part, Camera camera, Nozzle nozzle, double angle) {
         return camera.getLocation(nozzle)
@@ -246,45 +311,48 @@ public class ReferenceBottomVision implements PartAlignment {
         
         MovableUtils.moveToLocationAtSafeZ(nozzle, wantedLocation);
 
-        RotatedRect rect = null;
-        
         try (CvPipeline pipeline = partSettings.getPipeline()) {
-            rect = processPipelineAndGetResult(pipeline, camera, part, nozzle);
-            camera=(Camera)pipeline.getProperty("camera");
-
-            Logger.debug("Bottom vision part {} result rect {}", part.getId(), rect);
-
-            // Create the offsets object. This is the physical distance from
-            // the center of the camera to the located part.
-            Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
-
-            double angleOffset = VisionUtils.getPixelAngle(camera, rect.angle);
-            // Most OpenCV Pipelines can only tell us the angle of the recognized rectangle in a   
-            // wrapping-around range of 0° .. 90° as it has no notion of which rectangle side 
-            // is which. We can assume that the part is never picked more than +/-45º rotated.
-            // So we change the range wrapping-around to -45° .. +45°. See angleNorm():
-            if (partSettings.getMaxRotation() == MaxRotation.Adjust ) {
-                angleOffset = angleNorm(angleOffset);
-            } else {
-                // turning more than 180° in one direction makes no sense
-                angleOffset = angleNorm(angleOffset, 180);
-            }
+            return processPostRotate(pipeline, part, nozzle, camera, partSettings);
+        }
+    }
 
-            if (!partSizeCheck(part, partSettings, rect, camera) ) {
-                throw new Exception(String.format(
-                        "ReferenceBottomVision (%s): Incorrect part size.",
-                        part.getId() 
-                        ));          	
-            }
-            
-            // Set the angle on the offsets.
-            offsets = offsets.derive(null, null, null, angleOffset);
-            Logger.debug("Final offsets {}", offsets);
+    private PartAlignmentOffset processPostRotate(CvPipeline pipeline, Part part, Nozzle nozzle, Camera camera,
+            PartSettings partSettings) throws Exception {
+        RotatedRect rect = processPipelineAndGetResult(pipeline, camera, part, nozzle);
+        camera=(Camera)pipeline.getProperty("camera");
 
-            displayResult(pipeline, part, rect, offsets, camera);
+        Logger.debug("Bottom vision part {} result rect {}", part.getId(), rect);
+
+        // Create the offsets object. This is the physical distance from
+        // the center of the camera to the located part.
+        Location offsets = VisionUtils.getPixelCenterOffsets(camera, rect.center.x, rect.center.y);
 
-            return new PartAlignmentOffset(offsets, false);
+        double angleOffset = VisionUtils.getPixelAngle(camera, rect.angle);
+        // Most OpenCV Pipelines can only tell us the angle of the recognized rectangle in a   
+        // wrapping-around range of 0° .. 90° as it has no notion of which rectangle side 
+        // is which. We can assume that the part is never picked more than +/-45º rotated.
+        // So we change the range wrapping-around to -45° .. +45°. See angleNorm():
+        if (partSettings.getMaxRotation() == MaxRotation.Adjust ) {
+            angleOffset = angleNorm(angleOffset);
+        } else {
+            // turning more than 180° in one direction makes no sense
+            angleOffset = angleNorm(angleOffset, 180);
         }
+
+        if (!partSizeCheck(part, partSettings, rect, camera) ) {
+            throw new Exception(String.format(
+                    "ReferenceBottomVision (%s): Incorrect part size.",
+                    part.getId() 
+                    ));          	
+        }
+        
+        // Set the angle on the offsets.
+        offsets = offsets.derive(null, null, null, angleOffset);
+        Logger.debug("Final offsets {}", offsets);
+
+        displayResult(pipeline, part, rect, offsets, camera);
+
+        return new PartAlignmentOffset(offsets, false);
     }
 
     private boolean partSizeCheck(Part part, PartSettings partSettings, RotatedRect partRect, Camera camera) {
@@ -8,9 +8,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -49,6 +54,7 @@ import org.openpnp.util.TravellingSalesman;
 import org.openpnp.util.Utils2D;
 import org.openpnp.util.VisionUtils;
 import org.openpnp.vision.pipeline.CvPipeline;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 import org.pmw.tinylog.Logger;
 import org.simpleframework.xml.Attribute;
 import org.simpleframework.xml.Element;
@@ -77,6 +83,14 @@ public class ReferenceFiducialLocator implements FiducialLocator {
     
     @Element(required = false)
     protected FiducialLocatorTolerances tolerances = new FiducialLocatorTolerances();
+
+    @Attribute(required = false)
+    protected boolean preScan = false;
+
+    @Element(required = false)
+    protected Length preScanTolerance = new Length(1.0, LengthUnit.Millimeters);
+
+    private static ExecutorService processingExecutor;
     
     public static class FiducialLocatorTolerances {
         protected double scalingTolerance = 0.05; //unitless
@@ -154,7 +168,20 @@ public class ReferenceFiducialLocator implements FiducialLocator {
             
             Logger.debug("Found {} at {}", fiducial.getId(), measuredLocation);
         }
-        
+
+        return applyFiducialLocations(boardLocation, boardSide, savedBoardLocation, savedPlacementTransform,
+                expectedLocations, measuredLocations, checkPanel);
+    }
+
+    /**
+     * Derive the placement transform of the board from the expected and measured fiducial locations,
+     * check it against the tolerances and return the compensated board location. If the results are
+     * out of tolerance, the saved placement transform is restored and an Exception is thrown.
+     */
+    private Location applyFiducialLocations(BoardLocation boardLocation, Side boardSide,
+            Location savedBoardLocation, AffineTransform savedPlacementTransform,
+            List<Location> expectedLocations, List<Location> measuredLocations, boolean checkPanel)
+            throws Exception {
         // Calculate the transform.
         AffineTransform tx = Utils2D.deriveAffineTransform(expectedLocations, measuredLocations);
         
@@ -210,6 +237,237 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         return newBoardLocation;
     }
     
+    private static class PreScanFiducial {
+        final Placement fiducial;
+        final Location expectedLocation;
+        Location cameraLocation;
+        Future<Location> measuredLocation;
+
+        PreScanFiducial(BoardLocation boardLocation, Placement fiducial) {
+            this.fiducial = fiducial;
+            this.expectedLocation =
+                    Utils2D.calculateBoardPlacementLocation(boardLocation, fiducial.getLocation());
+        }
+    }
+
+    /**
+     * If pre-scan is enabled, locate the given boards in one pass. The fiducials of all the boards
+     * are visited on a single route. Each fiducial is captured once and its image is processed in the
+     * background while the camera already moves on to the next one. Only the fiducials that are not
+     * recognized or are found further than the pre-scan tolerance from the camera center are
+     * re-visited with repeated recognition, the same way as in locateBoard().
+     * 
+     * Boards that cannot be pre-scanned, i.e. with fewer than two fiducials or with a pipeline that
+     * captures more than one image, or that fail the pre-scan, are not returned and keep their
+     * placement transform.
+     */
+    @Override
+    public List<BoardLocation> locateBoards(List<BoardLocation> boardLocations) throws Exception {
+        List<BoardLocation> located = new ArrayList<>();
+        if (!preScan) {
+            return located;
+        }
+        Camera camera = Configuration.get().getMachine().getDefaultHead().getDefaultCamera();
+
+        Map<BoardLocation, AffineTransform> savedPlacementTransforms = new LinkedHashMap<>();
+        Map<BoardLocation, List<PreScanFiducial>> fiducialsByBoard = new LinkedHashMap<>();
+        try {
+            List<PreScanFiducial> preScanFiducials = new ArrayList<>();
+            for (BoardLocation boardLocation : boardLocations) {
+                List<Placement> fiducials = getFiducials(boardLocation);
+                if (fiducials.size() < 2 || !canPreScan(fiducials)) {
+                    continue;
+                }
+                savedPlacementTransforms.put(boardLocation, boardLocation.getPlacementTransform());
+                // Clear the current transform so it doesn't potentially send us to the wrong spot
+                // to find the fiducials.
+                boardLocation.setPlacementTransform(null);
+                List<PreScanFiducial> boardFiducials = new ArrayList<>();
+                for (Placement fiducial : fiducials) {
+                    boardFiducials.add(new PreScanFiducial(boardLocation, fiducial));
+                }
+                fiducialsByBoard.put(boardLocation, boardFiducials);
+                preScanFiducials.addAll(boardFiducials);
+            }
+            if (preScanFiducials.isEmpty()) {
+                return located;
+            }
+
+            // Use a traveling salesman algorithm to optimize the path to visit all the fiducials
+            TravellingSalesman<PreScanFiducial> tsm = new TravellingSalesman<>(
+                    preScanFiducials, 
+                    new TravellingSalesman.Locator<PreScanFiducial>() { 
+                        @Override
+                        public Location getLocation(PreScanFiducial locatable) {
+                            return locatable.expectedLocation;
+                        }
+                    }, 
+                    // start from current camera location
+                    camera.getLocation(),
+                    // and end anywhere
+                    null,
+                    MovableUtils.getTravelTimeEstimator(camera));
+            tsm.solve();
+
+            // Capture each fiducial once and process it in the background.
+            for (PreScanFiducial preScanFiducial : tsm.getTravel()) {
+                Part part = preScanFiducial.fiducial.getPart();
+                CvPipeline pipeline = getPartSettings(part).getPipeline().clone();
+                ImageCapture imageCapture = ImageCapture.getSingleImageCapture(pipeline);
+                Logger.debug("Pre-scanning {} at {}", preScanFiducial.fiducial.getId(), 
+                        preScanFiducial.expectedLocation);
+                Location cameraLocation;
+                try {
+                    MovableUtils.moveToLocationAtSafeZ(camera, preScanFiducial.expectedLocation);
+                    Configuration.get().getScripting().on("FirstFiducialPass", null);
+                    pipeline.setProperty("camera", camera);
+                    pipeline.setProperty("part", part);
+                    pipeline.setProperty("package", part.getPackage());
+                    pipeline.setProperty("footprint", part.getPackage().getFootprint());
+                    pipeline.setProperty(ImageCapture.CAPTURED_IMAGE_PROPERTY, imageCapture.captureImage(camera));
+                    cameraLocation = camera.getLocation();
+                }
+                catch (Exception e) {
+                    pipeline.close();
+                    throw e;
+                }
+                preScanFiducial.cameraLocation = cameraLocation;
+                preScanFiducial.measuredLocation = getProcessingExecutor().submit(() -> {
+                    try (CvPipeline processingPipeline = pipeline) {
+                        processingPipeline.process();
+                        return getClosestLocation(processingPipeline, camera, cameraLocation, part);
+                    }
+                });
+            }
+
+            // Evaluate the boards, re-visiting the outliers.
+            double tolerance = preScanTolerance.convertToUnits(LengthUnit.Millimeters).getValue();
+            for (Map.Entry<BoardLocation, List<PreScanFiducial>> entry : fiducialsByBoard.entrySet()) {
+                BoardLocation boardLocation = entry.getKey();
+                Side boardSide = boardLocation.getSide();
+                List<Location> expectedLocations = new ArrayList<>();
+                List<Location> measuredLocations = new ArrayList<>();
+                try {
+                    for (PreScanFiducial preScanFiducial : entry.getValue()) {
+                        Location measuredLocation = null;
+                        try {
+                            measuredLocation = preScanFiducial.measuredLocation.get();
+                        }
+                        catch (ExecutionException e) {
+                            Logger.debug("Pre-scan of {} failed: {}", preScanFiducial.fiducial.getId(), 
+                                    e.getCause().getMessage());
+                        }
+                        if (measuredLocation == null 
+                                || measuredLocation.getLinearLengthTo(preScanFiducial.cameraLocation)
+                                    .convertToUnits(LengthUnit.Millimeters).getValue() > tolerance) {
+                            measuredLocation = getFiducialLocation(
+                                    (measuredLocation != null ? measuredLocation : preScanFiducial.cameraLocation), 
+                                    preScanFiducial.fiducial.getPart());
+                        }
+                        expectedLocations.add(preScanFiducial.fiducial.getLocation()
+                                .invert(boardSide==Side.Bottom, false, false, false));
+                        measuredLocations.add(measuredLocation);
+
+                        Logger.debug("Found {} at {}", preScanFiducial.fiducial.getId(), measuredLocation);
+                    }
+                    applyFiducialLocations(boardLocation, boardSide, boardLocation.getLocation(), 
+                            savedPlacementTransforms.get(boardLocation), 
+                            expectedLocations, measuredLocations, false);
+                    located.add(boardLocation);
+                }
+                catch (Exception e) {
+                    Logger.warn("Pre-scan of {} failed: {}", boardLocation, e.getMessage());
+                }
+            }
+        }
+        finally {
+            for (Map.Entry<BoardLocation, AffineTransform> entry : savedPlacementTransforms.entrySet()) {
+                if (!located.contains(entry.getKey())) {
+                    entry.getKey().setPlacementTransform(entry.getValue());
+                }
+            }
+        }
+        return located;
+    }
+
+    private boolean canPreScan(List<Placement> fiducials) {
+        for (Placement fiducial : fiducials) {
+            Part part = fiducial.getPart();
+            if (part == null || part.getPackage() == null
+                    || part.getPackage().getFootprint() == null
+                    || part.getPackage().getFootprint().getShape() == null
+                    || ImageCapture.getSingleImageCapture(getPartSettings(part).getPipeline()) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the result of the processed pipeline that is closest to the camera center and show it on
+     * the camera view.
+     * 
+     * @param pipeline
+     * @param camera
+     * @param cameraLocation The location of the camera when the image was captured.
+     * @param part
+     * @return
+     * @throws Exception
+     */
+    private static Location getClosestLocation(CvPipeline pipeline, Camera camera, 
+            Location cameraLocation, Part part) throws Exception {
+        // Get the results
+        List<KeyPoint> keypoints = pipeline.getExpectedResult(VisionUtils.PIPELINE_RESULTS_NAME)
+                .getExpectedListModel(KeyPoint.class, 
+                        new Exception(part.getId()+" no matches found."));
+
+        // Convert to Locations
+        List<Location> locations = new ArrayList<Location>();
+        for (KeyPoint keypoint : keypoints) {
+            locations.add(cameraLocation.add(
+                    VisionUtils.getPixelCenterOffsets(camera, keypoint.pt.x, keypoint.pt.y)));
+        }
+        
+        // Sort by distance from center.
+        Collections.sort(locations, new Comparator<Location>() {
+            @Override
+            public int compare(Location o1, Location o2) {
+                double d1 = o1.getLinearDistanceTo(cameraLocation);
+                double d2 = o2.getLinearDistanceTo(cameraLocation);
+                return Double.compare(d1, d2);
+            }
+        });
+        
+        // And use the closest result
+        Location location = locations.get(0);
+
+        MainFrame frame = MainFrame.get(); 
+        if (frame != null) {
+            CameraView cameraView = frame.getCameraViews().getCameraView(camera);
+            if (cameraView != null) {    
+                LengthConverter lengthConverter = new LengthConverter();
+                cameraView.showFilteredImage(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), 
+                        lengthConverter.convertForward(location.getLengthX())+", "
+                                +lengthConverter.convertForward(location.getLengthY())+" "
+                                +location.getUnits().getShortName(),
+                        1500);
+            }
+        }
+        return location;
+    }
+
+    private static synchronized ExecutorService getProcessingExecutor() {
+        if (processingExecutor == null) {
+            processingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "ReferenceFiducialLocator processing");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return processingExecutor;
+    }
+
     /**
      * Gets the best fiducials from the given list. If there are at least three fiducials that are
      * non-colinear, the three that are most distant from one another will be returned.
@@ -325,7 +583,7 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         return getFiducialLocation(location, part);
     }
 
-    private Location getFiducialLocation(Location location, Part part) throws Exception {
+    protected Location getFiducialLocation(Location location, Part part) throws Exception {
         Camera camera = Configuration.get().getMachine().getDefaultHead().getDefaultCamera();
 
         org.openpnp.model.Package pkg = part.getPackage();
@@ -375,42 +633,8 @@ public class ReferenceFiducialLocator implements FiducialLocator {
                 // Perform vision operation
                 pipeline.process();
 
-                // Get the results
-                List<KeyPoint> keypoints = pipeline.getExpectedResult(VisionUtils.PIPELINE_RESULTS_NAME)
-                        .getExpectedListModel(KeyPoint.class, 
-                                new Exception(part.getId()+" no matches found."));
-
-                // Convert to Locations
-                List<Location> locations = new ArrayList<Location>();
-                for (KeyPoint keypoint : keypoints) {
-                    locations.add(VisionUtils.getPixelLocation(camera, keypoint.pt.x, keypoint.pt.y));
-                }
-                
-                // Sort by distance from center.
-                Collections.sort(locations, new Comparator<Location>() {
-                    @Override
-                    public int compare(Location o1, Location o2) {
-                        double d1 = o1.getLinearDistanceTo(camera.getLocation());
-                        double d2 = o2.getLinearDistanceTo(camera.getLocation());
-                        return Double.compare(d1, d2);
-                    }
-                });
-                
-                // And use the closest result
-                location = locations.get(0);
-
-                MainFrame frame = MainFrame.get(); 
-                if (frame != null) {
-                    CameraView cameraView = frame.getCameraViews().getCameraView(camera);
-                    if (cameraView != null) {    
-                        LengthConverter lengthConverter = new LengthConverter();
-                        cameraView.showFilteredImage(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), 
-                                lengthConverter.convertForward(location.getLengthX())+", "
-                                        +lengthConverter.convertForward(location.getLengthY())+" "
-                                        +location.getUnits().getShortName(),
-                                1500);
-                    }
-                }
+                // Use the closest result
+                location = getClosestLocation(pipeline, camera, camera.getLocation(), part);
 
                 Logger.debug("{} located at {}", part.getId(), location);
                 // Move to where we actually found the fid
@@ -490,42 +714,8 @@ public class ReferenceFiducialLocator implements FiducialLocator {
                 // Perform vision operation
                 pipeline.process();
 
-                // Get the results
-                List<KeyPoint> keypoints = pipeline.getExpectedResult(VisionUtils.PIPELINE_RESULTS_NAME)
-                        .getExpectedListModel(KeyPoint.class, 
-                                new Exception(part.getId()+" no matches found."));
-
-                // Convert to Locations
-                List<Location> locations = new ArrayList<Location>();
-                for (KeyPoint keypoint : keypoints) {
-                    locations.add(VisionUtils.getPixelLocation(camera, keypoint.pt.x, keypoint.pt.y));
-                }
-                
-                // Sort by distance from center.
-                Collections.sort(locations, new Comparator<Location>() {
-                    @Override
-                    public int compare(Location o1, Location o2) {
-                        double d1 = o1.getLinearDistanceTo(camera.getLocation());
-                        double d2 = o2.getLinearDistanceTo(camera.getLocation());
-                        return Double.compare(d1, d2);
-                    }
-                });
-                
-                // And use the closest result
-                location = locations.get(0);
-
-                MainFrame frame = MainFrame.get(); 
-                if (frame != null) {
-                    CameraView cameraView = frame.getCameraViews().getCameraView(camera);
-                    if (cameraView != null) {    
-                        LengthConverter lengthConverter = new LengthConverter();
-                        cameraView.showFilteredImage(OpenCvUtils.toBufferedImage(pipeline.getWorkingImage()), 
-                                lengthConverter.convertForward(location.getLengthX())+", "
-                                        +lengthConverter.convertForward(location.getLengthY())+" "
-                                        +location.getUnits().getShortName(),
-                                1500);
-                    }
-                }
+                // Use the closest result
+                location = getClosestLocation(pipeline, camera, camera.getLocation(), part);
 
                 Logger.debug("{} located at {}", part.getId(), location);
     
@@ -563,6 +753,22 @@ public class ReferenceFiducialLocator implements FiducialLocator {
         this.enabledAveraging = enabledAveraging;
     }
 
+    public boolean isPreScan() {
+        return preScan;
+    }
+
+    public void setPreScan(boolean preScan) {
+        this.preScan = preScan;
+    }
+
+    public Length getPreScanTolerance() {
+        return preScanTolerance;
+    }
+
+    public void setPreScanTolerance(Length preScanTolerance) {
+        this.preScanTolerance = preScanTolerance;
+    }
+
     public int getRepeatFiducialRecognition() {
     	return this.repeatFiducialRecognition;
     }
@@ -17,6 +17,7 @@ import org.openpnp.gui.MainFrame;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.gui.support.LengthConverter;
 import org.openpnp.gui.support.MessageBoxes;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator.PartSettings;
@@ -43,6 +44,8 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
     
     JCheckBox enabledAveragingCheckbox; 
     JTextField textFieldRepeatFiducialRecognition;
+    JCheckBox preScanCheckbox;
+    JTextField textFieldPreScanTolerance;
 
     public ReferenceFiducialLocatorConfigurationWizard(ReferenceFiducialLocator fiducialLocator) {
         this.fiducialLocator = fiducialLocator;
@@ -61,6 +64,10 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -128,6 +135,23 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
         enabledAveragingCheckbox = new JCheckBox("");
         panel.add(enabledAveragingCheckbox, "4, 6");
 
+        JLabel lblPreScan = new JLabel("Pre-Scan Boards?");
+        lblPreScan.setToolTipText("<html>Locate the fiducials of all the boards of a job on one route, capturing each fiducial once<br/>"
+                + "and processing the images in the background while the camera moves on.</html>");
+        panel.add(lblPreScan, "2, 8");
+
+        preScanCheckbox = new JCheckBox("");
+        panel.add(preScanCheckbox, "4, 8");
+
+        JLabel lblPreScanTolerance = new JLabel("Pre-Scan Tolerance");
+        lblPreScanTolerance.setToolTipText("<html>Pre-scanned fiducials found further than this from the camera center are re-visited<br/>"
+                + "with repeated recognition.</html>");
+        panel.add(lblPreScanTolerance, "2, 10");
+
+        textFieldPreScanTolerance = new JTextField();
+        panel.add(textFieldPreScanTolerance, "4, 10");
+        textFieldPreScanTolerance.setColumns(10);
+
     }
     
     private void editPipeline() throws Exception {
@@ -162,11 +186,15 @@ public class ReferenceFiducialLocatorConfigurationWizard extends AbstractConfigu
     @Override
     public void createBindings() {
     	IntegerConverter intConverter = new IntegerConverter();
+    	LengthConverter lengthConverter = new LengthConverter();
     	
     	addWrappedBinding(fiducialLocator, "enabledAveraging", enabledAveragingCheckbox, "selected");
     	addWrappedBinding(fiducialLocator, "repeatFiducialRecognition", textFieldRepeatFiducialRecognition, "text", intConverter);
+    	addWrappedBinding(fiducialLocator, "preScan", preScanCheckbox, "selected");
+    	addWrappedBinding(fiducialLocator, "preScanTolerance", textFieldPreScanTolerance, "text", lengthConverter);
     	
     	ComponentDecorators.decorateWithAutoSelect(textFieldRepeatFiducialRecognition);
+    	ComponentDecorators.decorateWithAutoSelectAndLengthConversion(textFieldPreScanTolerance);
     }
     
     @Override
@@ -35,6 +35,7 @@ import org.openpnp.Translations;
 import org.openpnp.gui.components.ComponentDecorators;
 import org.openpnp.gui.support.AbstractConfigurationWizard;
 import org.openpnp.gui.support.IntegerConverter;
+import org.openpnp.gui.support.LongConverter;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobBoardOrderHint;
 import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobPartOrderHint;
@@ -55,6 +56,13 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
     private JComboBox comboBoxJobBoardOrder;
     private JComboBox comboBoxJobPartOrder;
     private JTextField maxVisionRetriesTextField;
+    private JCheckBox optimizeCycleTravel;
+    private JTextField globalPlanningTime;
+    private JCheckBox overlappedAlignment;
+    private JCheckBox exportTimeline;
+    private JCheckBox checkpointProgress;
+    private JTextField checkpointInterval;
+    private JCheckBox journalPlacements;
 
     public ReferencePnpJobProcessorConfigurationWizard(ReferencePnpJobProcessor jobProcessor) {
         this.jobProcessor = jobProcessor;
@@ -70,6 +78,20 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
                 FormSpecs.RELATED_GAP_COLSPEC,
                 FormSpecs.DEFAULT_COLSPEC,},
             new RowSpec[] {
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
+                FormSpecs.RELATED_GAP_ROWSPEC,
+                FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
                 FormSpecs.DEFAULT_ROWSPEC,
                 FormSpecs.RELATED_GAP_ROWSPEC,
@@ -103,17 +125,85 @@ public class ReferencePnpJobProcessorConfigurationWizard extends AbstractConfigu
         maxVisionRetriesTextField = new JTextField();
         panelGeneral.add(maxVisionRetriesTextField, "4, 8");
         maxVisionRetriesTextField.setColumns(10);
+
+        JLabel lblOptimizeCycleTravel = new JLabel("Optimize cycle travel?");
+        lblOptimizeCycleTravel.setToolTipText("Pick and place the parts of each cycle in the order of the shortest travel time.");
+        panelGeneral.add(lblOptimizeCycleTravel, "2, 10, right, default");
+
+        optimizeCycleTravel = new JCheckBox("");
+        panelGeneral.add(optimizeCycleTravel, "4, 10");
+
+        JLabel lblGlobalPlanningTime = new JLabel("Global planning time [ms]");
+        lblGlobalPlanningTime.setToolTipText("Time the Global job planner may spend optimizing the plan for the whole job.");
+        panelGeneral.add(lblGlobalPlanningTime, "2, 12, right, default");
+
+        globalPlanningTime = new JTextField();
+        panelGeneral.add(globalPlanningTime, "4, 12");
+        globalPlanningTime.setColumns(10);
+
+        JLabel lblOverlappedAlignment = new JLabel("Overlapped alignment?");
+        lblOverlappedAlignment.setToolTipText("<html>Capture the bottom vision images of all the nozzles of a cycle in one camera pass<br/>\n"
+                + "and process them in the background while the next nozzle moves to the camera.<br/>\n"
+                + "Only pipelines with a single image capture are overlapped, the others are aligned as usual.</html>");
+        panelGeneral.add(lblOverlappedAlignment, "2, 14, right, default");
+
+        overlappedAlignment = new JCheckBox("");
+        panelGeneral.add(overlappedAlignment, "4, 14");
+
+        JLabel lblExportTimeline = new JLabel("Export timeline?");
+        lblExportTimeline.setToolTipText("<html>Write the step timeline of the last job as timeline.csv and timeline.json into the<br/>\n"
+                + "configuration directory, with the wall, motion, vision, feed and script time of every step.<br/>\n"
+                + "Each job replaces the previous export.</html>");
+        panelGeneral.add(lblExportTimeline, "2, 16, right, default");
+
+        exportTimeline = new JCheckBox("");
+        panelGeneral.add(exportTimeline, "4, 16");
+
+        JLabel lblCheckpointProgress = new JLabel("Checkpoint progress?");
+        lblCheckpointProgress.setToolTipText("<html>Checkpoint the placed flags and the feeder feed counts while the job runs,<br/>\n"
+                + "so a job interrupted by a crash or power cut can be resumed where it left off.<br/>\n"
+                + "When the job is started again, you are asked whether to resume it.</html>");
+        panelGeneral.add(lblCheckpointProgress, "2, 18, right, default");
+
+        checkpointProgress = new JCheckBox("");
+        panelGeneral.add(checkpointProgress, "4, 18");
+
+        JLabel lblCheckpointInterval = new JLabel("Checkpoint interval [ms]");
+        lblCheckpointInterval.setToolTipText("Maximum time between checkpoints within a cycle. A checkpoint is always taken at the end of a cycle.");
+        panelGeneral.add(lblCheckpointInterval, "2, 20, right, default");
+
+        checkpointInterval = new JTextField();
+        panelGeneral.add(checkpointInterval, "4, 20");
+        checkpointInterval.setColumns(10);
+
+        JLabel lblJournalPlacements = new JLabel("Journal placements?");
+        lblJournalPlacements.setToolTipText("<html>Journal each completed placement between the checkpoints and replay the journal<br/>\n"
+                + "when resuming, so no placement since the last checkpoint is lost.</html>");
+        panelGeneral.add(lblJournalPlacements, "2, 22, right, default");
+
+        journalPlacements = new JCheckBox("");
+        panelGeneral.add(journalPlacements, "4, 22");
     }
 
     @Override
     public void createBindings() {
         IntegerConverter intConverter = new IntegerConverter();
+        LongConverter longConverter = new LongConverter();
 
         addWrappedBinding(jobProcessor, "jobPlanner", comboBoxJobPlanners, "selectedItem");
         addWrappedBinding(jobProcessor, "jobBoardOrder", comboBoxJobBoardOrder, "selectedItem");
         addWrappedBinding(jobProcessor, "jobPartOrder", comboBoxJobPartOrder, "selectedItem");
         addWrappedBinding(jobProcessor, "maxVisionRetries", maxVisionRetriesTextField, "text", intConverter);
+        addWrappedBinding(jobProcessor, "optimizeCycleTravel", optimizeCycleTravel, "selected");
+        addWrappedBinding(jobProcessor, "globalPlanningTimeMilliseconds", globalPlanningTime, "text", longConverter);
+        addWrappedBinding(jobProcessor, "overlappedAlignment", overlappedAlignment, "selected");
+        addWrappedBinding(jobProcessor, "exportTimeline", exportTimeline, "selected");
+        addWrappedBinding(jobProcessor, "checkpointProgress", checkpointProgress, "selected");
+        addWrappedBinding(jobProcessor, "checkpointIntervalMilliseconds", checkpointInterval, "text", longConverter);
+        addWrappedBinding(jobProcessor, "journalPlacements", journalPlacements, "selected");
 
         ComponentDecorators.decorateWithAutoSelect(maxVisionRetriesTextField);
+        ComponentDecorators.decorateWithAutoSelect(globalPlanningTime);
+        ComponentDecorators.decorateWithAutoSelect(checkpointInterval);
     }
 }
@@ -4,8 +4,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.openpnp.model.MotionProfile.ProfileOption;
 import org.openpnp.util.XmlSerialize;
@@ -16,9 +22,31 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
 
     protected final static int segments = MotionProfile.segments; 
 
+    /**
+     * Minimum number of moves in a path before solveParallel() partitions it. For shorter paths the 
+     * fork/join overhead is not worth it.
+     */
+    protected final static int parallelMinSize = 8;
+
     public abstract int size();
     public abstract MotionProfile [] get(int i);
 
+    /**
+     * @param i
+     * @return The profiles of the move before move i, or null if move i is the first of the path.
+     */
+    protected MotionProfile [] getPrevious(int i) {
+        return (i > 0 ? get(i-1) : null);
+    }
+
+    /**
+     * @param i
+     * @return The profiles of the move after move i, or null if move i is the last of the path.
+     */
+    protected MotionProfile [] getNext(int i) {
+        return (i < size() - 1 ? get(i+1) : null);
+    }
+
     public Iterator<MotionProfile []> iterator() {
         return new PathIterator();
     }
@@ -50,6 +78,130 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
         solve(approximation, iterations);
     }
 
+    public void solveParallel() throws Exception {
+        solveParallel(approximation, iterations);
+    }
+
+    /**
+     * Solves the path like {@link #solve(double, int)}, but first partitions it into sub-paths that are 
+     * separated by zero velocity junctions, i.e. by corners between coordinated moves where the machine comes 
+     * to a still-stand. The solver never propagates constraints across such junctions, so the sub-paths are 
+     * independent and are solved concurrently in the common ForkJoinPool. The result is the same as with the 
+     * sequential solve().  
+     * 
+     * @param approximation
+     * @param iterations
+     * @throws Exception
+     */
+    public void solveParallel(double approximation, int iterations) throws Exception {
+        int size = size();
+        if (size < parallelMinSize) {
+            solve(approximation, iterations);
+            return;
+        }
+        List<SubPath> subPaths = new ArrayList<>();
+        int first = 0;
+        MotionProfile [] prevProfiles = null;
+        for (int i = 0; i < size; i++) {
+            MotionProfile [] profiles = get(i);
+            if (profiles.length == 0) {
+                // Zero dimensions, let the sequential solver handle it.
+                solve(approximation, iterations);
+                return;
+            }
+            if (prevProfiles != null && isZeroVelocityJunction(prevProfiles, profiles)) {
+                subPaths.add(new SubPath(first, i));
+                first = i;
+            }
+            prevProfiles = profiles;
+        }
+        subPaths.add(new SubPath(first, size));
+        if (subPaths.size() < 2) {
+            solve(approximation, iterations);
+            return;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (SubPath subPath : subPaths) {
+            tasks.add(() -> {
+                subPath.solve(approximation, iterations);
+                return null;
+            });
+        }
+        for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                future.get();
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * @param prevProfiles
+     * @param profiles
+     * @return true if the junction between the two moves is a corner between coordinated moves, where both 
+     * come to a still-stand. 
+     */
+    protected static boolean isZeroVelocityJunction(MotionProfile [] prevProfiles, MotionProfile [] profiles) {
+        if (prevProfiles.length != profiles.length 
+                || !MotionProfile.isCoordinated(prevProfiles) 
+                || !MotionProfile.isCoordinated(profiles)) {
+            return false;
+        }
+        for (int axis = 0; axis < profiles.length; axis++) {
+            if (prevProfiles[axis].hasOption(ProfileOption.Jog)
+                    || prevProfiles[axis].v[segments] != 0 || prevProfiles[axis].a[segments] != 0
+                    || profiles[axis].v[0] != 0 || profiles[axis].a[0] != 0) {
+                return false;
+            }
+        }
+        // Co-linear moves are solved as one sequence, so they are not a junction.
+        double [] prevUnitVector = MotionProfile.getUnitVector(prevProfiles);
+        double [] unitVector = MotionProfile.getUnitVector(profiles);
+        return !(MotionProfile.getLeadAxisIndex(prevUnitVector) == MotionProfile.getLeadAxisIndex(unitVector)
+                && MotionProfile.dotProduct(prevUnitVector, unitVector) >= 1.0 - MotionProfile.eps);
+    }
+
+    /**
+     * A view on a section of the path. The moves before and after the section are still seen as its neighbours, so the 
+     * section is solved with the same boundary conditions as in the whole path. As the section begins and ends at a 
+     * zero velocity junction, the neighbours are coordinated moves, and the solver only reads their Coordinated 
+     * option, which does not change while the neighbouring section is solved concurrently.  
+     */
+    private class SubPath extends AbstractMotionPath {
+        private final int first;
+        private final int end;
+
+        SubPath(int first, int end) {
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        public int size() {
+            return end - first;
+        }
+
+        @Override
+        public MotionProfile[] get(int i) {
+            return AbstractMotionPath.this.get(first + i);
+        }
+
+        @Override
+        protected MotionProfile[] getPrevious(int i) {
+            return AbstractMotionPath.this.getPrevious(first + i);
+        }
+
+        @Override
+        protected MotionProfile[] getNext(int i) {
+            return AbstractMotionPath.this.getNext(first + i);
+        }
+    }
+
     /**
      *  <h1>Simplified "PnP use case" heuristics for continuous smoothed motion path optimization.</h1> 
      *  <p>
@@ -157,7 +309,7 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
             for (int i = 0; i <= last; i = iNext) {
                 iNext = i+1;
                 MotionProfile [] profiles = get(i);
-                MotionProfile [] prevProfiles = (i > 0 ? get(i-1) : null);
+                MotionProfile [] prevProfiles = getPrevious(i);
                 if (simplified[i]) {
                     // We can only handle them as single coordinated moves for now, because they don't support acceleration != 0 in junctions. 
                     int lead = leadAxis[i];
@@ -194,7 +346,7 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
                         iNext = j+1;
                         exitProfiles = seqProfiles;
                     }
-                    MotionProfile [] nextProfiles = (iNext <= last ? get(iNext) : null);
+                    MotionProfile [] nextProfiles = getNext(iNext - 1);
                     if (iteration > 0) {
                         // This is a further refinement.
                         controlOvershoot(prevProfiles, profiles, exitProfiles, nextProfiles, lead,
@@ -308,8 +460,8 @@ public abstract class AbstractMotionPath implements Iterable<MotionProfile []> {
                 hasUncoordinated = false;
                 for (int i = 0; i <= last; i++) {
                     MotionProfile [] profiles = get(i);
-                    MotionProfile [] prevProfiles = (i > 0 ? get(i-1) : null);
-                    MotionProfile [] nextProfiles = (i < last ? get(i+1) : null);
+                    MotionProfile [] prevProfiles = getPrevious(i);
+                    MotionProfile [] nextProfiles = getNext(i);
                     if (! MotionProfile.isCoordinated(profiles)) {
                         boolean hasSolved = false;
                         for (int axis = 0; axis < dimensions; axis++) {
@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.Machine;
+import org.pmw.tinylog.Logger;
+
+/**
+ * The JobCheckpoint persists the progress of a running job, so it can be resumed after a crash: the
+ * active board location, the placed flags of all the board locations and the feed counts of the
+ * feeders.
+ * <p>
+ * The job processor takes a snapshot of the progress, which is cheap, and a background thread writes
+ * it. If the writer falls behind, snapshots are coalesced, only the latest one is written. The file
+ * is replaced atomically, so a crash while writing leaves the previous checkpoint intact. Nothing is
+ * written from the machine thread.
+ * </p>
+ * <p>
+ * Between snapshots, every completed placement is appended to a journal as one small record. The
+ * records queued while the writer is busy are written and synced together, so the journal costs one
+ * fsync per batch rather than per placement. Writing a snapshot truncates the journal, as the
+ * snapshot contains all the records before it. Restoring applies the snapshot and then, if enabled
+ * with {@link #setReplayJournal(boolean)}, replays the journal.
+ * </p>
+ * The checkpoint is cleared when the job ends regularly, so only an interrupted job leaves one behind.
+ * Nothing is restored unless the user chooses to resume, see {@link #hasCheckpoint(Job)}.
+ */
+public class JobCheckpoint {
+    private static final String KEY_JOB = "job";
+    private static final String KEY_TIME = "time";
+    private static final String KEY_BOARD_COUNT = "boards";
+    private static final String KEY_ACTIVE_BOARD = "activeBoard";
+    private static final String KEY_SEQUENCE = "sequence";
+    private static final String PREFIX_PLACED = "placed.";
+    private static final String PREFIX_FEEDER = "feeder.";
+    private static final String RECORD_JOB = "job";
+    private static final String RECORD_PLACED = "placed";
+
+    private static ExecutorService writerExecutor;
+
+    private final File file;
+    private final File journalFile;
+    private final AtomicReference<Properties> pending = new AtomicReference<>();
+    private final ConcurrentLinkedQueue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean journalScheduled = new AtomicBoolean();
+    private final AtomicLong recordSequence = new AtomicLong();
+    private FileOutputStream journal;
+    /**
+     * The sequence number of the last record written to the journal. Only accessed by the writer.
+     */
+    private long journalSequence;
+    private boolean replayJournal;
+
+    public JobCheckpoint(File file) {
+        this.file = file;
+        this.journalFile = new File(file.getParentFile(), file.getName() + ".journal");
+    }
+
+    /**
+     * @return The JobCheckpoint in the configuration directory.
+     * @throws IOException
+     */
+    public static JobCheckpoint getDefault() throws IOException {
+        return new JobCheckpoint(Configuration.get().getResourceFile(JobCheckpoint.class, "checkpoint.properties"));
+    }
+
+    protected static synchronized ExecutorService getWriterExecutor() {
+        if (writerExecutor == null) {
+            writerExecutor = Executors.newSingleThreadExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "JobCheckpoint writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return writerExecutor;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    public boolean isReplayJournal() {
+        return replayJournal;
+    }
+
+    /**
+     * @param replayJournal Whether {@link #restore(Job, Machine, boolean)} replays the journal after
+     * the snapshot. Off by default, then only the last snapshot is restored.
+     */
+    public void setReplayJournal(boolean replayJournal) {
+        this.replayJournal = replayJournal;
+    }
+
+    /**
+     * Take a snapshot of the job progress and queue it for writing.
+     *
+     * @param job
+     * @param activeBoardLocation The board location the job is currently working on, or null.
+     * @param feeders The feeders whose feed counts are recorded.
+     */
+    public void checkpoint(Job job, BoardLocation activeBoardLocation, List<Feeder> feeders) {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_SEQUENCE, Long.toString(recordSequence.get()));
+        properties.setProperty(KEY_JOB, getJobPath(job));
+        properties.setProperty(KEY_TIME, Long.toString(System.currentTimeMillis()));
+        List<BoardLocation> boardLocations = job.getBoardLocations();
+        properties.setProperty(KEY_BOARD_COUNT, Integer.toString(boardLocations.size()));
+        for (int i = 0; i < boardLocations.size(); i++) {
+            BoardLocation boardLocation = boardLocations.get(i);
+            if (boardLocation == activeBoardLocation) {
+                properties.setProperty(KEY_ACTIVE_BOARD, Integer.toString(i));
+            }
+            for (Placement placement : boardLocation.getBoard().getPlacements()) {
+                if (boardLocation.getPlaced(placement.getId())) {
+                    properties.setProperty(PREFIX_PLACED + i + "." + placement.getId(), "true");
+                }
+            }
+        }
+        for (Feeder feeder : feeders) {
+            long feedCount = feeder.getCheckpointFeedCount();
+            if (feedCount >= 0) {
+                properties.setProperty(PREFIX_FEEDER + feeder.getId(), Long.toString(feedCount));
+            }
+        }
+        if (pending.getAndSet(properties) == null) {
+            getWriterExecutor().submit(() -> {
+                Properties snapshot = pending.getAndSet(null);
+                if (write(snapshot)
+                        && journalSequence <= Long.parseLong(snapshot.getProperty(KEY_SEQUENCE))) {
+                    // The snapshot contains everything journaled so far.
+                    truncateJournal();
+                }
+            });
+        }
+    }
+
+    /**
+     * Append a completed placement to the journal. Only queues the record, the writer thread writes
+     * and syncs the queued records in batches.
+     *
+     * @param job
+     * @param boardLocation
+     * @param placement
+     * @param feeder The feeder the part was picked from, its feed count is recorded. May be null.
+     */
+    public void journalPlaced(Job job, BoardLocation boardLocation, Placement placement, Feeder feeder) {
+        int boardIndex = job.getBoardLocations().indexOf(boardLocation);
+        if (boardIndex < 0) {
+            return;
+        }
+        StringBuilder record = new StringBuilder();
+        record.append(RECORD_PLACED).append('\t').append(boardIndex).append('\t').append(placement.getId());
+        if (feeder != null && feeder.getCheckpointFeedCount() >= 0) {
+            record.append('\t').append(feeder.getId()).append('\t').append(feeder.getCheckpointFeedCount());
+        }
+        // The sequence number tells the writer whether a snapshot already contains the record.
+        record.insert(0, Long.toString(recordSequence.incrementAndGet()) + '\t');
+        pendingRecords.add(record.toString());
+        if (journalScheduled.compareAndSet(false, true)) {
+            String header = RECORD_JOB + '\t' + getJobPath(job) + '\t' + job.getBoardLocations().size();
+            getWriterExecutor().submit(() -> writeJournal(header));
+        }
+    }
+
+    private void writeJournal(String header) {
+        journalScheduled.set(false);
+        StringBuilder batch = new StringBuilder();
+        String record;
+        while ((record = pendingRecords.poll()) != null) {
+            int tab = record.indexOf('\t');
+            journalSequence = Long.parseLong(record.substring(0, tab));
+            batch.append(record, tab + 1, record.length()).append('\n');
+        }
+        if (batch.length() == 0) {
+            return;
+        }
+        try {
+            if (journal == null) {
+                boolean empty = !journalFile.exists() || journalFile.length() == 0;
+                journal = new FileOutputStream(journalFile, true);
+                if (empty) {
+                    batch.insert(0, header + '\n');
+                }
+            }
+            journal.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+            journal.getFD().sync();
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Job journal could not be written.");
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            }
+            catch (IOException e) {
+                Logger.warn(e);
+            }
+            journal = null;
+        }
+    }
+
+    private void truncateJournal() {
+        closeJournal();
+        if (journalFile.exists() && !journalFile.delete()) {
+            Logger.warn("Job journal {} could not be deleted.", journalFile);
+        }
+    }
+
+    /**
+     * Delete the checkpoint and the journal, after any pending write.
+     */
+    public void clear() {
+        pending.set(null);
+        pendingRecords.clear();
+        getWriterExecutor().submit(() -> {
+            truncateJournal();
+            if (file.exists() && !file.delete()) {
+                Logger.warn("Job checkpoint {} could not be deleted.", file);
+            }
+        });
+    }
+
+    /**
+     * Wait for the pending writes to complete.
+     *
+     * @throws Exception
+     */
+    public void flush() throws Exception {
+        Future<?> future = getWriterExecutor().submit(() -> {});
+        future.get(10, TimeUnit.SECONDS);
+    }
+
+    private boolean write(Properties properties) {
+        if (properties == null) {
+            return false;
+        }
+        File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+                properties.store(out, "OpenPnP job checkpoint");
+                out.getFD().sync();
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Job checkpoint could not be written.");
+            return false;
+        }
+    }
+
+    /**
+     * Load the checkpoint.
+     *
+     * @return The checkpoint properties, or null if there is no checkpoint.
+     * @throws IOException
+     */
+    protected Properties load() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        return properties;
+    }
+
+    /**
+     * Load the journal records.
+     *
+     * @return The records, split into their fields, or null if there is no journal. A record cut short
+     * by a crash is dropped.
+     * @throws IOException
+     */
+    protected List<String []> loadJournal() throws IOException {
+        if (!journalFile.exists()) {
+            return null;
+        }
+        byte [] bytes = Files.readAllBytes(journalFile.toPath());
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        // Only complete lines count.
+        text = text.substring(0, text.lastIndexOf('\n') + 1);
+        List<String []> records = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty()) {
+                records.add(line.split("\t"));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @param job
+     * @return True if there is a checkpoint or journal of an interrupted run of the given job, i.e.
+     * the job could be resumed.
+     * @throws IOException
+     */
+    public boolean hasCheckpoint(Job job) throws IOException {
+        if (job.getFile() == null) {
+            return false;
+        }
+        return loadMatching(job) != null || (replayJournal && loadMatchingJournal(job) != null);
+    }
+
+    /**
+     * Load the checkpoint, if it was written for the same job file and board locations.
+     *
+     * @param job
+     * @return The checkpoint properties, or null if there is no matching checkpoint.
+     * @throws IOException
+     */
+    protected Properties loadMatching(Job job) throws IOException {
+        String boardCount = Integer.toString(job.getBoardLocations().size());
+        Properties properties = load();
+        if (properties != null
+                && !(getJobPath(job).equals(properties.getProperty(KEY_JOB))
+                        && boardCount.equals(properties.getProperty(KEY_BOARD_COUNT)))) {
+            Logger.warn("Job checkpoint {} does not match the job.", file);
+            properties = null;
+        }
+        return properties;
+    }
+
+    /**
+     * Load the journal records, if they were written for the same job file and board locations.
+     *
+     * @param job
+     * @return The records including the job header, or null if there is no matching journal.
+     * @throws IOException
+     */
+    protected List<String []> loadMatchingJournal(Job job) throws IOException {
+        String boardCount = Integer.toString(job.getBoardLocations().size());
+        List<String []> records = loadJournal();
+        if (records != null
+                && !(records.size() > 0
+                        && records.get(0).length == 3
+                        && records.get(0)[0].equals(RECORD_JOB)
+                        && records.get(0)[1].equals(getJobPath(job))
+                        && records.get(0)[2].equals(boardCount))) {
+            Logger.warn("Job journal {} does not match the job.", journalFile);
+            records = null;
+        }
+        return records;
+    }
+
+    /**
+     * Restore the progress of the given job from the checkpoint and, if enabled, its journal, if they
+     * were written for the same job file and board locations. The placed flags are set and, if requested, the feed
+     * counts of the feeders are restored. Only call this when the user has chosen to resume.
+     *
+     * @param job
+     * @param machine
+     * @param restoreFeedCounts Whether to restore the feed counts of the feeders. The user must have
+     * confirmed this, as the feeders might have been reloaded since the run was interrupted.
+     * @return True if the job progress was restored.
+     * @throws IOException
+     */
+    public boolean restore(Job job, Machine machine, boolean restoreFeedCounts) throws IOException {
+        if (job.getFile() == null) {
+            return false;
+        }
+        List<BoardLocation> boardLocations = job.getBoardLocations();
+        Properties properties = loadMatching(job);
+        List<String []> records = replayJournal ? loadMatchingJournal(job) : null;
+        if (properties == null && records == null) {
+            return false;
+        }
+        int placedCount = 0;
+        Map<String, Long> feedCounts = new HashMap<>();
+        if (properties != null) {
+            for (int i = 0; i < boardLocations.size(); i++) {
+                BoardLocation boardLocation = boardLocations.get(i);
+                for (Placement placement : boardLocation.getBoard().getPlacements()) {
+                    if (properties.containsKey(PREFIX_PLACED + i + "." + placement.getId())
+                            && !boardLocation.getPlaced(placement.getId())) {
+                        boardLocation.setPlaced(placement.getId(), true);
+                        placedCount++;
+                    }
+                }
+            }
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith(PREFIX_FEEDER)) {
+                    feedCounts.put(key.substring(PREFIX_FEEDER.length()), Long.parseLong(properties.getProperty(key)));
+                }
+            }
+        }
+        if (records != null) {
+            for (String [] record : records.subList(1, records.size())) {
+                if (!record[0].equals(RECORD_PLACED) || (record.length != 3 && record.length != 5)) {
+                    continue;
+                }
+                int boardIndex = Integer.parseInt(record[1]);
+                if (boardIndex < 0 || boardIndex >= boardLocations.size()) {
+                    continue;
+                }
+                BoardLocation boardLocation = boardLocations.get(boardIndex);
+                if (!boardLocation.getPlaced(record[2])) {
+                    boardLocation.setPlaced(record[2], true);
+                    placedCount++;
+                }
+                if (record.length == 5) {
+                    feedCounts.put(record[3], Long.parseLong(record[4]));
+                }
+            }
+        }
+        if (restoreFeedCounts) {
+            for (Feeder feeder : machine.getFeeders()) {
+                Long feedCount = feedCounts.get(feeder.getId());
+                if (feedCount != null) {
+                    feeder.setCheckpointFeedCount(feedCount);
+                }
+            }
+        }
+        Logger.info("Job progress restored from checkpoint {}, {} placements marked placed.", file, placedCount);
+        return true;
+    }
+
+    private static String getJobPath(Job job) {
+        return job.getFile() != null ? job.getFile().getAbsolutePath() : "";
+    }
+}
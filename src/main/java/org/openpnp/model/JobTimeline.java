@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * The JobTimeline records the steps a job processor executes, with the wall time of each step and
+ * the time the step spent in the different activities, so the cycle time of a job can be broken down
+ * into motion, vision, feeding and scripting.
+ * <p>
+ * A step is opened with {@link #begin(String, double)} and closed with {@link #end(double)}. While
+ * the step is open, the placement it works on can be set and activity times can be added.
+ * </p>
+ * The JobTimeline is thread-safe, so it can be read live while the job is running.
+ */
+public class JobTimeline {
+    public enum Activity {
+        Vision,
+        Feed,
+        Script
+    }
+
+    public static class Entry {
+        private final String step;
+        private String placement;
+        private String part;
+        private String nozzle;
+        private final double startTime;
+        private double wallTime;
+        private double motionTime;
+        private final double [] activityTimes = new double[Activity.values().length];
+
+        private Entry(String step, double startTime) {
+            this.step = step;
+            this.startTime = startTime;
+        }
+
+        public String getStep() {
+            return step;
+        }
+
+        public String getPlacement() {
+            return placement;
+        }
+
+        public String getPart() {
+            return part;
+        }
+
+        public String getNozzle() {
+            return nozzle;
+        }
+
+        /**
+         * @return The start time of the step in seconds, relative to the start of the timeline.
+         */
+        public double getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return The wall time of the step in seconds.
+         */
+        public double getWallTime() {
+            return wallTime;
+        }
+
+        /**
+         * @return The time of the motion planned during the step in seconds, i.e. the time the step
+         * keeps the machine busy moving.
+         */
+        public double getMotionTime() {
+            return motionTime;
+        }
+
+        /**
+         * @param activity
+         * @return The time the step spent in the given activity in seconds.
+         */
+        public double getActivityTime(Activity activity) {
+            return activityTimes[activity.ordinal()];
+        }
+    }
+
+    public static class Totals {
+        private int count;
+        private double wallTime;
+        private double motionTime;
+        private final double [] activityTimes = new double[Activity.values().length];
+
+        private void add(Entry entry) {
+            count++;
+            wallTime += entry.wallTime;
+            motionTime += entry.motionTime;
+            for (int i = 0; i < activityTimes.length; i++) {
+                activityTimes[i] += entry.activityTimes[i];
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getWallTime() {
+            return wallTime;
+        }
+
+        public double getMotionTime() {
+            return motionTime;
+        }
+
+        public double getActivityTime(Activity activity) {
+            return activityTimes[activity.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.US, "%d x, wall %.3fs, motion %.3fs", count, wallTime, motionTime));
+            for (Activity activity : Activity.values()) {
+                sb.append(String.format(Locale.US, ", %s %.3fs", activity.name().toLowerCase(),
+                        activityTimes[activity.ordinal()]));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private Entry current;
+    private long currentNanos;
+    private double currentMotionTime;
+
+    private double now() {
+        return (System.nanoTime() - startNanos) * 1e-9;
+    }
+
+    /**
+     * Open a new step. Any step still open is closed first.
+     *
+     * @param step The name of the step.
+     * @param totalMotionTime The total motion time of the motion planner at the start of the step.
+     */
+    public synchronized void begin(String step, double totalMotionTime) {
+        if (current != null) {
+            end(totalMotionTime);
+        }
+        currentNanos = System.nanoTime();
+        currentMotionTime = totalMotionTime;
+        current = new Entry(step, now());
+    }
+
+    /**
+     * Set the placement the open step works on.
+     *
+     * @param placement
+     * @param part
+     * @param nozzle
+     */
+    public synchronized void setPlacement(String placement, String part, String nozzle) {
+        if (current != null) {
+            current.placement = placement;
+            current.part = part;
+            current.nozzle = nozzle;
+        }
+    }
+
+    /**
+     * Add time spent in an activity to the open step.
+     *
+     * @param activity
+     * @param nanos The time in nanoseconds, as obtained from System.nanoTime() differences.
+     */
+    public synchronized void addActivityTime(Activity activity, long nanos) {
+        if (current != null) {
+            current.activityTimes[activity.ordinal()] += nanos * 1e-9;
+        }
+    }
+
+    /**
+     * Close the open step and add it to the timeline.
+     *
+     * @param totalMotionTime The total motion time of the motion planner at the end of the step.
+     */
+    public synchronized void end(double totalMotionTime) {
+        if (current == null) {
+            return;
+        }
+        current.wallTime = (System.nanoTime() - currentNanos) * 1e-9;
+        current.motionTime = totalMotionTime - currentMotionTime;
+        entries.add(current);
+        current = null;
+    }
+
+    /**
+     * @return A copy of the closed steps, in the order they were executed.
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * @return The step that is currently open or null.
+     */
+    public synchronized Entry getCurrentEntry() {
+        return current;
+    }
+
+    /**
+     * @return The totals of the closed steps by step name, in the order the steps first appeared.
+     */
+    public synchronized Map<String, Totals> getTotals() {
+        Map<String, Totals> totals = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            totals.computeIfAbsent(entry.step, (k) -> new Totals()).add(entry);
+        }
+        return totals;
+    }
+
+    private static String csvField(String s) {
+        if (s == null) {
+            return "";
+        }
+        if (s.contains(",") || s.contains("\"") || s.contains("\n")) {
+            return "\"" + s.replace("\"", "\"\"") + "\"";
+        }
+        return s;
+    }
+
+    /**
+     * Write the closed steps as CSV, one line per step, with the times in seconds.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void exportCsv(File file) throws IOException {
+        List<Entry> entries = getEntries();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            out.print("Step,Placement,Part,Nozzle,StartTime,WallTime,MotionTime");
+            for (Activity activity : Activity.values()) {
+                out.print("," + activity.name() + "Time");
+            }
+            out.println();
+            for (Entry entry : entries) {
+                out.print(String.format(Locale.US, "%s,%s,%s,%s,%.6f,%.6f,%.6f",
+                        csvField(entry.step), csvField(entry.placement), csvField(entry.part),
+                        csvField(entry.nozzle), entry.startTime, entry.wallTime, entry.motionTime));
+                for (double activityTime : entry.activityTimes) {
+                    out.print(String.format(Locale.US, ",%.6f", activityTime));
+                }
+                out.println();
+            }
+        }
+    }
+
+    private static void putTimes(Map<String, Object> map, double wallTime, double motionTime, double [] activityTimes) {
+        map.put("wallTime", wallTime);
+        map.put("motionTime", motionTime);
+        for (Activity activity : Activity.values()) {
+            map.put(activity.name().toLowerCase() + "Time", activityTimes[activity.ordinal()]);
+        }
+    }
+
+    /**
+     * Write the closed steps and the totals by step as JSON.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void exportJson(File file) throws IOException {
+        Map<String, Object> totals = new LinkedHashMap<>();
+        for (Map.Entry<String, Totals> entry : getTotals().entrySet()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", entry.getValue().count);
+            putTimes(map, entry.getValue().wallTime, entry.getValue().motionTime, entry.getValue().activityTimes);
+            totals.put(entry.getKey(), map);
+        }
+        List<Object> steps = new ArrayList<>();
+        for (Entry entry : getEntries()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("step", entry.step);
+            map.put("placement", entry.placement);
+            map.put("part", entry.part);
+            map.put("nozzle", entry.nozzle);
+            map.put("startTime", entry.startTime);
+            putTimes(map, entry.wallTime, entry.motionTime, entry.activityTimes);
+            steps.add(map);
+        }
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("totals", totals);
+        json.put("steps", steps);
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            gson.toJson(json, out);
+        }
+    }
+}
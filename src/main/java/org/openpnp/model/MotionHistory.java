@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2020 <mark@makr.zone>
+ * inspired and based on work
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.model;
+
+/**
+ * The MotionHistory records the real-time motion plan, i.e. the planned Motions indexed by their
+ * planned end time. It is a fixed-capacity ring buffer, so if nobody clears the history, the oldest
+ * Motions are automatically evicted and memory stays bounded on long unattended runs.
+ * <p>
+ * The times are kept in a primitive array and must be added in ascending order, so lookups are a
+ * binary search.
+ * </p>
+ * The MotionHistory is thread-safe.
+ */
+public class MotionHistory {
+    private final double [] times;
+    private final Motion [] motions;
+    private int head = 0;
+    private int size = 0;
+    private long evictions = 0;
+
+    public MotionHistory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("MotionHistory capacity must be at least 1.");
+        }
+        times = new double[capacity];
+        motions = new Motion[capacity];
+    }
+
+    private int physical(int index) {
+        int i = head + index;
+        return i < times.length ? i : i - times.length;
+    }
+
+    /**
+     * Add the Motion at the given planned end time. If the time equals the last time, the last
+     * Motion is replaced. If the history is full, the oldest Motion is evicted.
+     *
+     * @param time1 The planned end time of the motion. Must not be lower than the last time.
+     * @param motion
+     */
+    public synchronized void add(double time1, Motion motion) {
+        if (size > 0) {
+            int last = physical(size - 1);
+            if (time1 < times[last]) {
+                throw new IllegalArgumentException("Motion time "+time1+" is before the last time "+times[last]+".");
+            }
+            if (time1 == times[last]) {
+                motions[last] = motion;
+                return;
+            }
+        }
+        if (size == times.length) {
+            // Full, evict the oldest.
+            motions[head] = null;
+            head = physical(1);
+            size--;
+            evictions++;
+        }
+        int i = physical(size);
+        times[i] = time1;
+        motions[i] = motion;
+        size++;
+    }
+
+    /**
+     * @param time
+     * @return The logical index of the first entry with a time strictly higher than the given time,
+     * or size if there is none.
+     */
+    private int higherIndex(double time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[physical(mid)] <= time) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param time
+     * @return The Motion that ends strictly after the given time, i.e. the Motion that is in progress
+     * at the given time, or null if the history ends before the given time.
+     */
+    public synchronized Motion getMotionAfter(double time) {
+        int index = higherIndex(time);
+        return index < size ? motions[physical(index)] : null;
+    }
+
+    /**
+     * @return The last Motion in the history or null if empty.
+     */
+    public synchronized Motion getLastMotion() {
+        return size > 0 ? motions[physical(size - 1)] : null;
+    }
+
+    /**
+     * @return The last planned time in the history or Double.NEGATIVE_INFINITY if empty.
+     */
+    public synchronized double getLastTime() {
+        return size > 0 ? times[physical(size - 1)] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Clear the Motions that ended before the given time.
+     *
+     * @param time
+     */
+    public synchronized void clearOlderThan(double time) {
+        while (size > 0 && times[head] < time) {
+            motions[head] = null;
+            head = physical(1);
+            size--;
+        }
+    }
+
+    public synchronized void clear() {
+        while (size > 0) {
+            motions[head] = null;
+            head = physical(1);
+            size--;
+        }
+        head = 0;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * @return The number of Motions that were evicted because the capacity was exceeded.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -94,6 +94,12 @@ public class MotionProfile {
 
     int profileOptions;
 
+    /**
+     * The cache is installed by the motion planner, according to its configuration. Profiles are solved 
+     * on multiple threads, hence volatile.
+     */
+    private static volatile MotionProfileCache solutionCache;
+
     public enum ProfileOption {
         Coordinated, 
         SynchronizeEarlyBird, 
@@ -125,6 +131,17 @@ public class MotionProfile {
         return profileOptions;
     }
 
+    /**
+     * @return The cache used to remember solved profiles, or null if caching is disabled.
+     */
+    public static MotionProfileCache getSolutionCache() {
+        return solutionCache;
+    }
+
+    public static void setSolutionCache(MotionProfileCache solutionCache) {
+        MotionProfile.solutionCache = solutionCache;
+    }
+
     public MotionProfile(double s0, double s1, double v0, double v1, double a0, double a1,
             double sMin, double sMax, double vMax, double aMaxEntry, double aMaxExit, double jMax, double tMin, double tMax,
             int profileOptions) {
@@ -565,12 +582,24 @@ public class MotionProfile {
     }
 
     public void solve() {
+        MotionProfileCache cache = solutionCache;
+        if (cache != null) {
+            double tStart = NanosecondTime.getRuntimeSeconds();
+            if (cache.restore(this)) {
+                solvingTime = NanosecondTime.getRuntimeSeconds() - tStart;
+                setOption(ProfileOption.Solved);
+                return;
+            }
+        }
         // scale down tolerances for tiny moves
         double magnitude = Math.max(eps,  Math.min(1.0, 
                 0.01*(Math.abs(s[0]-s[segments])
                         +Math.abs(v[0])+Math.abs(v[segments])
                         +Math.abs(a[0])+Math.abs(a[segments]))));
         solve(iterations, vtol*Math.sqrt(magnitude), ttol*Math.sqrt(magnitude));
+        if (cache != null) {
+            cache.store(this);
+        }
     }
     public void solve(final int iterations, final double vtol, final double ttol) {
         double tStart = NanosecondTime.getRuntimeSeconds();
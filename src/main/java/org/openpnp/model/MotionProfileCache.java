@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2020 <mark@makr.zone>
+ * inspired and based on work
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openpnp.model.MotionProfile.ProfileOption;
+
+/**
+ * Least recently used cache of solved MotionProfiles. A pick and place job repeats the same moves
+ * over and over, e.g. the Z down/up moves at the feeder or the approach to the bottom camera. Solving
+ * a jerk controlled profile is numerical and costly, so the solutions are remembered here.
+ * <p>
+ * The cache key consists of the quantized solver inputs, i.e. the entry/exit conditions, the limits
+ * (which already include the speed factor) and the options. Locations are taken relative to the
+ * profile start, therefore the same move made at a different place on the machine is also a hit.
+ * As the key is quantized, a restored solution is re-validated against the exact inputs of the
+ * profile and only used if it is consistent.
+ * </p>
+ * The cache is lock-free for lookups, so profiles can be solved in parallel. Eviction of the least 
+ * recently used solutions is done by one thread at a time, while the others carry on. 
+ */
+public class MotionProfileCache {
+    /**
+     * Quantization of the solver inputs (mm, s and derivatives). This is far below any
+     * machine resolution, it just absorbs floating point noise from coordinate transformations.
+     */
+    public static final double quantum = 1e-6;
+
+    private static final int keyOptionsMask = ~ProfileOption.Solved.flag();
+
+    private volatile int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final AtomicLong useCount = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final ConcurrentHashMap<Key, Solution> solutions = new ConcurrentHashMap<>();
+
+    private static final class Solution {
+        private final MotionProfile profile;
+        private volatile long lastUse;
+
+        Solution(MotionProfile profile, long lastUse) {
+            this.profile = profile;
+            this.lastUse = lastUse;
+        }
+    }
+
+    public MotionProfileCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    protected static final class Key {
+        private final long [] quantized;
+        private final int options;
+        private final int hashCode;
+
+        Key(MotionProfile profile) {
+            final int segments = MotionProfile.segments;
+            double s0 = profile.s[0];
+            quantized = new long[] {
+                    quantize(profile.s[segments] - s0),
+                    quantize(profile.v[0]),
+                    quantize(profile.v[segments]),
+                    quantize(profile.a[0]),
+                    quantize(profile.a[segments]),
+                    quantize(profile.sMin - s0),
+                    quantize(profile.sMax - s0),
+                    quantize(profile.vMax),
+                    quantize(profile.aMaxEntry),
+                    quantize(profile.aMaxExit),
+                    quantize(profile.jMax),
+                    quantize(profile.tMin),
+                    quantize(profile.tMax),
+            };
+            options = profile.profileOptions & keyOptionsMask;
+            hashCode = 31*Arrays.hashCode(quantized) + options;
+        }
+
+        private static long quantize(double value) {
+            // Note, infinite values saturate to Long.MIN_VALUE/MAX_VALUE, which is what we want.
+            return Math.round(value/quantum);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && options == other.options
+                    && Arrays.equals(quantized, other.quantized);
+        }
+    }
+
+    /**
+     * Tries to restore the solution of the given profile from the cache.
+     *
+     * @param profile
+     * @return true if the solution was found and restored into the profile.
+     */
+    public boolean restore(MotionProfile profile) {
+        if (capacity <= 0) {
+            return false;
+        }
+        Solution solution = solutions.get(new Key(profile));
+        if (solution == null) {
+            misses.increment();
+            return false;
+        }
+        // The solution was made for inputs that are only equal within the quantum. Apply it to a copy and
+        // only take it if it is consistent with the exact entry/exit conditions and limits of this profile.
+        MotionProfile candidate = new MotionProfile(profile);
+        copySolution(candidate, solution.profile, profile.s[0] - solution.profile.s[0]);
+        if (candidate.checkValidity() != null) {
+            misses.increment();
+            return false;
+        }
+        solution.lastUse = useCount.incrementAndGet();
+        hits.increment();
+        copySolution(profile, candidate, 0);
+        return true;
+    }
+
+    /**
+     * Stores the solution of the given (solved) profile in the cache.
+     *
+     * @param profile
+     */
+    public void store(MotionProfile profile) {
+        if (capacity <= 0) {
+            return;
+        }
+        MotionProfile solution = new MotionProfile(profile);
+        copySolution(solution, profile, 0);
+        solutions.put(new Key(profile), new Solution(solution, useCount.incrementAndGet()));
+        if (solutions.size() > capacity && evictionLock.tryLock()) {
+            try {
+                evict(capacity);
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used solutions until no more than the given number are left.
+     *
+     * @param capacity
+     */
+    protected void evict(int capacity) {
+        int excess = solutions.size() - Math.max(0, capacity);
+        if (excess <= 0) {
+            return;
+        }
+        // Take the use counts once, they may change while sorting.
+        List<long []> uses = new ArrayList<>();
+        List<Map.Entry<Key, Solution>> entries = new ArrayList<>(solutions.entrySet());
+        for (int i = 0; i < entries.size(); i++) {
+            uses.add(new long[] { entries.get(i).getValue().lastUse, i });
+        }
+        uses.sort((u1, u2) -> Long.compare(u1[0], u2[0]));
+        for (int i = 0; i < excess && i < uses.size(); i++) {
+            Map.Entry<Key, Solution> entry = entries.get((int) uses.get(i)[1]);
+            if (solutions.remove(entry.getKey(), entry.getValue())) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Copies the full solution from the template to the profile. Unlike
+     * {@link MotionProfile#copyProfileSolution(MotionProfile)} this also includes the synchronization
+     * wait time and it shifts the locations by ds.
+     *
+     * @param profile
+     * @param template
+     * @param ds
+     */
+    protected static void copySolution(MotionProfile profile, MotionProfile template, double ds) {
+        final int segments = MotionProfile.segments;
+        // Keep the exact entry/exit conditions, the template may deviate by quantization.
+        double s0 = profile.s[0];
+        double s1 = profile.s[segments];
+        double v0 = profile.v[0];
+        double v1 = profile.v[segments];
+        double a0 = profile.a[0];
+        double a1 = profile.a[segments];
+        profile.copyProfileSolution(template);
+        for (int seg = 0; seg <= segments; seg++) {
+            profile.s[seg] += ds;
+        }
+        profile.s[0] = s0;
+        profile.s[segments] = s1;
+        profile.v[0] = v0;
+        profile.v[segments] = v1;
+        profile.a[0] = a0;
+        profile.a[segments] = a1;
+        profile.t[segments+1] = template.t[segments+1];
+        profile.sBound0 += ds;
+        profile.sBound1 += ds;
+        profile.eval = template.eval;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        evictionLock.lock();
+        try {
+            if (capacity <= 0) {
+                solutions.clear();
+            }
+            else {
+                evict(capacity);
+            }
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return solutions.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : ((double) hits)/lookups;
+    }
+
+    public void clear() {
+        solutions.clear();
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MotionProfileCache { size = %d/%d, hits = %d, misses = %d, evictions = %d, hit rate = %.1f%% }",
+                solutions.size(), capacity, getHits(), getMisses(), getEvictions(), getHitRate()*100);
+    }
+}
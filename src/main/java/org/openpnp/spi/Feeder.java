@@ -100,8 +100,64 @@ public interface Feeder extends Identifiable, Named, WizardConfigurable, Propert
      */
     public void feed(Nozzle nozzle) throws Exception;
 
+    /**
+     * @return True if the Feeder can feed ahead of time, without Head interaction, while the Nozzle
+     * is still busy elsewhere. See {@link #preFeed(Nozzle)}.
+     */
+    public default boolean isPreFeedSupported() {
+        return false;
+    }
+
+    /**
+     * Commands the Feeder to feed ahead of time, so the part is ready when the Nozzle arrives.
+     * The JobProcessor calls this for the next cycle's picks, while the current cycle is still
+     * aligning and placing. The next call to feed() must then only do what remains to be done,
+     * if anything. Only called if {@link #isPreFeedSupported()}.
+     *
+     * @param nozzle The Nozzle that is planned to pick from the Feeder.
+     * @throws Exception
+     */
+    public default void preFeed(Nozzle nozzle) throws Exception {
+    }
+
+    /**
+     * Forgets a pre-feed that was not consumed by feed(), so the next feed() actuates normally. The
+     * JobProcessor calls this at the start and the end of a job, and when the planned next cycle is
+     * dropped. User initiated feeds call it too, so they never rely on a stale pre-feed.
+     */
+    public default void cancelPreFeed() {
+    }
+
     public void postPick(Nozzle nozzle) throws Exception;
 
+    /**
+     * If several feeders serve the same Part, the JobProcessor skips the empty ones and prefers the
+     * fuller ones.
+     *
+     * @return The number of parts left in the Feeder, or -1 if unknown.
+     */
+    public default int getRemainingCount() {
+        return -1;
+    }
+
+    /**
+     * Feeders that count their feeds to know where the next part is, expose the count so the
+     * JobProcessor can checkpoint it while a job runs, and restore it when resuming after a crash.
+     *
+     * @return The feed count, or -1 if the Feeder does not count feeds.
+     */
+    public default long getCheckpointFeedCount() {
+        return -1;
+    }
+
+    /**
+     * Restores the feed count returned by {@link #getCheckpointFeedCount()}.
+     *
+     * @param feedCount
+     */
+    public default void setCheckpointFeedCount(long feedCount) {
+    }
+
     /**
      * If feed() throws an Exception during job processing, the job processor will retry the
      * feed() call this many times before raising the error.
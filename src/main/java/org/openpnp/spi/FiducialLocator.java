@@ -1,5 +1,8 @@
 package org.openpnp.spi;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Location;
@@ -20,6 +23,19 @@ public interface FiducialLocator extends PropertySheetHolder {
     public Location getHomeFiducialLocation(Location location, Part part) throws Exception;
 
     public Location getFiducialLocation(BoardLocation boardLocation, Placement fid) throws Exception;
+
+    /**
+     * Locate a number of boards in one go, which lets the implementation optimize the visits of the
+     * fiducials over all the boards. The boards that are not returned must be located using
+     * locateBoard(), one by one. The default implementation locates none.
+     * 
+     * @param boardLocations
+     * @return The BoardLocations that were located.
+     * @throws Exception
+     */
+    public default List<BoardLocation> locateBoards(List<BoardLocation> boardLocations) throws Exception {
+        return new ArrayList<>();
+    }
     
     /**
      * Get a Wizard for configuring the FiducialLocator instance properties for a specific
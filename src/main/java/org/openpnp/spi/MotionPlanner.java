@@ -22,6 +22,8 @@
 package org.openpnp.spi;
 
 import org.openpnp.model.AxesLocation;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
 import org.openpnp.model.Motion;
 import org.openpnp.model.Solutions;
 import org.openpnp.model.Motion.MotionOption;
@@ -202,4 +204,41 @@ public interface MotionPlanner extends PropertySheetHolder, Solutions.Subject {
      * @return true if the location is valid, i.e. inside soft limits etc.
      */
     public boolean isValidLocation(AxesLocation axesLocation);
+
+    /**
+     * Estimate the time it takes to move the HeadMountable from one Location to another, including the 
+     * Safe Z up and down legs, i.e. like MovableUtils.moveToLocationAtSafeZ() does it. The estimate uses the 
+     * same axis feed-rate, acceleration and jerk limits and MotionProfiles as the real planning, but it does not 
+     * alter the motion plan or the axis coordinates. It is meant for job planners and route optimizers that 
+     * want to compare moves by time rather than by distance.
+     * 
+     * The default implementation, for MotionPlanners that cannot simulate their motion, divides the straight
+     * distance by the feed-rate of the X axis. Callers fall back to the distance, if the estimate fails.
+     * 
+     * @param hm
+     * @param from
+     * @param to
+     * @param speed The speed factor, as given to moveTo().
+     * @return The estimated travel time in seconds.
+     * @throws Exception
+     */
+    public default double estimateTravelTime(HeadMountable hm, Location from, Location to, double speed) 
+            throws Exception {
+        Axis axis = hm.getAxisX();
+        double feedRate = (axis instanceof ControllerAxis ? ((ControllerAxis) axis).getMotionLimit(1) : 0)*speed;
+        if (!(feedRate > 0)) {
+            throw new Exception("No feed-rate to estimate the travel time of "+hm.getName()+".");
+        }
+        return from.convertToUnits(LengthUnit.Millimeters)
+                .getLinearDistanceTo(to.convertToUnits(LengthUnit.Millimeters))/feedRate;
+    }
+
+    /**
+     * @return The accumulated time of all the motion planned so far, in seconds. Taking the difference over
+     * an operation tells how long the machine is kept busy moving by it. The default implementation does not
+     * account for motion and returns 0.
+     */
+    public default double getTotalMotionTime() {
+        return 0;
+    }
 }
@@ -1,5 +1,8 @@
 package org.openpnp.spi;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
 import org.openpnp.gui.support.Wizard;
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Location;
@@ -52,6 +55,28 @@ public interface PartAlignment extends Identifiable, Named, PropertySheetHolder
      * @throws Exception if the alignment fails for any reason. The caller may retry.
      */
     PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation, Location placementLocation, Nozzle nozzle) throws Exception;
+
+    /**
+     * Start the part alignment for overlapped alignment of multiple nozzles. Implementations may return
+     * as soon as the part has been captured and finish the processing in the background, so the next
+     * nozzle can already move in the meantime. The default implementation aligns right away.
+     * @param part
+     * @param boardLocation
+     * @param placementLocation
+     * @param nozzle
+     * @return The future offsets, as in {@link #findOffsets(Part, BoardLocation, Location, Nozzle)}.
+     */
+    public default Future<PartAlignmentOffset> findOffsetsOverlapped(Part part, BoardLocation boardLocation,
+            Location placementLocation, Nozzle nozzle) {
+        CompletableFuture<PartAlignmentOffset> future = new CompletableFuture<>();
+        try {
+            future.complete(findOffsets(part, boardLocation, placementLocation, nozzle));
+        }
+        catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
     
     /**
      * Get a Wizard for configuring the PartAlignment instance properties for a specific
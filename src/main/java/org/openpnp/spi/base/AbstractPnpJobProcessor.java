@@ -1,13 +1,22 @@
 package org.openpnp.spi.base;
 
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.openpnp.machine.neoden4.Neoden4Feeder;
+import org.openpnp.model.AbstractModelObject;
 import org.openpnp.model.Configuration;
+import org.openpnp.model.Location;
 import org.openpnp.model.Part;
 import org.openpnp.spi.Feeder;
 import org.openpnp.spi.Head;
+import org.openpnp.spi.HeadMountable;
 import org.openpnp.spi.Machine;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PartAlignment;
@@ -78,7 +87,27 @@ public abstract class AbstractPnpJobProcessor extends AbstractJobProcessor
     }
 
     /**
-     * Find the first enabled Feeder is that is able to feed the given Part.
+     * A machine's feeders indexed by Part, see {@link #getIndexedFeeders(Machine, Part, boolean)}.
+     */
+    private static class FeederIndex {
+        final Map<Part, List<Feeder>> feeders = new HashMap<>();
+        int size;
+    }
+
+    /**
+     * The feeder index of each machine. Job processors are shared through static methods such as
+     * {@link #findFeeder(Machine, Part)}, so the index is kept per machine, weakly, so a machine that
+     * is no longer used, e.g. after a configuration reload or in tests, does not see the feeders of
+     * another one and is not kept alive.
+     */
+    private static final Map<Machine, FeederIndex> feederIndexes = new WeakHashMap<>();
+    /**
+     * Invalidates the indexes when an indexed feeder is assigned to a different part.
+     */
+    private static final PropertyChangeListener feederPartListener = e -> invalidateFeederIndex();
+
+    /**
+     * Find the first enabled Feeder that is able to feed the given Part, in machine order.
      * 
      * @param part
      * @return
@@ -93,6 +122,134 @@ public abstract class AbstractPnpJobProcessor extends AbstractJobProcessor
         throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
     }
 
+    /**
+     * Find an enabled Feeder that is able to feed the given Part. If there are several, empty feeders
+     * are skipped and the one with the pick location nearest to the given HeadMountable is taken. If
+     * the distances are the same, or no HeadMountable is given, the fullest one is taken, otherwise the
+     * first.
+     * 
+     * @param machine
+     * @param part
+     * @param hm The HeadMountable that is going to pick, or null.
+     * @param excluded Feeders that must not be taken, e.g. because they failed, or null.
+     * @return
+     * @throws JobProcessorException If no Feeder is found that is both enabled and is serving the Part.
+     */
+    public static Feeder findFeeder(Machine machine, Part part, HeadMountable hm, Set<Feeder> excluded)
+            throws JobProcessorException {
+        List<Feeder> candidates = getCandidateFeeders(machine, part, excluded, false);
+        if (candidates == null || candidates.isEmpty()) {
+            // The index is stale, or feeders might have been assigned to the part since it was built.
+            candidates = getCandidateFeeders(machine, part, excluded, true);
+        }
+        if (candidates.isEmpty()) {
+            throw new JobProcessorException(part, "No compatible, enabled feeder found for part " + part.getId());
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        List<Feeder> nonEmpty = new ArrayList<>();
+        for (Feeder feeder : candidates) {
+            if (feeder.getRemainingCount() != 0) {
+                nonEmpty.add(feeder);
+            }
+        }
+        if (!nonEmpty.isEmpty()) {
+            candidates = nonEmpty;
+        }
+        Location location = null;
+        if (hm != null) {
+            try {
+                location = hm.getLocation();
+            }
+            catch (Exception e) {
+                Logger.warn(e);
+            }
+        }
+        Feeder best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int bestRemaining = 0;
+        for (Feeder feeder : candidates) {
+            double distance = 0;
+            if (location != null) {
+                try {
+                    distance = location.getLinearDistanceTo(feeder.getPickLocation());
+                }
+                catch (Exception e) {
+                    // Pick location not (yet) known.
+                    distance = Double.MAX_VALUE;
+                }
+            }
+            int remaining = feeder.getRemainingCount();
+            if (best == null || distance < bestDistance
+                    || (distance == bestDistance && remaining > bestRemaining)) {
+                best = feeder;
+                bestDistance = distance;
+                bestRemaining = remaining;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return The enabled, not excluded candidate feeders, or null if an indexed feeder no longer
+     * serves the part, i.e. the index is stale and a rescan is needed.
+     */
+    private static List<Feeder> getCandidateFeeders(Machine machine, Part part, Set<Feeder> excluded,
+            boolean rebuild) {
+        List<Feeder> candidates = new ArrayList<>();
+        for (Feeder feeder : getIndexedFeeders(machine, part, rebuild)) {
+            if (feeder.getPart() != part) {
+                if (!rebuild) {
+                    return null;
+                }
+                continue;
+            }
+            if (feeder.isEnabled() && (excluded == null || !excluded.contains(feeder))) {
+                candidates.add(feeder);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @param machine
+     * @param part
+     * @param rebuild
+     * @return The feeders that served the part when the index was built. The index is rebuilt when
+     * requested, when feeders were added or removed, or when a feeder was assigned to a different
+     * part.
+     */
+    protected static synchronized List<Feeder> getIndexedFeeders(Machine machine, Part part, boolean rebuild) {
+        List<Feeder> feeders = machine.getFeeders();
+        FeederIndex index = feederIndexes.get(machine);
+        if (rebuild || index == null || index.size != feeders.size()) {
+            index = new FeederIndex();
+            for (Feeder feeder : feeders) {
+                if (feeder instanceof AbstractModelObject) {
+                    // Remove first, so the listener is only added once.
+                    ((AbstractModelObject) feeder).removePropertyChangeListener("part", feederPartListener);
+                    ((AbstractModelObject) feeder).addPropertyChangeListener("part", feederPartListener);
+                }
+                Part feederPart = feeder.getPart();
+                if (feederPart != null) {
+                    index.feeders.computeIfAbsent(feederPart, p -> new ArrayList<>()).add(feeder);
+                }
+            }
+            index.size = feeders.size();
+            feederIndexes.put(machine, index);
+        }
+        return index.feeders.getOrDefault(part, Collections.emptyList());
+    }
+
+    /**
+     * Rebuild the feeder indexes on the next lookup, e.g. at the start of a job, as feeders might have
+     * been assigned to different parts.
+     */
+    public static synchronized void invalidateFeederIndex() {
+        feederIndexes.clear();
+    }
+
 
     public static PartAlignment findPartAligner(Machine machine, Part part) {
         for (PartAlignment partAlignment : machine.getPartAlignments()) {
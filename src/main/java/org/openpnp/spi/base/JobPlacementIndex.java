@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.spi.base;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
+
+/**
+ * Indexes the JobPlacements of a job by their Status. The index listens to the status changes of
+ * the JobPlacements, so asking for the placements of a Status costs in proportion to the number of
+ * placements in that Status, not to the size of the job. Within a Status, the placements keep the
+ * order in which they were added to the index.
+ */
+public class JobPlacementIndex implements PropertyChangeListener {
+    private final Map<JobPlacement, Integer> ordinals = new HashMap<>();
+    private final Map<Status, TreeSet<JobPlacement>> byStatus = new EnumMap<>(Status.class);
+
+    public JobPlacementIndex() {
+        for (Status status : Status.values()) {
+            byStatus.put(status, new TreeSet<>((a, b) -> Integer.compare(ordinals.get(a), ordinals.get(b))));
+        }
+    }
+
+    public synchronized void add(JobPlacement jobPlacement) {
+        if (ordinals.containsKey(jobPlacement)) {
+            return;
+        }
+        ordinals.put(jobPlacement, ordinals.size());
+        byStatus.get(jobPlacement.getStatus()).add(jobPlacement);
+        jobPlacement.addPropertyChangeListener("status", this);
+    }
+
+    public synchronized void clear() {
+        for (JobPlacement jobPlacement : ordinals.keySet()) {
+            jobPlacement.removePropertyChangeListener("status", this);
+        }
+        for (TreeSet<JobPlacement> jobPlacements : byStatus.values()) {
+            jobPlacements.clear();
+        }
+        ordinals.clear();
+    }
+
+    @Override
+    public synchronized void propertyChange(PropertyChangeEvent evt) {
+        JobPlacement jobPlacement = (JobPlacement) evt.getSource();
+        if (!ordinals.containsKey(jobPlacement)) {
+            return;
+        }
+        byStatus.get((Status) evt.getOldValue()).remove(jobPlacement);
+        byStatus.get((Status) evt.getNewValue()).add(jobPlacement);
+    }
+
+    /**
+     * @param status
+     * @return The JobPlacements in the given Status, in the order they were added.
+     */
+    public synchronized List<JobPlacement> getJobPlacements(Status status) {
+        return new ArrayList<>(byStatus.get(status));
+    }
+
+    /**
+     * @param status
+     * @return The number of JobPlacements in the given Status.
+     */
+    public synchronized int getCount(Status status) {
+        return byStatus.get(status).size();
+    }
+
+    /**
+     * @return The number of JobPlacements in the index.
+     */
+    public synchronized int size() {
+        return ordinals.size();
+    }
+}
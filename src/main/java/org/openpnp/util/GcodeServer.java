@@ -1,5 +1,6 @@
 package org.openpnp.util;
 
+import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
@@ -9,7 +10,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.openpnp.Main;
 import org.openpnp.machine.reference.ReferenceMachine;
@@ -20,6 +20,7 @@ import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
 import org.openpnp.model.Motion;
 import org.openpnp.model.Motion.MotionOption;
+import org.openpnp.model.MotionHistory;
 import org.openpnp.spi.Axis;
 import org.openpnp.spi.ControllerAxis;
 import org.openpnp.spi.Driver;
@@ -36,7 +37,7 @@ public class GcodeServer extends Thread {
      */
     private AxesLocation homingOffsets = new AxesLocation();
 
-    protected TreeMap<Double, Motion> motionPlan = new TreeMap<Double, Motion>();
+    protected MotionHistory motionPlan = new MotionHistory(4096);
     private AxesLocation machineLocation;
 
     private long maxDwellTimeMilliseconds = 20000;
@@ -164,7 +165,9 @@ public class GcodeServer extends Thread {
 
         public Worker(Socket socket) throws Exception {
             this.socket = socket;
-            input = socket.getInputStream();
+            // Respond without Nagle delays, and don't read the commands byte by byte from the socket.
+            socket.setTcpNoDelay(true);
+            input = new BufferedInputStream(socket.getInputStream());
             output = socket.getOutputStream();
         }
 
@@ -566,8 +569,8 @@ public class GcodeServer extends Thread {
 
                 // Compute the wait or dwell time. Start with the motion plan completion time. 
                 long dwellMilliseconds = (motionPlan.isEmpty() ? 
-                        0 : (int)Math.max(0, (motionPlan.lastKey() - NanosecondTime.getRuntimeSeconds())*1000));
-                //Logger.debug("Motion ongoing for +"+dwellMilliseconds+" ms, lastKey = "+(motionPlan.isEmpty() ? 0 : motionPlan.lastKey())+", now="+NanosecondTime.getRuntimeSeconds());
+                        0 : (int)Math.max(0, (motionPlan.getLastTime() - NanosecondTime.getRuntimeSeconds())*1000));
+                //Logger.debug("Motion ongoing for +"+dwellMilliseconds+" ms, lastTime = "+motionPlan.getLastTime()+", now="+NanosecondTime.getRuntimeSeconds());
                 boolean doDwell = false;
                 GcodeWord g4Word = getCodeWord(Gcode.G4, commandWords);
                 GcodeWord m400Word = getCodeWord(Gcode.M400, commandWords);
@@ -605,9 +608,7 @@ public class GcodeServer extends Thread {
 
                     // Remove old stuff.
                     double time = NanosecondTime.getRuntimeSeconds() - 30;
-                    while (motionPlan.isEmpty() == false && motionPlan.firstKey() < time) {
-                        motionPlan.remove(motionPlan.firstKey());
-                    }
+                    motionPlan.clearOlderThan(time);
                 }
 
                 // Set global offsets. 
@@ -682,14 +683,14 @@ public class GcodeServer extends Thread {
                             (g0Word != null ? MotionOption.UncoordinatedMotion.flag() : 0));
                     synchronized (motionPlan) {
                         double t = NanosecondTime.getRuntimeSeconds();
-                        if (motionPlan.isEmpty() == false && motionPlan.lastKey() > t) {
+                        if (motionPlan.getLastTime() > t) {
                             // Append to a plan that is still running. 
-                            t = motionPlan.lastKey();
+                            t = motionPlan.getLastTime();
                         }
                         // Put into timed plan.
                         t += motion.getTime();
-                        motionPlan.put(t, motion);
                         motion.setPlannedTime1(t);
+                        motionPlan.add(t, motion);
                     }
                     // Store new location.
                     Logger.trace("Move takes "+(motion.getTime()*1000)+" ms");
@@ -705,14 +706,10 @@ public class GcodeServer extends Thread {
     }
 
     public Motion getMomentaryMotion(double time) {
-        Map.Entry<Double, Motion> entry1; 
-        synchronized (motionPlan) {
-            entry1 = motionPlan.higherEntry(time);
-        }
-        if (entry1 != null) {
+        Motion motion1 = motionPlan.getMotionAfter(time);
+        if (motion1 != null) {
             // Return the current motion.
-            Motion motion = entry1.getValue();
-            return motion;
+            return motion1;
         }
         else {
             // Nothing in the plan or machine stopped before this time, just get the current axes location.
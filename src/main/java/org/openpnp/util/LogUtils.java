@@ -7,4 +7,8 @@ public class LogUtils {
     public static boolean isDebugEnabled() {
         return Logger.getLevel().compareTo(Level.DEBUG) <= 0;
     }
+
+    public static boolean isTraceEnabled() {
+        return Logger.getLevel().compareTo(Level.TRACE) <= 0;
+    }
 }
@@ -39,6 +39,30 @@ public class MovableUtils {
         moveToLocationAtSafeZ(hm, location, hm.getHead().getMachine().getSpeed());
     }
     
+    /**
+     * Estimate the time needed by moveToLocationAtSafeZ() from one Location to another.
+     *
+     * @param hm
+     * @param from
+     * @param to
+     * @return The estimated travel time in seconds.
+     * @throws Exception
+     */
+    public static double estimateTravelTime(HeadMountable hm, Location from, Location to)
+            throws Exception {
+        Machine machine = hm.getHead().getMachine();
+        return machine.getMotionPlanner().estimateTravelTime(hm, from, to, machine.getSpeed());
+    }
+
+    /**
+     * @param hm
+     * @return A TravelTime function for the TravellingSalesman, that optimizes moveToLocationAtSafeZ() travel of the 
+     * given HeadMountable by time.
+     */
+    public static TravellingSalesman.TravelTime getTravelTimeEstimator(HeadMountable hm) {
+        return (from, to) -> estimateTravelTime(hm, from, to);
+    }
+
     public static void park(Head head) throws Exception {
         head.moveToSafeZ();
         HeadMountable hm = head.getDefaultHeadMountable();
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2011 Jason von Nieda <jason@vonnieda.org>
+ *
+ * This file is part of OpenPnP.
+ *
+ * OpenPnP is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * OpenPnP is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with OpenPnP. If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * For more information about OpenPnP visit http://openpnp.org
+ */
+
+package org.openpnp.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * A text template with variables in the format {Name:Format}, as substituted by
+ * {@link TextUtils#substituteVar(String, String, Object)}. The template is parsed once into literal text and
+ * variable placeholders, so rendering it is a single pass without any regex matching.
+ */
+public class TextTemplate {
+    private final String template;
+    private final String [] literals;
+    private final String [] names;
+    private final String [] formats;
+    private final String [] placeholders;
+    private final Set<String> variables = new HashSet<>();
+
+    public TextTemplate(String template) {
+        this.template = template;
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> formats = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = TextUtils.variablePattern.matcher(template);
+        int end = 0;
+        while (matcher.find()) {
+            literals.add(template.substring(end, matcher.start()));
+            names.add(matcher.group(1));
+            formats.add(matcher.group(2));
+            placeholders.add(matcher.group());
+            end = matcher.end();
+        }
+        literals.add(template.substring(end));
+        this.literals = literals.toArray(new String[0]);
+        this.names = names.toArray(new String[0]);
+        this.formats = formats.toArray(new String[0]);
+        this.placeholders = placeholders.toArray(new String[0]);
+        this.variables.addAll(names);
+    }
+
+    /**
+     * @param name
+     * @return True if the template contains the variable.
+     */
+    public boolean hasVariable(String name) {
+        return variables.contains(name);
+    }
+
+    /**
+     * Render the template with the given variable values. Each value is formatted using String.format
+     * with the variable's Format, which is optional and defaults to %s. A null value renders the variable
+     * as "". Variables that are not contained in the map are left in the text as they are.
+     *
+     * @param values
+     * @return
+     */
+    public String render(Map<String, Object> values) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        for (int i = 0; i < names.length; i++) {
+            sb.append(literals[i]);
+            String name = names[i];
+            if (!values.containsKey(name)) {
+                sb.append(placeholders[i]);
+                continue;
+            }
+            Object value = values.get(name);
+            if (value == null) {
+                continue;
+            }
+            if (formats[i] == null) {
+                sb.append(value);
+            }
+            else {
+                sb.append(String.format((Locale) null, formats[i], value));
+            }
+        }
+        sb.append(literals[names.length]);
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+}
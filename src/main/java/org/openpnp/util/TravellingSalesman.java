@@ -25,6 +25,7 @@ import java.util.Random;
 
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.pmw.tinylog.Logger;
 
 /**
  * A simple solver for the Travelling Salesman Problem. 
@@ -38,6 +39,9 @@ import org.openpnp.model.Location;
  * 
  * The solver uses Simulated Annealing.
  * 
+ * By default the route is optimized for the linear distance. If a TravelTime function is given, the route is optimized
+ * for the travel time instead, which weights Z and rotation heavy moves and the different axis speeds correctly. 
+ * 
  * The implementation is a bit extended from the typical school book examples to not only use "swaps" of two Locations 
  * but also "twists", that reverse the travel direction between the swapped out Locations. The latter really improves the 
  * solutions a lot, because it allows the solver to quickly "untwist" routes at (or near) crossing points. These crossing 
@@ -70,11 +74,49 @@ public class TravellingSalesman<T> {
         this.startLocation = startLocation != null ? new TravelLocation(-1, startLocation) : null;
         this.endLocation = endLocation != null ? new TravelLocation(this.travelSize, endLocation) : null;
     }
-    
+
+    /**
+     * @param travelInput Contains the travelling problem to be solved. 
+     * @param locator Lets the solver query the given list object for the relevant Location.
+     * @param startLocation Optional start Location, e.g. the current machine Location. If left open, the solver will choose 
+     * the start of the route freely. 
+     * @param endLocation Optional end Location, e.g. the Location for the next task after this. If left open, the solver will choose 
+     * the end of the route freely. 
+     * @param travelTime Optional function to estimate the travel time between two Locations. If given, the route is 
+     * optimized for time rather than distance. 
+     */
+    public TravellingSalesman(List<T> travelInput, Locator<? super T> locator, Location startLocation, Location endLocation, 
+            TravelTime travelTime) {
+        this(travelInput, locator, startLocation, endLocation);
+        this.travelTime = travelTime;
+    }
+
     public interface Locator<T> {
         public Location getLocation(T locatable);
     }
 
+    public interface TravelTime {
+        /**
+         * @param from
+         * @param to
+         * @return The time in seconds it takes to travel from one Location to the other.
+         * @throws Exception
+         */
+        public double getTravelTime(Location from, Location to) throws Exception;
+    }
+
+    /**
+     * Travel times are converted to milliseconds, so they are of similar magnitude as the millimeter distances the 
+     * annealing heuristics were tuned for.
+     */
+    private static final double travelTimeScale = 1000.0;
+
+    /**
+     * The travel times are all computed up-front, which is quadratic in size, and each estimate solves several motion 
+     * profiles. Beyond this size, the solver falls back to distances.
+     */
+    private static final int maxTravelTimeSize = 30;
+
     /**
      * Sets the debugLevel > 0 
      * level 0: no debugging 
@@ -90,10 +132,12 @@ public class TravellingSalesman<T> {
     private static class TravelLocation {
         private  double x, y, z;
         private  int index;
+        private  Location location;
 
         private  TravelLocation(int index, Location l) {
             super();
             this.index = index;
+            this.location = l;
             l = l.convertToUnits(LengthUnit.Millimeters);
             this.x = l.getX();
             this.y = l.getY();
@@ -110,6 +154,15 @@ public class TravellingSalesman<T> {
     private final TravelLocation startLocation;
     private final TravelLocation endLocation;
     private final List<TravelLocation> travel;
+    private TravelTime travelTime;
+    private double [] travelCosts;
+    /**
+     * With travel times, the costs are asymmetric, e.g. because of the Safe Z handling. A twist reverses the travel 
+     * direction of a whole section of the route, so its cost changes. These are the accumulated costs along the 
+     * current route, in forward and in reverse direction, so the change can be computed in constant time. 
+     */
+    private double [] forwardCosts;
+    private double [] reverseCosts;
     
     private long solverDuration = 0; 
 
@@ -130,9 +183,64 @@ public class TravellingSalesman<T> {
             // no start and/or end location, so the distance is just 0.0
             return 0.0;
         }
+        if (this.travelCosts != null) {
+            return this.travelCosts[(la.index + 1)*(this.travelSize + 2) + (lb.index + 1)];
+        }
         return la.getLinearDistanceTo(lb);
     }
 
+    /**
+     * Compute the matrix of all the travel times, indexed by the original index offset by one, so the start Location 
+     * is at 0 and the end Location at travelSize + 1. If the travel time function fails, the solver falls back to 
+     * distances.
+     */
+    private void computeTravelCosts() {
+        this.travelCosts = null;
+        if (this.travelTime == null || this.travelSize > maxTravelTimeSize) {
+            return;
+        }
+        int n = this.travelSize + 2;
+        double [] costs = new double[n*n];
+        try {
+            for (int a = -1; a <= this.travelSize; a++) {
+                TravelLocation la = (a < 0 ? this.startLocation : a < this.travelSize ? this.travel.get(a) : this.endLocation);
+                for (int b = -1; b <= this.travelSize; b++) {
+                    TravelLocation lb = (b < 0 ? this.startLocation : b < this.travelSize ? this.travel.get(b) : this.endLocation);
+                    if (la != null && lb != null && a != b) {
+                        costs[(la.index + 1)*n + (lb.index + 1)] = 
+                                this.travelTime.getTravelTime(la.location, lb.location)*travelTimeScale;
+                    }
+                }
+            }
+        }
+        catch (Exception e) {
+            Logger.warn(e, "Travel time estimation failed, falling back to distance.");
+            return;
+        }
+        this.travelCosts = costs;
+    }
+
+    /**
+     * Update the accumulated forward and reverse costs from the given route index on. Only needed for asymmetric travel 
+     * costs.
+     * 
+     * @param from
+     */
+    private void updateAccumulatedCosts(int from) {
+        if (this.travelCosts == null) {
+            return;
+        }
+        if (this.forwardCosts == null) {
+            this.forwardCosts = new double[this.travelSize];
+            this.reverseCosts = new double[this.travelSize];
+            from = 0;
+        }
+        for (int i = Math.max(1, from); i < this.travelSize; i++) {
+            this.forwardCosts[i] = this.forwardCosts[i-1] + this.getDistance(i-1, i);
+            this.reverseCosts[i] = this.reverseCosts[i-1] + this.getDistance(i, i-1);
+        }
+    }
+
     private double getTravellingDistance() {
         double distance = 0.0;
         for (int i = 0; i <= this.travelSize; i++) {
@@ -154,6 +262,11 @@ public class TravellingSalesman<T> {
                     this.getDistance(a-1, a) + this.getDistance(b, b+1);
             double newSegmentDistance = 
                     this.getDistance(a-1, b) + this.getDistance(a, b+1);
+            if (this.forwardCosts != null) {
+                // the section from a to b is now travelled in reverse
+                oldSegmentDistance += this.forwardCosts[b] - this.forwardCosts[a];
+                newSegmentDistance += this.reverseCosts[b] - this.reverseCosts[a];
+            }
             return newSegmentDistance - oldSegmentDistance;
         }
         else {
@@ -259,6 +372,7 @@ public class TravellingSalesman<T> {
                     if (swapDistance < 0.0 || (Math.exp(-swapDistance / t) >= rnd.nextDouble())) {
                         // better or within annealing probability
                         this.swapLocations(a, b, twist);
+                        this.updateAccumulatedCosts(Math.min(a, b));
                         swaps++;
                         twists += twist ? 1 : 0;
                     }
@@ -284,10 +398,25 @@ public class TravellingSalesman<T> {
         return bestDistance;
     }
 
+    /**
+     * Solve the travelling problem using the default heuristics. 
+     * 
+     * @return The distance of the best route in millimeters or, if a TravelTime function was given, its travel 
+     * time in seconds. 
+     */
     public double solve() {
+        computeTravelCosts();
+        this.forwardCosts = null;
+        this.reverseCosts = null;
+        updateAccumulatedCosts(0);
         // heuristic for the simulated annealing params
         int size = Math.max(1, this.travelSize);
-        return simulateAnnealing(getTravellingDistance()/size*2.0, 1.0-0.001/size, size*1000+10000000);
+        double bestCost = simulateAnnealing(getTravellingDistance()/size*2.0, 1.0-0.001/size, size*1000+10000000);
+        if (this.travelCosts != null) {
+            // Return the travel time in seconds.
+            return bestCost/travelTimeScale;
+        }
+        return bestCost;
     }
 
     public List<T> getTravel() {
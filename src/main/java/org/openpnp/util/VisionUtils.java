@@ -6,6 +6,8 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
@@ -233,4 +235,55 @@ public class VisionUtils {
             }
         }
     }
+
+    /**
+     * Start the overlapped part alignment, see {@link PartAlignment#findOffsetsOverlapped(Part, BoardLocation, Location, Nozzle)}.
+     * Must be finished with {@link #finishPartAlignment(Part, Nozzle, Future)}.
+     */
+    public static Future<PartAlignment.PartAlignmentOffset> startPartAlignment(PartAlignment p, Part part,
+            BoardLocation boardLocation, Location placementLocation, Nozzle nozzle) {
+        try {
+            Map<String, Object> globals = new HashMap<>();
+            globals.put("part", part);
+            globals.put("nozzle", nozzle);
+            Configuration.get().getScripting().on("Vision.PartAlignment.Before", globals);
+        }
+        catch (Exception e) {
+            Logger.warn(e);
+        }
+        return p.findOffsetsOverlapped(part, boardLocation, placementLocation, nozzle);
+    }
+
+    /**
+     * Wait for the overlapped part alignment started with {@link #startPartAlignment(PartAlignment, Part, BoardLocation, Location, Nozzle)}.
+     *
+     * @return The offsets.
+     * @throws Exception if the alignment failed.
+     */
+    public static PartAlignment.PartAlignmentOffset finishPartAlignment(Part part, Nozzle nozzle,
+            Future<PartAlignment.PartAlignmentOffset> future) throws Exception {
+        PartAlignmentOffset offsets = null;
+        try {
+            offsets = future.get();
+            return offsets;
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        finally {
+            try {
+                Map<String, Object> globals = new HashMap<>();
+                globals.put("part", part);
+                globals.put("nozzle", nozzle);
+                globals.put("offsets", offsets);
+                Configuration.get().getScripting().on("Vision.PartAlignment.After", globals);
+            }
+            catch (Exception e) {
+                Logger.warn(e);
+            }
+        }
+    }
 }
@@ -23,6 +23,13 @@ import org.simpleframework.xml.Element;
         description="Capture an image from the pipeline camera.")
 
 public class ImageCapture extends CvStage {
+    /**
+     * Pipeline property holding an image that was already captured by {@link #captureImage(Camera)}.
+     * If set, the stage takes it instead of capturing, so the pipeline can be processed later, away
+     * from the camera.
+     */
+    public static final String CAPTURED_IMAGE_PROPERTY = "ImageCapture.capturedImage";
+
     @Attribute(required=false)
     @Property(description="Use the default camera lighting.")
     private boolean defaultLight = true;
@@ -76,6 +83,10 @@ public class ImageCapture extends CvStage {
     }
     @Override
     public Result process(CvPipeline pipeline) throws Exception {
+        BufferedImage capturedImage = (BufferedImage) pipeline.getProperty(CAPTURED_IMAGE_PROPERTY);
+        if (capturedImage != null) {
+            return new Result(OpenCvUtils.toMat(capturedImage), ColorSpace.Bgr);
+        }
         Camera camera = (Camera) pipeline.getProperty("camera");
         if (camera == null) {
             throw new Exception("No Camera set on pipeline.");
@@ -111,6 +122,45 @@ public class ImageCapture extends CvStage {
         }
     }
 
+    /**
+     * Light, settle and capture a single image as configured on this stage, for processing the pipeline
+     * later, see {@link #CAPTURED_IMAGE_PROPERTY}.
+     *
+     * @param camera
+     * @return
+     * @throws Exception
+     */
+    public BufferedImage captureImage(Camera camera) throws Exception {
+        camera.actuateLightBeforeCapture((defaultLight ? null : getLight()));
+        try {
+            return (settleFirst ? camera.settleAndCapture() : camera.capture());
+        }
+        finally {
+            camera.actuateLightAfterCapture();
+        }
+    }
+
+    /**
+     * @param pipeline
+     * @return The pipeline's ImageCapture stage, if it is the only one and captures a single image,
+     * otherwise null.
+     */
+    public static ImageCapture getSingleImageCapture(CvPipeline pipeline) {
+        ImageCapture imageCapture = null;
+        for (CvStage stage : pipeline.getStages()) {
+            if (stage instanceof ImageCapture && stage.isEnabled()) {
+                if (imageCapture != null) {
+                    return null;
+                }
+                imageCapture = (ImageCapture) stage;
+            }
+        }
+        if (imageCapture != null && imageCapture.getCount() > 1) {
+            return null;
+        }
+        return imageCapture;
+    }
+
     @Override
     public void customizePropertySheet(PipelinePropertySheetTable table, CvPipeline pipeline) {
         super.customizePropertySheet(table, pipeline);
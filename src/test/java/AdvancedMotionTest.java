@@ -25,6 +25,7 @@ import java.util.List;
 import org.junit.Test;
 import org.openpnp.model.AbstractMotionPath;
 import org.openpnp.model.MotionProfile;
+import org.openpnp.model.MotionProfileCache;
 import org.openpnp.model.MotionProfile.ErrorState;
 import org.openpnp.model.MotionProfile.ProfileOption;
 import org.openpnp.spi.Driver.MotionControlType;
@@ -241,6 +242,66 @@ public class AdvancedMotionTest {
         }
     }
 
+    @Test 
+    public void testMotionProfileCache() throws Exception {
+        MotionProfileCache oldCache = MotionProfile.getSolutionCache();
+        MotionProfileCache cache = new MotionProfileCache(2);
+        MotionProfile.setSolutionCache(cache);
+        try {
+            MotionProfile profile = new MotionProfile(
+                    0, 200, 0, 0, 0, 0,
+                    -1000, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+            profile.solve();
+            if (cache.getMisses() != 1 || cache.getHits() != 0) {
+                throw new Exception("First solution must be a cache miss: "+cache);
+            }
+            // Same move at a different place on the machine.
+            MotionProfile shifted = new MotionProfile(
+                    100, 300, 0, 0, 0, 0,
+                    -900, 1100, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+            shifted.solve();
+            if (cache.getHits() != 1) {
+                throw new Exception("Shifted move must be a cache hit: "+cache);
+            }
+            if (shifted.checkValidity() != null) {
+                throw new Exception("Restored profile has error "+shifted.checkValidity());
+            }
+            if (Math.abs(shifted.getTime() - profile.getTime()) > 1e-9) {
+                throw new Exception("Restored profile time differs from solved profile time.");
+            }
+            for (int segment = 0; segment <= MotionProfile.segments; segment++) {
+                if (Math.abs(shifted.getLocation(segment) - profile.getLocation(segment) - 100) > 1e-6) {
+                    throw new Exception("Restored profile not shifted at segment "+segment);
+                }
+            }
+            // A move that only equals the cached one within the quantum must not take the inconsistent solution.
+            MotionProfile nearMiss = new MotionProfile(
+                    0, 200 + 0.4*MotionProfileCache.quantum, 0, 0, 0, 0,
+                    -1000, 1000, 700, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0);
+            nearMiss.solve();
+            if (cache.getHits() != 1 || cache.getMisses() != 2) {
+                throw new Exception("Inconsistent restored solution must be rejected: "+cache);
+            }
+            if (nearMiss.checkValidity() != null) {
+                throw new Exception("Near miss profile has error "+nearMiss.checkValidity());
+            }
+            // Different limits (e.g. speed factor) must not hit.
+            new MotionProfile(
+                    0, 200, 0, 0, 0, 0,
+                    -1000, 1000, 350, 2000, 2000, 15000, 0, Double.POSITIVE_INFINITY, 0).solve();
+            new MotionProfile(
+                    0, 200, 0, 0, 0, 0,
+                    -1000, 1000, 700, 500, 500, 15000, 0, Double.POSITIVE_INFINITY, 0).solve();
+            if (cache.getMisses() != 4 || cache.size() != 2 || cache.getEvictions() != 1) {
+                throw new Exception("Unexpected cache state: "+cache);
+            }
+            System.out.println(cache);
+        }
+        finally {
+            MotionProfile.setSolutionCache(oldCache);
+        }
+    }
+
     private class PlannerPath extends AbstractMotionPath {
         private final List<MotionProfile []> path = new ArrayList<>();
         private final double jerk;
@@ -323,6 +384,20 @@ public class AdvancedMotionTest {
             z0 = z;
         }
 
+        /**
+         * @return The indices of the moves that begin at a zero velocity junction, i.e. where solveParallel() 
+         * splits the path.
+         */
+        public List<Integer> getZeroVelocityJunctions() {
+            List<Integer> junctions = new ArrayList<>();
+            for (int i = 1; i < path.size(); i++) {
+                if (isZeroVelocityJunction(path.get(i-1), path.get(i))) {
+                    junctions.add(i);
+                }
+            }
+            return junctions;
+        }
+
         public double getOverallTime() {
             double time = 0;
             for (MotionProfile [] profiles : path) {
@@ -336,6 +411,67 @@ public class AdvancedMotionTest {
     final double za = -15;
     final double zb = -13;
 
+    /**
+     * Solve the same path sequentially and in parallel, the result must be the same, including the moves on both 
+     * sides of the junctions where the path is split. The solution cache is disabled, so the parallel solve cannot 
+     * just restore the solutions of the sequential solve.
+     * 
+     * @throws Exception
+     */
+    @Test 
+    public void testParallelMotionPath() throws Exception {
+        MotionProfileCache oldCache = MotionProfile.getSolutionCache();
+        MotionProfile.setSolutionCache(null);
+        try {
+            PlannerPath sequentialPath = new PlannerPath(30000, false);
+            PlannerPath parallelPath = new PlannerPath(30000, false);
+            for (PlannerPath path : new PlannerPath[] { sequentialPath, parallelPath }) {
+                for (int i = 0; i < 20; i++) {
+                    // pick & place, dual nozzle
+                    path.moveTo(i*10, 0, safeZ, 1);
+                    path.moveTo(i*10, 0, za, 1);
+                    path.moveTo(i*10, 0, safeZ, 1);
+                    path.moveTo(i*10 + 100, 100, -safeZ, 2);
+                    path.moveTo(i*10 + 100, 100, 15, 2);
+                    path.moveTo(i*10 + 100, 100, -safeZ, 2);
+                }
+            }
+            List<Integer> junctions = parallelPath.getZeroVelocityJunctions();
+            if (junctions.isEmpty()) {
+                throw new Exception("Path has no zero velocity junctions, it is not solved in parallel.");
+            }
+            sequentialPath.solve();
+            parallelPath.solveParallel();
+            parallelPath.validate("Parallel path");
+            final double tolerance = 1e-9;
+            for (int i = 0; i < sequentialPath.size(); i++) {
+                MotionProfile [] sequentialProfiles = sequentialPath.get(i);
+                MotionProfile [] parallelProfiles = parallelPath.get(i);
+                for (int axis = 0; axis < sequentialProfiles.length; axis++) {
+                    MotionProfile sequentialProfile = sequentialProfiles[axis];
+                    MotionProfile parallelProfile = parallelProfiles[axis];
+                    String message = "Parallel solved move "+i+" axis "+axis
+                            +(junctions.contains(i) ? " after a junction" : junctions.contains(i+1) ? " before a junction" : "");
+                    if (Math.abs(sequentialProfile.getTime() - parallelProfile.getTime()) > tolerance) {
+                        throw new Exception(message+" time differs from sequential solution.");
+                    }
+                    for (int segment = 0; segment <= MotionProfile.segments; segment++) {
+                        if (Math.abs(sequentialProfile.getLocation(segment) - parallelProfile.getLocation(segment)) > tolerance
+                                || Math.abs(sequentialProfile.getVelocity(segment) - parallelProfile.getVelocity(segment)) > tolerance
+                                || Math.abs(sequentialProfile.getAcceleration(segment) - parallelProfile.getAcceleration(segment)) > tolerance) {
+                            throw new Exception(message+" segment "+segment+" differs from sequential solution.");
+                        }
+                    }
+                }
+            }
+            System.out.println("Parallel path solved "+parallelPath.size()+" moves with "+junctions.size()
+                +" junctions in "+String.format("%.3f", parallelPath.getOverallTime())+" s motion time.");
+        }
+        finally {
+            MotionProfile.setSolutionCache(oldCache);
+        }
+    }
+
     @Test 
     public void testMotionPaths() throws Exception {
         for (int warmup = 2; warmup >= 0; warmup--) {
@@ -1,4 +1,5 @@
 import java.io.File;
+import java.util.regex.Pattern;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -171,6 +172,53 @@ public class GcodeDriverTest {
         }
     }
     
+    /**
+     * With chatty firmware, the shared response queue overflows and drops the oldest responses. A response
+     * a caller subscribed to must survive that.
+     */
+    @Test
+    public void testSubscribedResponseSurvivesOverflow() throws Exception {
+        Machine machine = Configuration.get().getMachine();
+        GcodeDriver driver = (GcodeDriver) ((ReferenceMachine) machine).getDefaultDriver();
+        // Reconnect, so the smaller queue takes effect.
+        driver.setMaxResponsesQueued(4);
+        machine.execute(() -> {
+            driver.disconnect();
+            driver.connect();
+            return null;
+        });
+        StringBuilder chatter = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            chatter.append("\nT:25.0 /0.0 B:25.0 /0.0");
+        }
+        server.addCommandResponse("M105", "read:a1:497" + chatter + "\nok");
+
+        try (GcodeDriver.ResponseSubscription subscription = driver.subscribeResponses(Pattern.compile("read:a1:.*"))) {
+            machine.execute(() -> {
+                driver.sendCommand("M105");
+                return null;
+            });
+            // The confirmation came last, so all the responses were queued.
+            Assert.assertTrue(driver.getResponsesDropped() > 0);
+            for (GcodeDriver.Line line : driver.receiveResponses()) {
+                Assert.assertNotEquals("read:a1:497", line.getLine());
+            }
+            Assert.assertEquals("read:a1:497", subscription.receive(500, (r) -> {
+                throw new AssertionError("Subscribed response was dropped.");
+            }).get(0).getLine());
+            Assert.assertEquals(0, subscription.getDropped());
+        }
+
+        // The actuator read subscribes to its response too.
+        Actuator actuator = new ReferenceActuator();
+        actuator.setName("A1");
+        machine.addActuator(actuator);
+        driver.setCommand(actuator, CommandType.ACTUATOR_READ_COMMAND, "READ A1");
+        driver.setCommand(actuator, CommandType.ACTUATOR_READ_REGEX, "read:a1:(?<Value>-?\\d+)");
+        server.addCommandResponse("READ A1", "read:a1:497" + chatter + "\nok");
+        Assert.assertEquals("497", machine.execute(() -> actuator.read()));
+    }
+
     @After
     public void after() throws Exception {
         /**
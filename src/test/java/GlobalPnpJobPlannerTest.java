@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.GlobalPnpJobPlanner;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobBoardOrderHint;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor.JobPartOrderHint;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.Length;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Head;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+
+public class GlobalPnpJobPlannerTest {
+    /**
+     * Plans a job with two nozzles, two nozzle tips and two part heights, and checks the cycles that
+     * are handed out: every placement exactly once, with a nozzle tip compatible with both the nozzle
+     * and the package, never more placements than nozzles, and all the lower parts before the higher
+     * ones.
+     */
+    @Test
+    public void testPlan() throws Exception {
+        testPlan(null);
+    }
+
+    @Test
+    public void testPlanWithTravelTime() throws Exception {
+        testPlan((from, to) -> from.getLinearDistanceTo(to)/100.0);
+    }
+
+    /**
+     * If the travel time can't be estimated, the planner must fall back to the distance.
+     */
+    @Test
+    public void testPlanWithFailingTravelTime() throws Exception {
+        testPlan((from, to) -> {
+            throw new Exception("No estimate.");
+        });
+    }
+
+    private void testPlan(org.openpnp.util.TravellingSalesman.TravelTime travelTime) throws Exception {
+        Configuration.initialize();
+        Machine machine = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzleTip("NT1B")
+                .nozzleTip("NT2")
+                .nozzle("N1", "NT1", "NT2")
+                .nozzle("N2", "NT1B")
+                .build();
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 0, 0, 0, 0)
+                .packag("R0402", "NT1", "NT1B")
+                .packag("SOT23", "NT2")
+                .part("R0402-1k", "R0402")
+                .part("SOT23-1", "SOT23")
+                .feeder("F1", "R0402-1k", 100, 20, -5, 0)
+                .feeder("F2", "SOT23-1", 120, 20, -5, 0)
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 50, 10, 0)
+                .placement("R3", "R0402-1k", 12, 10, 0)
+                .placement("R4", "R0402-1k", 48, 10, 0)
+                .placement("R5", "R0402-1k", 30, 30, 0)
+                .placement("Q1", "SOT23-1", 10, 40, 0)
+                .placement("Q2", "SOT23-1", 50, 40, 0)
+                .build();
+        Configuration.get().getPart("SOT23-1").setHeight(new Length(2, LengthUnit.Millimeters));
+        Head head = machine.getHeadByName("H1");
+
+        // Pending placements, ordered by part height, as the job processor does.
+        List<JobPlacement> pending = new ArrayList<>();
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        for (Placement placement : boardLocation.getBoard().getPlacements()) {
+            pending.add(new JobPlacement(boardLocation, placement));
+        }
+        pending.sort((a, b) -> Double.compare(a.getPartHeight(), b.getPartHeight()));
+
+        GlobalPnpJobPlanner planner = new GlobalPnpJobPlanner();
+        planner.setPlanningTimeMilliseconds(100);
+        planner.setOrderHints(JobPartOrderHint.PartHeight, JobBoardOrderHint.AllAtOnce);
+        planner.setTravelTime(travelTime);
+
+        Set<JobPlacement> handedOut = new HashSet<>();
+        double partHeight = Double.NEGATIVE_INFINITY;
+        int cycles = 0;
+        while (!pending.isEmpty()) {
+            List<PlannedPlacement> plannedPlacements = planner.plan(head, pending);
+            Assert.assertFalse("Cycle must not be empty.", plannedPlacements.isEmpty());
+            Assert.assertTrue("Cycle must not have more placements than nozzles.",
+                    plannedPlacements.size() <= head.getNozzles().size());
+            cycles++;
+            Set<Object> nozzles = new HashSet<>();
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                JobPlacement jobPlacement = plannedPlacement.jobPlacement;
+                Assert.assertTrue("Nozzle used once per cycle.", nozzles.add(plannedPlacement.nozzle));
+                Assert.assertTrue("Nozzle tip compatible with the nozzle.",
+                        plannedPlacement.nozzle.getCompatibleNozzleTips().contains(plannedPlacement.nozzleTip));
+                Assert.assertTrue("Nozzle tip compatible with the package.",
+                        jobPlacement.getPlacement().getPart().getPackage().getCompatibleNozzleTips()
+                        .contains(plannedPlacement.nozzleTip));
+                Assert.assertTrue("Placement handed out once.", handedOut.add(jobPlacement));
+                Assert.assertTrue("Part height order preserved.", jobPlacement.getPartHeight() >= partHeight);
+            }
+            // Only after the whole cycle, as the placements of one cycle may be in any order.
+            for (PlannedPlacement plannedPlacement : plannedPlacements) {
+                partHeight = Math.max(partHeight, plannedPlacement.jobPlacement.getPartHeight());
+                pending.remove(plannedPlacement.jobPlacement);
+            }
+        }
+        Assert.assertEquals(7, handedOut.size());
+        // 5 R0402 on two nozzles take 3 cycles, the 2 SOT23 can only go on N1.
+        Assert.assertEquals(5, cycles);
+        Assert.assertTrue(planner.plan(head, pending).isEmpty());
+    }
+
+    /**
+     * A placement that comes back, e.g. after a failed pick, is re-planned and handed out again.
+     */
+    @Test
+    public void testReplan() throws Exception {
+        Configuration.initialize();
+        Machine machine = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .build();
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 0, 0, 0, 0)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .feeder("F1", "R0402-1k", 100, 20, -5, 0)
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 10, 0)
+                .placement("R3", "R0402-1k", 30, 10, 0)
+                .build();
+        Head head = machine.getHeadByName("H1");
+        List<JobPlacement> pending = new ArrayList<>();
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        for (Placement placement : boardLocation.getBoard().getPlacements()) {
+            pending.add(new JobPlacement(boardLocation, placement));
+        }
+
+        GlobalPnpJobPlanner planner = new GlobalPnpJobPlanner();
+        planner.setPlanningTimeMilliseconds(100);
+        List<PlannedPlacement> first = planner.plan(head, pending);
+        Assert.assertEquals(1, first.size());
+        JobPlacement failed = first.get(0).jobPlacement;
+        // The failed placement stays pending, the others are handed out as they are placed.
+        Set<JobPlacement> handedOut = new HashSet<>();
+        while (!pending.isEmpty()) {
+            List<PlannedPlacement> plannedPlacements = planner.plan(head, pending);
+            Assert.assertEquals(1, plannedPlacements.size());
+            Assert.assertTrue("Placement handed out once.", handedOut.add(plannedPlacements.get(0).jobPlacement));
+            pending.remove(plannedPlacements.get(0).jobPlacement);
+        }
+        Assert.assertTrue("Failed placement re-planned.", handedOut.contains(failed));
+        Assert.assertEquals(3, handedOut.size());
+    }
+}
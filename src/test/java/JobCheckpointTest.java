@@ -0,0 +1,97 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.JobCheckpoint;
+import org.openpnp.model.Placement;
+
+import com.google.common.io.Files;
+
+public class JobCheckpointTest {
+    private File workingDirectory;
+
+    @Before
+    public void before() throws Exception {
+        workingDirectory = Files.createTempDir();
+        Configuration.initialize(new File(workingDirectory, ".openpnp"));
+        Configuration.get().load();
+    }
+
+    private Job createJob() {
+        Job job = new Job();
+        job.setFile(new File(workingDirectory, "test.job.xml"));
+        Board board = new Board();
+        board.setName("test");
+        board.addPlacement(new Placement("R1"));
+        board.addPlacement(new Placement("R2"));
+        board.addPlacement(new Placement("R3"));
+        job.addBoardLocation(new BoardLocation(board));
+        job.addBoardLocation(new BoardLocation(board));
+        return job;
+    }
+
+    @Test
+    public void testJournalReplay() throws Exception {
+        File file = new File(workingDirectory, "checkpoint.properties");
+        Job job = createJob();
+        JobCheckpoint checkpoint = new JobCheckpoint(file);
+        checkpoint.checkpoint(job, null, new ArrayList<>());
+        BoardLocation boardLocation0 = job.getBoardLocations().get(0);
+        BoardLocation boardLocation1 = job.getBoardLocations().get(1);
+        boardLocation0.setPlaced("R1", true);
+        checkpoint.journalPlaced(job, boardLocation0, boardLocation0.getBoard().getPlacements().get(0), null);
+        boardLocation1.setPlaced("R2", true);
+        checkpoint.journalPlaced(job, boardLocation1, boardLocation1.getBoard().getPlacements().get(1), null);
+        checkpoint.flush();
+        Assert.assertTrue(checkpoint.getJournalFile().exists());
+
+        // Simulate a crash in the middle of writing a record.
+        try (FileOutputStream out = new FileOutputStream(checkpoint.getJournalFile(), true)) {
+            out.write("placed\t0\tR".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // The journal is only replayed on request, otherwise just the snapshot is restored.
+        Job resumed = createJob();
+        Assert.assertTrue(new JobCheckpoint(file).restore(resumed, Configuration.get().getMachine(), true));
+        Assert.assertFalse(resumed.getBoardLocations().get(0).getPlaced("R1"));
+        Assert.assertFalse(resumed.getBoardLocations().get(1).getPlaced("R2"));
+
+        resumed = createJob();
+        JobCheckpoint replaying = new JobCheckpoint(file);
+        replaying.setReplayJournal(true);
+        Assert.assertTrue(replaying.hasCheckpoint(resumed));
+        Assert.assertTrue(replaying.restore(resumed, Configuration.get().getMachine(), true));
+        Assert.assertTrue(resumed.getBoardLocations().get(0).getPlaced("R1"));
+        Assert.assertFalse(resumed.getBoardLocations().get(0).getPlaced("R2"));
+        Assert.assertFalse(resumed.getBoardLocations().get(0).getPlaced("R3"));
+        Assert.assertFalse(resumed.getBoardLocations().get(1).getPlaced("R1"));
+        Assert.assertTrue(resumed.getBoardLocations().get(1).getPlaced("R2"));
+
+        // A snapshot contains the journaled placements and truncates the journal.
+        checkpoint.checkpoint(job, boardLocation1, new ArrayList<>());
+        checkpoint.flush();
+        Assert.assertFalse(checkpoint.getJournalFile().exists());
+        resumed = createJob();
+        Assert.assertTrue(new JobCheckpoint(file).restore(resumed, Configuration.get().getMachine(), true));
+        Assert.assertTrue(resumed.getBoardLocations().get(0).getPlaced("R1"));
+        Assert.assertTrue(resumed.getBoardLocations().get(1).getPlaced("R2"));
+
+        // A checkpoint of another job is not restored.
+        Job other = createJob();
+        other.setFile(new File(workingDirectory, "other.job.xml"));
+        Assert.assertFalse(new JobCheckpoint(file).hasCheckpoint(other));
+        Assert.assertFalse(new JobCheckpoint(file).restore(other, Configuration.get().getMachine(), true));
+
+        checkpoint.clear();
+        checkpoint.flush();
+        Assert.assertFalse(file.exists());
+    }
+}
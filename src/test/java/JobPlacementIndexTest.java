@@ -0,0 +1,49 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Board;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement.Status;
+import org.openpnp.spi.base.JobPlacementIndex;
+
+public class JobPlacementIndexTest {
+    @Test
+    public void testStatusIndex() {
+        BoardLocation boardLocation = new BoardLocation(new Board());
+        JobPlacementIndex index = new JobPlacementIndex();
+        List<JobPlacement> jobPlacements = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            JobPlacement jobPlacement = new JobPlacement(boardLocation, new Placement("R" + i));
+            jobPlacements.add(jobPlacement);
+            index.add(jobPlacement);
+        }
+        Assert.assertEquals(5, index.getCount(Status.Pending));
+        Assert.assertEquals(jobPlacements, index.getJobPlacements(Status.Pending));
+
+        jobPlacements.get(0).setStatus(Status.Processing);
+        jobPlacements.get(1).setStatus(Status.Processing);
+        jobPlacements.get(2).setError(new Exception("test"));
+        Assert.assertEquals(Arrays.asList(jobPlacements.get(3), jobPlacements.get(4)),
+                index.getJobPlacements(Status.Pending));
+        Assert.assertEquals(2, index.getCount(Status.Processing));
+        Assert.assertEquals(1, index.getCount(Status.Errored));
+
+        // A placement that goes back to pending keeps its original position.
+        jobPlacements.get(1).setStatus(Status.Pending);
+        jobPlacements.get(0).setStatus(Status.Complete);
+        Assert.assertEquals(Arrays.asList(jobPlacements.get(1), jobPlacements.get(3), jobPlacements.get(4)),
+                index.getJobPlacements(Status.Pending));
+        Assert.assertEquals(0, index.getCount(Status.Processing));
+        Assert.assertEquals(1, index.getCount(Status.Complete));
+
+        index.clear();
+        Assert.assertEquals(0, index.size());
+        jobPlacements.get(1).setStatus(Status.Complete);
+        Assert.assertEquals(0, index.getCount(Status.Complete));
+    }
+}
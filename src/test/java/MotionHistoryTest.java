@@ -0,0 +1,85 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.AxesLocation;
+import org.openpnp.model.Motion;
+import org.openpnp.model.MotionHistory;
+
+public class MotionHistoryTest {
+    private static Motion createMotion() {
+        return new Motion(null, AxesLocation.zero, AxesLocation.zero, 1.0, 0);
+    }
+
+    @Test
+    public void testWrapAroundAndEviction() {
+        MotionHistory history = new MotionHistory(3);
+        Motion [] motions = new Motion[5];
+        for (int i = 0; i < motions.length; i++) {
+            motions[i] = createMotion();
+            history.add(i + 1, motions[i]);
+        }
+        // Capacity 3, so the motions ending at 1 and 2 were evicted.
+        Assert.assertEquals(3, history.size());
+        Assert.assertEquals(2, history.getEvictions());
+        Assert.assertSame(motions[4], history.getLastMotion());
+        Assert.assertEquals(5.0, history.getLastTime(), 0);
+
+        // The entries now wrap around the end of the buffer.
+        Assert.assertSame(motions[2], history.getMotionAfter(0));
+        Assert.assertSame(motions[2], history.getMotionAfter(2.5));
+        Assert.assertSame(motions[3], history.getMotionAfter(3));
+        Assert.assertSame(motions[4], history.getMotionAfter(4.5));
+        Assert.assertNull(history.getMotionAfter(5));
+
+        // Wrap around once more.
+        Motion motion6 = createMotion();
+        history.add(6, motion6);
+        Assert.assertEquals(3, history.getEvictions());
+        Assert.assertSame(motions[3], history.getMotionAfter(3.5));
+        Assert.assertSame(motions[4], history.getMotionAfter(4));
+        Assert.assertSame(motion6, history.getMotionAfter(5.5));
+    }
+
+    @Test
+    public void testClearOlderThan() {
+        MotionHistory history = new MotionHistory(4);
+        Motion [] motions = new Motion[6];
+        for (int i = 0; i < motions.length; i++) {
+            motions[i] = createMotion();
+            history.add(i + 1, motions[i]);
+        }
+        history.clearOlderThan(5);
+        Assert.assertEquals(2, history.size());
+        Assert.assertSame(motions[4], history.getMotionAfter(0));
+        // Clearing is not counted as eviction.
+        Assert.assertEquals(2, history.getEvictions());
+
+        history.clearOlderThan(100);
+        Assert.assertTrue(history.isEmpty());
+        Assert.assertNull(history.getLastMotion());
+        Assert.assertEquals(Double.NEGATIVE_INFINITY, history.getLastTime(), 0);
+
+        // The history is still usable after being emptied.
+        Motion motion = createMotion();
+        history.add(10, motion);
+        Assert.assertSame(motion, history.getMotionAfter(9));
+    }
+
+    @Test
+    public void testEqualTimeReplaces() {
+        MotionHistory history = new MotionHistory(2);
+        Motion motion1 = createMotion();
+        Motion motion2 = createMotion();
+        history.add(1, motion1);
+        history.add(1, motion2);
+        Assert.assertEquals(1, history.size());
+        Assert.assertSame(motion2, history.getMotionAfter(0));
+        Assert.assertEquals(0, history.getEvictions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTimeBackwards() {
+        MotionHistory history = new MotionHistory(2);
+        history.add(2, createMotion());
+        history.add(1, createMotion());
+    }
+}
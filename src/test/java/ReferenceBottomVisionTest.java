@@ -1,10 +1,13 @@
 import java.io.File;
+import java.util.concurrent.Future;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.openpnp.machine.reference.ReferenceMachine;
 import org.openpnp.machine.reference.camera.SimulatedUpCamera;
 import org.openpnp.machine.reference.driver.NullDriver;
 import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.model.BoardLocation;
 import org.openpnp.model.Configuration;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
@@ -13,6 +16,7 @@ import org.openpnp.spi.Machine;
 import org.openpnp.spi.Nozzle;
 import org.openpnp.spi.PartAlignment.PartAlignmentOffset;
 import org.openpnp.util.VisionUtils;
+import org.openpnp.vision.pipeline.stages.ImageCapture;
 
 import com.google.common.io.Files;
 
@@ -60,6 +64,115 @@ public class ReferenceBottomVisionTest {
         });
     }
     
+    /**
+     * Counts the sequential alignments, the overlapped path does not call findOffsets().
+     */
+    public static class CountingBottomVision extends ReferenceBottomVision {
+        int findOffsetsCount = 0;
+
+        @Override
+        public PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation,
+                Location placementLocation, Nozzle nozzle) throws Exception {
+            findOffsetsCount++;
+            return super.findOffsets(part, boardLocation, placementLocation, nozzle);
+        }
+    }
+
+    /**
+     * The overlapped alignment processes the captured image on a copy of the pipeline, and must give
+     * the same offsets as the sequential alignment.
+     */
+    @Test
+    public void testOverlappedSameAsSequential() throws Exception {
+        Location error = new Location(LengthUnit.Millimeters, 1, 2, 0, 13);
+        Location maxError = new Location(LengthUnit.Millimeters, 0.1, 0.1, 0, 0.03);
+        CountingBottomVision bottomVision = createCountingBottomVision(error);
+        Machine machine = Configuration.get().getMachine();
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        Part part = Configuration.get().getPart("R0805-1K");
+        Assert.assertNotNull("The pipeline should capture a single image.",
+                ImageCapture.getSingleImageCapture(bottomVision.getPartSettings(part).getPipeline()));
+
+        machine.execute(() -> {
+            nozzle.pick(part);
+            Location sequential = bottomVision.findOffsets(part, null, null, nozzle).getLocation();
+            Assert.assertEquals(1, bottomVision.findOffsetsCount);
+
+            Future<PartAlignmentOffset> future = bottomVision.findOffsetsOverlapped(part, null, null, nozzle);
+            Location overlapped = VisionUtils.finishPartAlignment(part, nozzle, future).getLocation();
+            Assert.assertEquals("The overlapped path should not align sequentially.", 1,
+                    bottomVision.findOffsetsCount);
+
+            assertMaxDelta(overlapped.getX(), sequential.getX(), maxError.getX());
+            assertMaxDelta(overlapped.getY(), sequential.getY(), maxError.getY());
+            assertMaxDelta(overlapped.getRotation(), sequential.getRotation(), maxError.getRotation());
+            assertMaxDelta(overlapped.getX(), error.getX(), maxError.getX());
+            assertMaxDelta(overlapped.getY(), error.getY(), maxError.getY());
+            assertMaxDelta(overlapped.getRotation(), error.getRotation(), maxError.getRotation());
+            return true;
+        });
+    }
+
+    /**
+     * Pre-rotation and pipelines that capture more than one image are aligned sequentially.
+     */
+    @Test
+    public void testOverlappedFallsBackToSequential() throws Exception {
+        Location error = new Location(LengthUnit.Millimeters, 1, 2, 0, 13);
+        Location maxError = new Location(LengthUnit.Millimeters, 0.1, 0.1, 0, 0.03);
+        CountingBottomVision bottomVision = createCountingBottomVision(error);
+        Machine machine = Configuration.get().getMachine();
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        Part part = Configuration.get().getPart("R0805-1K");
+
+        machine.execute(() -> {
+            nozzle.pick(part);
+            bottomVision.setPreRotate(true);
+            Future<PartAlignmentOffset> future = bottomVision.findOffsetsOverlapped(part, null, null, nozzle);
+            Location offsets = VisionUtils.finishPartAlignment(part, nozzle, future).getLocation();
+            Assert.assertEquals("Pre-rotation should align sequentially.", 1, bottomVision.findOffsetsCount);
+            Assert.assertNotNull(offsets);
+
+            bottomVision.setPreRotate(false);
+            ImageCapture imageCapture = ImageCapture.getSingleImageCapture(
+                    bottomVision.getPartSettings(part).getPipeline());
+            imageCapture.setCount(2);
+            Assert.assertNull(ImageCapture.getSingleImageCapture(bottomVision.getPartSettings(part).getPipeline()));
+            future = bottomVision.findOffsetsOverlapped(part, null, null, nozzle);
+            offsets = VisionUtils.finishPartAlignment(part, nozzle, future).getLocation();
+            Assert.assertEquals("A multi-capture pipeline should align sequentially.", 2,
+                    bottomVision.findOffsetsCount);
+            assertMaxDelta(offsets.getX(), error.getX(), maxError.getX());
+            assertMaxDelta(offsets.getY(), error.getY(), maxError.getY());
+            return true;
+        });
+    }
+
+    /**
+     * Loads the default configuration and creates a CountingBottomVision with the pipeline of the
+     * configured bottom vision.
+     */
+    private static CountingBottomVision createCountingBottomVision(Location error) throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        Machine machine = Configuration.get().getMachine();
+        SimulatedUpCamera camera = (SimulatedUpCamera) VisionUtils.getBottomVisionCamera();
+        ReferenceBottomVision configured = (ReferenceBottomVision) machine.getPartAlignments().get(0);
+        NullDriver driver = (NullDriver) ((ReferenceMachine) machine).getDefaultDriver();
+        driver.setFeedRateMmPerMinute(0);
+        camera.setErrorOffsets(error);
+        machine.setEnabled(true);
+
+        CountingBottomVision bottomVision = new CountingBottomVision();
+        bottomVision.setEnabled(true);
+        bottomVision.setPreRotate(false);
+        bottomVision.setPipeline(configured.getPipeline().clone());
+        return bottomVision;
+    }
+
     public static void assertMaxDelta(double a, double b, double maxDelta) throws Exception {
         if (Math.abs(a - b) > maxDelta) {
             throw new Exception(String.format("abs(%f - %f) > %f", a, b, maxDelta));
@@ -0,0 +1,175 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+
+public class ReferenceFeederPreFeedTest {
+    /**
+     * A TestFeeder that supports pre-feed and counts the actuations of its feed mechanism.
+     */
+    public static class PreFeedTestFeeder extends ReferenceJobProcessorRetryTests.TestFeeder {
+        int actuateCount = 0;
+
+        @Override
+        public boolean isPreFeedSupported() {
+            return isPreFeed();
+        }
+
+        @Override
+        protected void actuateFeed(Nozzle nozzle) throws Exception {
+            actuateCount++;
+        }
+
+        @Override
+        public void feed(Nozzle nozzle) throws Exception {
+            if (!consumePreFeed()) {
+                actuateFeed(nozzle);
+            }
+            super.feed(nozzle);
+        }
+    }
+
+    /**
+     * Lets the test fail a pending placement while the job is running.
+     */
+    static class TestJobProcessor extends ReferencePnpJobProcessor {
+        void failPendingPlacement(String id) {
+            for (JobPlacement jobPlacement : getPendingJobPlacements()) {
+                if (jobPlacement.getPlacement().getId().equals(id)) {
+                    jobPlacement.setError(new Exception("Failed by the test."));
+                }
+            }
+        }
+    }
+
+    private Machine createMachine() throws Exception {
+        Configuration.initialize();
+        return new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+    }
+
+    private Job createJob(Machine machine) throws Exception {
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .placement("R3", "R0402-1k", 30, 30, 0)
+                .build();
+        PreFeedTestFeeder feeder = new PreFeedTestFeeder();
+        feeder.setName("F1");
+        feeder.setPart(Configuration.get().getPart("R0402-1k"));
+        feeder.setPartCount(10);
+        feeder.setPreFeed(true);
+        feeder.setEnabled(true);
+        machine.addFeeder(feeder);
+        return job;
+    }
+
+    private void startJob(Machine machine, ReferencePnpJobProcessor jobProcessor, Job job) throws Exception {
+        machine.setEnabled(true);
+        machine.home();
+        jobProcessor.initialize(job);
+    }
+
+    /**
+     * A pre-feed actuates once, and the next feed consumes it without actuating again.
+     */
+    @Test
+    public void testPreFeedConsumed() throws Exception {
+        Machine machine = createMachine();
+        createJob(machine);
+        PreFeedTestFeeder feeder = (PreFeedTestFeeder) machine.getFeederByName("F1");
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+
+        feeder.preFeed(nozzle);
+        feeder.preFeed(nozzle);
+        Assert.assertEquals("Pre-feed should actuate once.", 1, feeder.actuateCount);
+        feeder.feed(nozzle);
+        Assert.assertEquals("Feed should consume the pre-feed.", 1, feeder.actuateCount);
+        feeder.feed(nozzle);
+        Assert.assertEquals("The next feed should actuate.", 2, feeder.actuateCount);
+
+        feeder.preFeed(nozzle);
+        feeder.cancelPreFeed();
+        feeder.feed(nozzle);
+        Assert.assertEquals("Feed should actuate after a cancelled pre-feed.", 4, feeder.actuateCount);
+
+        feeder.setPreFeed(false);
+        feeder.preFeed(nozzle);
+        Assert.assertEquals("Pre-feed should not actuate when disabled.", 4, feeder.actuateCount);
+    }
+
+    /**
+     * Each placement is actuated exactly once, and a stale pre-feed from before the job is cancelled
+     * in PreFlight instead of being consumed by the first feed.
+     */
+    @Test
+    public void testPreFeedsInJob() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(machine);
+        PreFeedTestFeeder feeder = (PreFeedTestFeeder) machine.getFeederByName("F1");
+
+        feeder.preFeed(machine.getDefaultHead().getDefaultNozzle());
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        Assert.assertEquals("Three placements plus the stale pre-feed should actuate four times.",
+                4, feeder.actuateCount);
+        Assert.assertEquals("Feed count should be 3.", 3, feeder.feedCount);
+    }
+
+    /**
+     * A pre-feed of the cycle planned ahead is cancelled when the job is aborted.
+     */
+    @Test
+    public void testPreFeedCancelledInCleanup() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(machine);
+        PreFeedTestFeeder feeder = (PreFeedTestFeeder) machine.getFeederByName("F1");
+        TestJobProcessor jobProcessor = new TestJobProcessor();
+        startJob(machine, jobProcessor, job);
+
+        // Run until the feed of the first cycle and the pre-feed of the second are done.
+        while (feeder.actuateCount < 2 && jobProcessor.next());
+        Assert.assertEquals(2, feeder.actuateCount);
+        jobProcessor.abort();
+
+        feeder.feed(machine.getDefaultHead().getDefaultNozzle());
+        Assert.assertEquals("Feed should actuate after the job was aborted.", 3, feeder.actuateCount);
+    }
+
+    /**
+     * If the pending placements change, the cycle planned ahead is dropped and so are its pre-feeds.
+     */
+    @Test
+    public void testPreFeedCancelledWithPlannedCycle() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(machine);
+        PreFeedTestFeeder feeder = (PreFeedTestFeeder) machine.getFeederByName("F1");
+        TestJobProcessor jobProcessor = new TestJobProcessor();
+        startJob(machine, jobProcessor, job);
+
+        // Run until the feed of the first cycle and the pre-feed of the second are done.
+        while (feeder.actuateCount < 2 && jobProcessor.next());
+        Assert.assertEquals(2, feeder.actuateCount);
+        jobProcessor.failPendingPlacement("R3");
+        try {
+            while (jobProcessor.next());
+        }
+        catch (Exception e) {
+        }
+
+        Assert.assertEquals("The re-planned cycle should feed again.", 3, feeder.actuateCount);
+        Assert.assertEquals("Feed count should be 2.", 2, feeder.feedCount);
+    }
+}
@@ -1,15 +1,42 @@
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.driver.NullDriver;
 import org.openpnp.machine.reference.vision.ReferenceFiducialLocator;
+import org.openpnp.model.Board.Side;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
 import org.openpnp.model.LengthUnit;
 import org.openpnp.model.Location;
+import org.openpnp.model.Part;
 import org.openpnp.model.Placement;
+import org.openpnp.spi.base.AbstractCamera;
+import org.openpnp.util.Utils2D;
+
+import com.google.common.io.Files;
 
 public class ReferenceFiducialLocatorTest {
+    /**
+     * Counts the fiducials that are visited with repeated recognition.
+     */
+    static class CountingFiducialLocator extends ReferenceFiducialLocator {
+        int revisitCount = 0;
+
+        @Override
+        protected Location getFiducialLocation(Location location, Part part) throws Exception {
+            revisitCount++;
+            return super.getFiducialLocation(location, part);
+        }
+    }
+
     static Placement createPlacement(double x, double y) {
         Location l = new Location(LengthUnit.Millimeters, x, y, 0, 0);
         Placement p = new Placement(Math.random() + "");
@@ -81,6 +108,87 @@ public class ReferenceFiducialLocatorTest {
         System.out.println("testSameX " + results + " in " + (System.currentTimeMillis() - t));
     }
     
+    /**
+     * Pre-scans the boards of the sample job. Every board must be located the same as by
+     * locateBoard(), and the fiducials of a board that is off by more than the pre-scan tolerance
+     * must be re-visited.
+     */
+    @Test
+    public void testLocateBoards() throws Exception {
+        File workingDirectory = Files.createTempDir();
+        workingDirectory = new File(workingDirectory, ".openpnp");
+        Configuration.initialize(workingDirectory);
+        Configuration.get().load();
+
+        ReferenceMachine machine = (ReferenceMachine) Configuration.get().getMachine();
+        NullDriver driver = (NullDriver) machine.getDefaultDriver();
+        driver.setFeedRateMmPerMinute(0);
+        AbstractCamera camera = (AbstractCamera) machine.getDefaultHead().getDefaultCamera();
+        camera.setSettleMethod(AbstractCamera.SettleMethod.FixedTime);
+        camera.setSettleTimeMs(0);
+
+        ReferenceFiducialLocator configured = (ReferenceFiducialLocator) machine.getFiducialLocator();
+        CountingFiducialLocator fiducialLocator = new CountingFiducialLocator();
+        fiducialLocator.setPipeline(configured.getPipeline().clone());
+        fiducialLocator.getPartSettingsByPartId().putAll(configured.getPartSettingsByPartId());
+        fiducialLocator.setPreScan(true);
+
+        File jobFile = new File("samples");
+        jobFile = new File(jobFile, "pnp-test");
+        jobFile = new File(jobFile, "pnp-test.job.xml");
+        Job job = Configuration.get().loadJob(jobFile);
+        List<BoardLocation> boardLocations = new ArrayList<>();
+        for (BoardLocation boardLocation : job.getBoardLocations()) {
+            if (boardLocation.isEnabled() && boardLocation.isCheckFiducials()) {
+                boardLocations.add(boardLocation);
+            }
+        }
+        assertTrue("The sample job should have several boards.", boardLocations.size() > 1);
+
+        // Make the first board an outlier, off by more than the pre-scan tolerance.
+        BoardLocation outlier = boardLocations.get(0);
+        Location outlierLocation = outlier.getLocation();
+        outlier.setLocation(outlierLocation.add(new Location(LengthUnit.Millimeters, 2, 0, 0, 0)));
+
+        machine.setEnabled(true);
+        machine.execute(() -> {
+            machine.home();
+            List<BoardLocation> located = fiducialLocator.locateBoards(boardLocations);
+            assertEquals("Every board should be located.", boardLocations.size(), located.size());
+            assertTrue("The fiducials of the outlier should be re-visited.",
+                    fiducialLocator.revisitCount >= 2);
+
+            List<Location> preScanned = new ArrayList<>();
+            for (BoardLocation boardLocation : boardLocations) {
+                assertNotNull(boardLocation.getPlacementTransform());
+                preScanned.add(getBoardOrigin(boardLocation));
+            }
+            assertMaxDistance(outlierLocation, preScanned.get(0), 0.2);
+
+            fiducialLocator.setPreScan(false);
+            for (int i = 0; i < boardLocations.size(); i++) {
+                BoardLocation boardLocation = boardLocations.get(i);
+                fiducialLocator.locateBoard(boardLocation);
+                assertMaxDistance(getBoardOrigin(boardLocation), preScanned.get(i), 0.1);
+            }
+            return true;
+        });
+    }
+
+    private static Location getBoardOrigin(BoardLocation boardLocation) {
+        Location origin = new Location(LengthUnit.Millimeters);
+        if (boardLocation.getSide() == Side.Bottom) {
+            origin = origin.add(boardLocation.getBoard().getDimensions().derive(null, 0., 0., 0.));
+        }
+        return Utils2D.calculateBoardPlacementLocation(boardLocation, origin)
+                .convertToUnits(LengthUnit.Millimeters);
+    }
+
+    private static void assertMaxDistance(Location expected, Location actual, double maxDistance) {
+        double distance = expected.convertToUnits(LengthUnit.Millimeters).getLinearDistanceTo(actual);
+        assertTrue(String.format("%s is %f mm from %s", actual, distance, expected), distance <= maxDistance);
+    }
+
     @Test
     public void testSameY() {
         List<Placement> points = new ArrayList<>();
@@ -288,7 +288,11 @@ public class ReferenceJobProcessorRetryTests {
         TestNozzle nozzle = null;
         
         public MachineBuilder() {
-            machine = new ReferenceMachine();
+            this(new ReferenceMachine());
+        }
+
+        public MachineBuilder(ReferenceMachine machine) {
+            this.machine = machine;
             Configuration.get().setMachine(machine);
         }
 
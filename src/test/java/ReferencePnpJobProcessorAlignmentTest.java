@@ -0,0 +1,119 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.vision.ReferenceBottomVision;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PartAlignment;
+
+public class ReferencePnpJobProcessorAlignmentTest {
+    /**
+     * A ReferenceMachine the test can add part alignments to.
+     */
+    static class AlignmentTestMachine extends ReferenceMachine {
+        void addPartAlignment(PartAlignment partAlignment) {
+            partAlignments.add(partAlignment);
+        }
+    }
+
+    /**
+     * A part alignment whose overlapped alignment always fails, while the sequential one succeeds.
+     */
+    public static class FailingOverlappedAlignment extends ReferenceBottomVision {
+        int overlappedCount = 0;
+        int findOffsetsCount = 0;
+
+        @Override
+        public boolean canHandle(Part part) {
+            return true;
+        }
+
+        @Override
+        public Future<PartAlignmentOffset> findOffsetsOverlapped(Part part, BoardLocation boardLocation,
+                Location placementLocation, Nozzle nozzle) {
+            overlappedCount++;
+            CompletableFuture<PartAlignmentOffset> future = new CompletableFuture<>();
+            future.completeExceptionally(new Exception("Overlapped alignment failed."));
+            return future;
+        }
+
+        @Override
+        public PartAlignmentOffset findOffsets(Part part, BoardLocation boardLocation,
+                Location placementLocation, Nozzle nozzle) throws Exception {
+            findOffsetsCount++;
+            return new PartAlignmentOffset(new Location(LengthUnit.Millimeters), false);
+        }
+    }
+
+    private Machine createMachine() throws Exception {
+        Configuration.initialize();
+        AlignmentTestMachine machine = new AlignmentTestMachine();
+        new ReferenceJobProcessorRetryTests.MachineBuilder(machine)
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+        machine.addPartAlignment(new FailingOverlappedAlignment());
+        return machine;
+    }
+
+    private Job createJob(Machine machine) throws Exception {
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .feeder("F1", "R0402-1k", 100, 20, -5, 0)
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .build();
+        ((ReferenceJobProcessorRetryTests.TestFeeder) machine.getFeederByName("F1")).setPartCount(1);
+        return job;
+    }
+
+    /**
+     * If the overlapped alignment fails on the first attempt, the part is aligned again sequentially
+     * and placed.
+     */
+    @Test
+    public void testOverlappedFailureRetriedSequentially() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(machine);
+        FailingOverlappedAlignment alignment = (FailingOverlappedAlignment) machine.getPartAlignments().get(0);
+        ((ReferencePnpJobProcessor) machine.getPnpJobProcessor()).setOverlappedAlignment(true);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        Assert.assertEquals("The overlapped alignment should be attempted once.", 1, alignment.overlappedCount);
+        Assert.assertEquals("The part should be aligned sequentially once.", 1, alignment.findOffsetsCount);
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        Assert.assertTrue("The placement should be placed.", boardLocation.getPlaced("R1"));
+    }
+
+    /**
+     * Without overlapped alignment, the parts are only aligned sequentially.
+     */
+    @Test
+    public void testSequentialAlignment() throws Exception {
+        Machine machine = createMachine();
+        Job job = createJob(machine);
+        FailingOverlappedAlignment alignment = (FailingOverlappedAlignment) machine.getPartAlignments().get(0);
+        ((ReferencePnpJobProcessor) machine.getPnpJobProcessor()).setOverlappedAlignment(false);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        Assert.assertEquals(0, alignment.overlappedCount);
+        Assert.assertEquals(1, alignment.findOffsetsCount);
+        Assert.assertTrue(job.getBoardLocations().get(0).getPlaced("R1"));
+    }
+}
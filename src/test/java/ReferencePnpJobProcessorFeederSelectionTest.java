@@ -0,0 +1,148 @@
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Part;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.base.AbstractPnpJobProcessor;
+
+public class ReferencePnpJobProcessorFeederSelectionTest {
+    /**
+     * A TestFeeder that is picked at its location and knows how many parts it has left.
+     */
+    public static class CountedFeeder extends ReferencePnpJobProcessorTravelOrderTest.LocatedFeeder {
+        @Override
+        public int getRemainingCount() {
+            return Math.max(0, partCount - feedCount);
+        }
+    }
+
+    private Machine createMachine() throws Exception {
+        Configuration.initialize();
+        return new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .topCamera("TOP")
+                .bottomCamera("BOTTOM")
+                .build();
+    }
+
+    private CountedFeeder addFeeder(Machine machine, String name, String partId, Location location,
+            int partCount) throws Exception {
+        CountedFeeder feeder = new CountedFeeder();
+        feeder.setName(name);
+        feeder.setPart(Configuration.get().getPart(partId));
+        feeder.setLocation(location);
+        feeder.setPartCount(partCount);
+        feeder.setEnabled(true);
+        machine.addFeeder(feeder);
+        return feeder;
+    }
+
+    /**
+     * Of several feeders of the same part, the nearest is taken, then the fullest, and empty ones are
+     * skipped.
+     */
+    @Test
+    public void testNearestThenFullest() throws Exception {
+        Machine machine = createMachine();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402");
+        Part part = Configuration.get().getPart("R0402-1k");
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        Location location = nozzle.getLocation();
+        CountedFeeder near = addFeeder(machine, "NEAR", "R0402-1k",
+                location.add(new Location(LengthUnit.Millimeters, 10, 0, 0, 0)), 5);
+        CountedFeeder far = addFeeder(machine, "FAR", "R0402-1k",
+                location.add(new Location(LengthUnit.Millimeters, 100, 0, 0, 0)), 10);
+
+        Assert.assertSame("The nearest feeder should be taken.", near,
+                AbstractPnpJobProcessor.findFeeder(machine, part, nozzle, null));
+        Assert.assertSame("Without a HeadMountable, the fullest feeder should be taken.", far,
+                AbstractPnpJobProcessor.findFeeder(machine, part, null, null));
+
+        near.setPartCount(0);
+        Assert.assertSame("The empty feeder should be skipped.", far,
+                AbstractPnpJobProcessor.findFeeder(machine, part, nozzle, null));
+
+        far.setPartCount(0);
+        Assert.assertSame("If all are empty, the nearest feeder should be taken.", near,
+                AbstractPnpJobProcessor.findFeeder(machine, part, nozzle, null));
+    }
+
+    /**
+     * A failing feeder is avoided for the rest of the job, and switching to another feeder does not
+     * count as a pick retry.
+     */
+    @Test
+    public void testFailingFeederAvoided() throws Exception {
+        Machine machine = createMachine();
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 10, 10, 10, -10)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .placement("R1", "R0402-1k", 10, 10, 0)
+                .placement("R2", "R0402-1k", 20, 20, 0)
+                .build();
+        Configuration.get().getPart("R0402-1k").setPickRetryCount(0);
+        Location location = machine.getDefaultHead().getDefaultNozzle().getLocation();
+        // Fails on the first feed, it does not know it is empty, so it is not skipped.
+        ReferencePnpJobProcessorTravelOrderTest.LocatedFeeder near =
+                new ReferencePnpJobProcessorTravelOrderTest.LocatedFeeder();
+        near.setName("NEAR");
+        near.setPart(Configuration.get().getPart("R0402-1k"));
+        near.setLocation(location.add(new Location(LengthUnit.Millimeters, 10, 0, 0, 0)));
+        near.setEnabled(true);
+        machine.addFeeder(near);
+        CountedFeeder far = addFeeder(machine, "FAR", "R0402-1k",
+                location.add(new Location(LengthUnit.Millimeters, 100, 0, 0, 0)), 10);
+
+        ReferenceJobProcessorRetryTests.runJob(machine, job);
+
+        Assert.assertEquals("The failing feeder should only be fed once.", 1, near.feedCount);
+        Assert.assertEquals("Both placements should be fed from the other feeder.", 2, far.feedCount);
+        ReferenceJobProcessorRetryTests.TestNozzle n1 =
+                (ReferenceJobProcessorRetryTests.TestNozzle) machine.getDefaultHead().getDefaultNozzle();
+        Assert.assertEquals("Pick count should be 2.", 2, n1.getPickCount());
+    }
+
+    /**
+     * A feeder that is assigned to a different part is found for its new part, and no longer for the
+     * old one.
+     */
+    @Test
+    public void testReassignedFeeder() throws Exception {
+        Machine machine = createMachine();
+        new ReferenceJobProcessorRetryTests.JobBuilder()
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .part("R0402-2k", "R0402");
+        Part part1k = Configuration.get().getPart("R0402-1k");
+        Part part2k = Configuration.get().getPart("R0402-2k");
+        Location location = new Location(LengthUnit.Millimeters);
+        CountedFeeder f1 = addFeeder(machine, "F1", "R0402-1k", location, 5);
+        CountedFeeder f2 = addFeeder(machine, "F2", "R0402-2k", location, 10);
+
+        Assert.assertSame(f1, AbstractPnpJobProcessor.findFeeder(machine, part1k, null, null));
+        Assert.assertSame(f2, AbstractPnpJobProcessor.findFeeder(machine, part2k, null, null));
+
+        // F2 is the fullest of the two, once it serves the part.
+        f2.setPart(part1k);
+        Assert.assertSame(f2, AbstractPnpJobProcessor.findFeeder(machine, part1k, null, null));
+
+        f1.setPart(part2k);
+        Assert.assertSame(f1, AbstractPnpJobProcessor.findFeeder(machine, part2k, null, null));
+        f2.setEnabled(false);
+        try {
+            AbstractPnpJobProcessor.findFeeder(machine, part1k, null, null);
+            Assert.fail("No feeder should serve the part any longer.");
+        }
+        catch (Exception e) {
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openpnp.machine.reference.ReferenceMachine;
+import org.openpnp.machine.reference.ReferencePnpJobProcessor;
+import org.openpnp.machine.reference.driver.NullMotionPlanner;
+import org.openpnp.model.BoardLocation;
+import org.openpnp.model.Configuration;
+import org.openpnp.model.Job;
+import org.openpnp.model.LengthUnit;
+import org.openpnp.model.Location;
+import org.openpnp.model.Placement;
+import org.openpnp.spi.Feeder;
+import org.openpnp.spi.HeadMountable;
+import org.openpnp.spi.Machine;
+import org.openpnp.spi.Nozzle;
+import org.openpnp.spi.PnpJobPlanner.PlannedPlacement;
+import org.openpnp.spi.PnpJobProcessor.JobPlacement;
+
+public class ReferencePnpJobProcessorTravelOrderTest {
+    /**
+     * Exposes the travel order and the planned feeders of the job processor.
+     */
+    static class TestJobProcessor extends ReferencePnpJobProcessor {
+        TestJobProcessor(Machine machine) {
+            this.machine = machine;
+            setOptimizeCycleTravel(true);
+        }
+
+        List<PlannedPlacement> getTravelOrder(List<PlannedPlacement> plannedPlacements,
+                Map<PlannedPlacement, Location> locations) {
+            return new PlannedPlacementStep(plannedPlacements) {
+                @Override
+                protected Location getTravelLocation(PlannedPlacement plannedPlacement) {
+                    return locations.get(plannedPlacement);
+                }
+
+                @Override
+                protected Step stepImpl(PlannedPlacement plannedPlacement) {
+                    return null;
+                }
+            }.getTravelOrder();
+        }
+
+        Feeder getPlannedFeeder(PlannedPlacement plannedPlacement, Feeder failedFeeder) throws Exception {
+            if (failedFeeder != null) {
+                failedFeeders.add(failedFeeder);
+            }
+            return getPlannedFeeder(plannedPlacement);
+        }
+    }
+
+    /**
+     * A TestFeeder that is picked at its location, so the nearest one can be told.
+     */
+    public static class LocatedFeeder extends ReferenceJobProcessorRetryTests.TestFeeder {
+        @Override
+        public Location getPickLocation() throws Exception {
+            return getLocation();
+        }
+    }
+
+    private Machine createMachine() throws Exception {
+        Configuration.initialize();
+        Machine machine = new ReferenceJobProcessorRetryTests.MachineBuilder()
+                .head("H1")
+                .nozzleTip("NT1")
+                .nozzle("N1", "NT1")
+                .build();
+        // Estimate the travel time by distance, the virtual axes of the test nozzle take no time at all.
+        ((ReferenceMachine) machine).setMotionPlanner(new NullMotionPlanner() {
+            @Override
+            public double estimateTravelTime(HeadMountable hm, Location from, Location to, double speed) {
+                return from.getLinearDistanceTo(to);
+            }
+        });
+        return machine;
+    }
+
+    private List<PlannedPlacement> createPlannedPlacements(Machine machine, String... ids) {
+        Job job = new ReferenceJobProcessorRetryTests.JobBuilder()
+                .board("B1", 0, 0, 0, 0)
+                .packag("R0402", "NT1")
+                .part("R0402-1k", "R0402")
+                .build();
+        BoardLocation boardLocation = job.getBoardLocations().get(0);
+        Nozzle nozzle = machine.getDefaultHead().getDefaultNozzle();
+        List<PlannedPlacement> plannedPlacements = new ArrayList<>();
+        for (String id : ids) {
+            Placement placement = new Placement(id);
+            placement.setPart(Configuration.get().getPart("R0402-1k"));
+            boardLocation.getBoard().addPlacement(placement);
+            plannedPlacements.add(new PlannedPlacement(nozzle, machine.getNozzleTipByName("NT1"),
+                    new JobPlacement(boardLocation, placement)));
+        }
+        return plannedPlacements;
+    }
+
+    /**
+     * The planned placements come out in the order of the shortest travel, those without a location stay
+     * first, in list order.
+     */
+    @Test
+    public void testTravelOrder() throws Exception {
+        Machine machine = createMachine();
+        List<PlannedPlacement> plannedPlacements = createPlannedPlacements(machine, "P1", "P2", "P3", "P4", "P5");
+        PlannedPlacement p1 = plannedPlacements.get(0);
+        PlannedPlacement p2 = plannedPlacements.get(1);
+        PlannedPlacement p3 = plannedPlacements.get(2);
+        PlannedPlacement p4 = plannedPlacements.get(3);
+        PlannedPlacement p5 = plannedPlacements.get(4);
+        Map<PlannedPlacement, Location> locations = new HashMap<>();
+        locations.put(p1, new Location(LengthUnit.Millimeters, 300, 0, 0, 0));
+        locations.put(p3, new Location(LengthUnit.Millimeters, 100, 0, 0, 0));
+        locations.put(p4, new Location(LengthUnit.Millimeters, 200, 0, 0, 0));
+
+        TestJobProcessor jobProcessor = new TestJobProcessor(machine);
+        Assert.assertEquals(Arrays.asList(p2, p5, p3, p4, p1),
+                jobProcessor.getTravelOrder(plannedPlacements, locations));
+
+        // Not optimized, the list order is kept.
+        jobProcessor.setOptimizeCycleTravel(false);
+        Assert.assertEquals(plannedPlacements, jobProcessor.getTravelOrder(plannedPlacements, locations));
+    }
+
+    /**
+     * The feeder chosen when the travel order was planned is kept for the pick, even if another feeder is
+     * nearer by then, unless it failed.
+     */
+    @Test
+    public void testPlannedFeederKept() throws Exception {
+        Machine machine = createMachine();
+        List<PlannedPlacement> plannedPlacements = createPlannedPlacements(machine, "P1");
+        LocatedFeeder near = new LocatedFeeder();
+        near.setName("NEAR");
+        near.setPart(Configuration.get().getPart("R0402-1k"));
+        near.setLocation(new Location(LengthUnit.Millimeters, 10, 0, 0, 0));
+        near.setEnabled(true);
+        machine.addFeeder(near);
+        LocatedFeeder far = new LocatedFeeder();
+        far.setName("FAR");
+        far.setPart(Configuration.get().getPart("R0402-1k"));
+        far.setLocation(new Location(LengthUnit.Millimeters, 100, 0, 0, 0));
+        far.setEnabled(true);
+        machine.addFeeder(far);
+
+        TestJobProcessor jobProcessor = new TestJobProcessor(machine);
+        PlannedPlacement plannedPlacement = plannedPlacements.get(0);
+        Assert.assertSame(near, jobProcessor.getPlannedFeeder(plannedPlacement, null));
+        plannedPlacement.feeder = far;
+        Assert.assertSame(far, jobProcessor.getPlannedFeeder(plannedPlacement, null));
+        Assert.assertSame(far, plannedPlacement.feeder);
+        // After a fail-over, the feeder is selected again.
+        Assert.assertSame(near, jobProcessor.getPlannedFeeder(plannedPlacement, far));
+        Assert.assertSame(near, plannedPlacement.feeder);
+    }
+}
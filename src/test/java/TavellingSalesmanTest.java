@@ -20,6 +20,7 @@
 import java.io.File;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
@@ -91,4 +92,108 @@ public class TavellingSalesmanTest {
             }
         }
     }
+    /**
+     * Test the TravelTime option, with a machine that has a much slower Y than X axis. The route optimized for time 
+     * must be at least as fast as the route optimized for distance. 
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testTravellingSalesmanTravelTime() throws Exception {
+        Random rnd = new java.util.Random(42);
+        List<Location> list = new ArrayList<Location>();
+        for (int i = 0; i < 30; i++) {
+            list.add(new Location(LengthUnit.Millimeters, rnd.nextDouble()*500.0, rnd.nextDouble()*500.0, 0.0, 0.0));
+        }
+        TravellingSalesman.Locator<Location> locator = new TravellingSalesman.Locator<Location>() { 
+            @Override
+            public Location getLocation(Location locatable) {
+                return locatable;
+            }
+        };
+        // Uncoordinated axes, X at 500mm/s, Y at 50mm/s.
+        TravellingSalesman.TravelTime travelTime = (from, to) -> 
+            Math.max(Math.abs(to.getX() - from.getX())/500.0, Math.abs(to.getY() - from.getY())/50.0);
+        Location start = new Location(LengthUnit.Millimeters);
+
+        TravellingSalesman<Location> tsmDistance = new TravellingSalesman<>(list, locator, start, null);
+        tsmDistance.solve();
+        double distanceRouteTime = 0;
+        Location l0 = start;
+        for (Location l1 : tsmDistance.getTravel()) {
+            distanceRouteTime += travelTime.getTravelTime(l0, l1);
+            l0 = l1;
+        }
+
+        TravellingSalesman<Location> tsmTime = new TravellingSalesman<>(list, locator, start, null, travelTime);
+        double timeRouteTime = tsmTime.solve();
+        double checkTime = 0;
+        l0 = start;
+        for (Location l1 : tsmTime.getTravel()) {
+            checkTime += travelTime.getTravelTime(l0, l1);
+            l0 = l1;
+        }
+        System.out.println("TavellingSalesmanTest.testTravellingSalesmanTravelTime() distance optimized: "+distanceRouteTime
+                +"s, time optimized: "+timeRouteTime+"s");
+        if (Math.abs(checkTime - timeRouteTime) > 1e-6) {
+            throw new Exception("Reported travel time "+timeRouteTime+" does not match the route travel time "+checkTime);
+        }
+        if (timeRouteTime > distanceRouteTime) {
+            throw new Exception("Time optimized route "+timeRouteTime+"s is slower than distance optimized route "+distanceRouteTime+"s");
+        }
+    }
+
+    /**
+     * Test the TravelTime option with an asymmetric travel time, like moves that need to go to Safe Z in one 
+     * direction, but not in the other. Here, moving towards negative X is a hundred times slower than moving towards 
+     * positive X. 
+     * 
+     * Starting in the middle of a row of Locations, an optimal route first goes all the way down towards negative X, 
+     * and then all the way up. Going up first would need to come all the way down again, in the slow direction. Such a 
+     * route is only found reliably, if twists, which reverse the direction of a whole section of the route, are 
+     * evaluated with the reversed travel times. 
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testTravellingSalesmanAsymmetricTravelTime() throws Exception {
+        List<Location> list = new ArrayList<Location>();
+        for (int i = 0; i < 20; i++) {
+            list.add(new Location(LengthUnit.Millimeters, i, 0.0, 0.0, 0.0));
+        }
+        // shuffle, so the solver can't just keep the given order
+        Collections.shuffle(list, new Random(42));
+        TravellingSalesman.TravelTime travelTime = (from, to) -> {
+            double dx = to.getX() - from.getX();
+            return dx >= 0 ? dx/100.0 : -dx/1.0;
+        };
+        TravellingSalesman<Location> tsm = new TravellingSalesman<>(
+                list, 
+                new TravellingSalesman.Locator<Location>() { 
+                    @Override
+                    public Location getLocation(Location locatable) {
+                        return locatable;
+                    }
+                }, 
+                new Location(LengthUnit.Millimeters, 10.5, 0.0, 0.0, 0.0),
+                null,
+                travelTime);
+        double bestTime = tsm.solve();
+        List<Location> travel = tsm.getTravel();
+        double checkTime = 0;
+        Location l0 = new Location(LengthUnit.Millimeters, 10.5, 0.0, 0.0, 0.0);
+        for (Location l1 : travel) {
+            checkTime += travelTime.getTravelTime(l0, l1);
+            l0 = l1;
+        }
+        System.out.println("TavellingSalesmanTest.testTravellingSalesmanAsymmetricTravelTime() travel time: "+bestTime+"s");
+        if (Math.abs(checkTime - bestTime) > 1e-6) {
+            throw new Exception("Reported travel time "+bestTime+" does not match the route travel time "+checkTime);
+        }
+        // down from 10.5 to 0 and then up to 19
+        double optimalTime = 10.5 + 19/100.0;
+        if (Math.abs(bestTime - optimalTime) > 1e-6) {
+            throw new Exception("Travel time "+bestTime+"s is not the optimal "+optimalTime+"s, route "+travel);
+        }
+    }
 }